@@ -25,6 +25,8 @@ import org.wso2.carbon.usage.data.collector.common.publisher.api.PublisherExcept
 import org.wso2.carbon.usage.data.collector.common.publisher.api.model.ApiRequest;
 import org.wso2.carbon.usage.data.collector.common.publisher.api.model.ApiResponse;
 import org.wso2.carbon.usage.data.collector.common.publisher.api.model.UsageCount;
+import org.wso2.carbon.usage.data.collector.common.util.ClusterCounter;
+import org.wso2.carbon.usage.data.collector.common.util.ClusterLease;
 import org.wso2.carbon.usage.data.collector.common.util.MetaInfoHolder;
 import org.wso2.carbon.usage.data.collector.apim.internal.ApimUsageDataCollectorConstants;
 
@@ -33,10 +35,18 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * API Count Collector for APIM.
- * Collects API counts from the AM_API table and publishes them.
+ * Keeps API counts in memory and publishes them. The counts are seeded from the AM_API table on the
+ * first collection, follow API create and delete notifications through {@link ApiCountNotifier}, and
+ * are reconciled with the table once per reconcile interval.
+ *
+ * A node only receives the notifications of APIs created or deleted through itself. When a single node of the
+ * cluster publishes the counts, every node therefore adds the changes it was notified of to a cluster counter in
+ * the APIM database, and the publishing node follows the counters instead of its own notifications.
  *
  * This collector is managed by ApimUsageDataCollectorServiceComponent which
  * handles scheduler creation and lifecycle management.
@@ -46,6 +56,9 @@ public class ApiCountCollector {
     private static final Log log = LogFactory.getLog(ApiCountCollector.class);
 
     private final Publisher publisher;
+    private final long reconcileIntervalNanos;
+    private final InventoryCount apiCount;
+    private final InventoryCount mcpApiCount;
 
     /**
      * Constructor.
@@ -53,14 +66,35 @@ public class ApiCountCollector {
      * @param publisher The Publisher instance for database access and publishing
      */
     public ApiCountCollector(Publisher publisher) {
+        this(publisher, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param publisher The Publisher instance for database access and publishing
+     * @param clusterWide Whether the changes notified on all nodes of the cluster are shared through cluster
+     *                    counters, for a single node publishing the counts
+     */
+    public ApiCountCollector(Publisher publisher, boolean clusterWide) {
         this.publisher = publisher;
+        this.reconcileIntervalNanos = TimeUnit.SECONDS.toNanos(Math.max(1, Long.getLong(
+                ApimUsageDataCollectorConstants.API_COUNT_RECONCILE_INTERVAL_PROPERTY,
+                ApimUsageDataCollectorConstants.DEFAULT_API_COUNT_RECONCILE_INTERVAL_SECONDS)));
+        this.apiCount = new InventoryCount(clusterWide ?
+                new ClusterCounter(ApimUsageDataCollectorConstants.API_COUNT_COUNTER_NAME) : null);
+        this.mcpApiCount = new InventoryCount(clusterWide ?
+                new ClusterCounter(ApimUsageDataCollectorConstants.MCP_API_COUNT_COUNTER_NAME) : null);
     }
 
     /**
-     * Collects the API count from database and publishes it.
+     * Publishes the in-memory API counts, querying the database only to seed or reconcile them. Under a cluster
+     * lease, the lease is checked right before each count is published and its fencing token is sent with the count.
      * Package-private to allow access from ApiCountCollectorTask.
+     *
+     * @param lease The cluster lease, or null when every node publishes
      */
-    void collectAndPublish() {
+    void collectAndPublish(ClusterLease lease) {
         if (publisher == null) {
             if(log.isDebugEnabled()) {
                 log.warn("Cannot collect API count - Publisher service not available");
@@ -68,20 +102,22 @@ public class ApiCountCollector {
             return;
         }
 
-        // Query and publish non-MCP API count independently
+        // Publish non-MCP API count independently
         try {
-            long apiCount = queryApiCount();
-            publishApiCount(apiCount, ApimUsageDataCollectorConstants.API_COUNT_TYPE);
+            long count = currentCount(apiCount, ApimUsageDataCollectorConstants.API_COUNT_QUERY, "api_count",
+                    "non-MCP API count");
+            publishApiCount(count, ApimUsageDataCollectorConstants.API_COUNT_TYPE, lease);
         } catch (Exception e) {
             if(log.isDebugEnabled()) {
                 log.error("Error collecting and publishing API count (non-MCP)", e);
             }
         }
 
-        // Query and publish MCP API count independently
+        // Publish MCP API count independently
         try {
-            long mcpApiCount = queryMcpApiCount();
-            publishApiCount(mcpApiCount, ApimUsageDataCollectorConstants.MCP_API_COUNT_TYPE);
+            long count = currentCount(mcpApiCount, ApimUsageDataCollectorConstants.MCP_API_COUNT_QUERY,
+                    "mcp_api_count", "MCP API count");
+            publishApiCount(count, ApimUsageDataCollectorConstants.MCP_API_COUNT_TYPE, lease);
         } catch (Exception e) {
             if(log.isDebugEnabled()) {
                 log.error("Error collecting and publishing MCP API count", e);
@@ -90,54 +126,119 @@ public class ApiCountCollector {
     }
 
     /**
-     * Queries the database to get the non-MCP API count.
+     * Records an API created on this node. Called from API notifications, so it only touches the event delta.
      *
-     * @return The number of non-MCP APIs in the AM_API table
-     * @throws PublisherException If database query fails
+     * @param mcp Whether the API is an MCP API
      */
-    private long queryApiCount() throws PublisherException {
-        DataSource dataSource = publisher.getDataSource();
+    public void apiCreated(boolean mcp) {
+        (mcp ? mcpApiCount : apiCount).delta.incrementAndGet();
+    }
 
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(ApimUsageDataCollectorConstants.API_COUNT_QUERY);
-             ResultSet resultSet = statement.executeQuery()) {
+    /**
+     * Records an API deleted on this node. Called from API notifications, so it only touches the event delta.
+     *
+     * @param mcp Whether the API is an MCP API
+     */
+    public void apiDeleted(boolean mcp) {
+        (mcp ? mcpApiCount : apiCount).delta.decrementAndGet();
+    }
 
-            if (resultSet.next()) {
-                long count = resultSet.getLong("api_count");
-                return count;
-            } else {
-                return 0;
+    /**
+     * Adds the changes notified on this node since the last call to the cluster counters, so that the node
+     * publishing the counts sees them. Changes that could not be added are kept for the next call.
+     * Package-private to allow access from ApiCountCollectorTask.
+     */
+    void shareChanges() {
+        shareChanges(apiCount, "non-MCP API count");
+        shareChanges(mcpApiCount, "MCP API count");
+    }
+
+    /**
+     * Makes the next collection reconcile the counts with the database, for example when this node becomes the
+     * collecting node of the cluster and may have missed notifications handled by other nodes.
+     * Package-private to allow access from ApiCountCollectorTask.
+     */
+    void requestReconcile() {
+        apiCount.seeded = false;
+        mcpApiCount.seeded = false;
+    }
+
+    /**
+     * Returns the current count, seeding it from the database on the first call and reconciling it
+     * once the reconcile interval has passed. Notifications that race with the query may be counted
+     * twice until the next reconciliation.
+     */
+    private long currentCount(InventoryCount count, String query, String column, String description)
+            throws PublisherException {
+        long now = System.nanoTime();
+        if (!count.seeded || now - count.reconciledAt >= reconcileIntervalNanos) {
+            long changesBeforeQuery = changes(count, description);
+            long queried = queryCount(query, column, description);
+            count.base = queried - changesBeforeQuery;
+            count.reconciledAt = now;
+            count.seeded = true;
+            if (log.isDebugEnabled()) {
+                log.debug("Reconciled " + description + " from database: " + queried);
             }
+        }
+        return Math.max(0, count.base + changes(count, description));
+    }
+
+    /**
+     * Returns the sum of the notified changes, of the whole cluster when they are shared.
+     */
+    private long changes(InventoryCount count, String description) throws PublisherException {
+        if (count.clusterCounter == null) {
+            return count.delta.get();
+        }
+        try {
+            return count.clusterCounter.get(publisher.getDataSource());
         } catch (SQLException e) {
-            String errorMsg = "Failed to query non-MCP API count from database";
-            if(log.isDebugEnabled()) {
-                log.error(errorMsg, e);
+            throw new PublisherException("Failed to read the cluster changes of " + description, e);
+        }
+    }
+
+    private void shareChanges(InventoryCount count, String description) {
+        if (count.clusterCounter == null) {
+            return;
+        }
+        long changes = count.delta.getAndSet(0);
+        if (changes == 0) {
+            return;
+        }
+        try {
+            count.clusterCounter.add(publisher.getDataSource(), changes);
+        } catch (PublisherException | SQLException e) {
+            count.delta.addAndGet(changes);
+            if (log.isDebugEnabled()) {
+                log.error("Failed to share the changes of " + description + " with the cluster", e);
             }
-            throw new PublisherException(errorMsg, e);
         }
     }
 
     /**
-     * Queries the database to get the MCP API count.
+     * Queries the database for a single count.
      *
-     * @return The number of MCP APIs in the AM_API table
+     * @param query The count query
+     * @param column The column holding the count
+     * @param description Description of the count used in log and error messages
+     * @return The count returned by the query
      * @throws PublisherException If database query fails
      */
-    private long queryMcpApiCount() throws PublisherException {
+    private long queryCount(String query, String column, String description) throws PublisherException {
         DataSource dataSource = publisher.getDataSource();
 
         try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(ApimUsageDataCollectorConstants.MCP_API_COUNT_QUERY);
+             PreparedStatement statement = connection.prepareStatement(query);
              ResultSet resultSet = statement.executeQuery()) {
 
             if (resultSet.next()) {
-                long count = resultSet.getLong("mcp_api_count");
-                return count;
+                return resultSet.getLong(column);
             } else {
                 return 0;
             }
         } catch (SQLException e) {
-            String errorMsg = "Failed to query MCP API count from database";
+            String errorMsg = "Failed to query " + description + " from database";
             if(log.isDebugEnabled()) {
                 log.error(errorMsg, e);
             }
@@ -151,8 +252,9 @@ public class ApiCountCollector {
      *
      * @param apiCount The number of APIs
      * @param type The type of count (API_COUNT or MCP_API_COUNT)
+     * @param lease The cluster lease the count is published under, or null
      */
-    private void publishApiCount(long apiCount, String type) {
+    private void publishApiCount(long apiCount, String type, ClusterLease lease) {
         if (publisher == null) {
             if(log.isDebugEnabled()) {
                 log.warn("Cannot publish " + type + " - Publisher not available");
@@ -164,6 +266,17 @@ public class ApiCountCollector {
             String nodeId = MetaInfoHolder.getNodeId();
             String product = MetaInfoHolder.getProduct();
             UsageCount usageCount = new UsageCount(nodeId, product, apiCount, type);
+            if (lease != null) {
+                // The collection may have outlasted the lease, so that another node publishes by now
+                long fencingToken = lease.getFencingToken();
+                if (fencingToken == 0) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Skipping " + type + " publish - the cluster lease is no longer held");
+                    }
+                    return;
+                }
+                usageCount.setFencingToken(fencingToken);
+            }
 
             ApiRequest request = new ApiRequest.Builder()
                     .withEndpoint(ApimUsageDataCollectorConstants.USAGE_COUNT_ENDPOINT)
@@ -182,5 +295,21 @@ public class ApiCountCollector {
             }
         }
     }
-}
 
+    /**
+     * In-memory API count. The base is only touched by the collection thread, while notifications
+     * only add to the delta, so the current count is the sum of both. With a cluster counter, the delta
+     * only holds the changes not yet added to the counter, and the count is the sum of the base and the counter.
+     */
+    private static final class InventoryCount {
+        private final AtomicLong delta = new AtomicLong();
+        private final ClusterCounter clusterCounter;
+        private long base;
+        private long reconciledAt;
+        private boolean seeded;
+
+        private InventoryCount(ClusterCounter clusterCounter) {
+            this.clusterCounter = clusterCounter;
+        }
+    }
+}
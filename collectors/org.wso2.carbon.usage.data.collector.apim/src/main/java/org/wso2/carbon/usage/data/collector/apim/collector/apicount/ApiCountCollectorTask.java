@@ -20,17 +20,30 @@ package org.wso2.carbon.usage.data.collector.apim.collector.apicount;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.usage.data.collector.common.publisher.api.Publisher;
+import org.wso2.carbon.usage.data.collector.common.publisher.api.PublisherException;
+import org.wso2.carbon.usage.data.collector.common.util.ClusterLease;
+
+import java.sql.SQLException;
 
 /**
  * Runnable task that executes the API count collection.
  * This task wraps the collector to provide proper exception handling
  * and prevent the scheduler from stopping on errors.
+ *
+ * When a cluster lease is given, the collection only runs on the node holding it. The lease is extended right
+ * before collecting, so a node that was superseded since its last heartbeat does not publish. It is checked again
+ * right before each count is published, and its fencing token is published with the count, so that the receiver
+ * can drop a count of a node that lost the lease while collecting.
  */
 public class ApiCountCollectorTask implements Runnable {
 
     private static final Log log = LogFactory.getLog(ApiCountCollectorTask.class);
 
     private final ApiCountCollector collector;
+    private final Publisher publisher;
+    private final ClusterLease lease;
+    private long lastFencingToken;
 
     /**
      * Constructor.
@@ -38,13 +51,33 @@ public class ApiCountCollectorTask implements Runnable {
      * @param collector The API count collector instance
      */
     public ApiCountCollectorTask(ApiCountCollector collector) {
+        this(collector, null, null);
+    }
+
+    /**
+     * Constructor for collection by a single node of the cluster.
+     *
+     * @param collector The API count collector instance
+     * @param publisher The Publisher instance providing the datasource of the lease
+     * @param lease The cluster lease, or null to collect on every node
+     */
+    public ApiCountCollectorTask(ApiCountCollector collector, Publisher publisher, ClusterLease lease) {
         this.collector = collector;
+        this.publisher = publisher;
+        this.lease = lease;
     }
 
     @Override
     public void run() {
         try {
-            collector.collectAndPublish();
+            if (lease != null) {
+                // Every node shares the changes it was notified of, while only the lease holder publishes
+                collector.shareChanges();
+                if (!holdsLease()) {
+                    return;
+                }
+            }
+            collector.collectAndPublish(lease);
         } catch (Exception e) {
             if(log.isDebugEnabled()) {
                 log.error("Error executing API count collection task", e);
@@ -52,5 +85,20 @@ public class ApiCountCollectorTask implements Runnable {
             // Don't propagate exception - let scheduler continue
         }
     }
-}
 
+    private boolean holdsLease() throws PublisherException, SQLException {
+        if (!lease.acquire(publisher.getDataSource())) {
+            if (log.isDebugEnabled()) {
+                log.debug("Skipping API count collection - another node holds the cluster lease");
+            }
+            return false;
+        }
+        long fencingToken = lease.getFencingToken();
+        if (fencingToken != lastFencingToken) {
+            // Changes shared before this node last held the lease may not have been followed
+            lastFencingToken = fencingToken;
+            collector.requestReconcile();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.apim.collector.apicount;
+
+import org.wso2.carbon.apimgt.impl.notifier.Notifier;
+import org.wso2.carbon.apimgt.impl.notifier.events.APIEvent;
+import org.wso2.carbon.apimgt.impl.notifier.events.Event;
+import org.wso2.carbon.apimgt.impl.notifier.exceptions.NotifierException;
+import org.wso2.carbon.usage.data.collector.apim.internal.ApimUsageDataCollectorConstants;
+
+/**
+ * APIM notifier that keeps the in-memory API counts of {@link ApiCountCollector} up to date
+ * from API and API product create and delete events. Other events, such as lifecycle changes,
+ * do not change the number of rows in AM_API and are ignored.
+ *
+ * Registered as an OSGi service by ApimUsageDataCollectorServiceComponent.
+ */
+public class ApiCountNotifier implements Notifier {
+
+    private final ApiCountCollector collector;
+
+    /**
+     * Constructor.
+     *
+     * @param collector The API count collector to update
+     */
+    public ApiCountNotifier(ApiCountCollector collector) {
+        this.collector = collector;
+    }
+
+    @Override
+    public boolean publishEvent(Event event) throws NotifierException {
+        String eventType = event.getType();
+        if (ApimUsageDataCollectorConstants.API_CREATE_EVENT.equals(eventType)
+                || ApimUsageDataCollectorConstants.API_PRODUCT_CREATE_EVENT.equals(eventType)) {
+            collector.apiCreated(isMcpApi(event));
+        } else if (ApimUsageDataCollectorConstants.API_DELETE_EVENT.equals(eventType)
+                || ApimUsageDataCollectorConstants.API_PRODUCT_DELETE_EVENT.equals(eventType)) {
+            collector.apiDeleted(isMcpApi(event));
+        }
+        return true;
+    }
+
+    @Override
+    public String getType() {
+        return ApimUsageDataCollectorConstants.API_NOTIFIER_TYPE;
+    }
+
+    private static boolean isMcpApi(Event event) {
+        return event instanceof APIEvent
+                && ApimUsageDataCollectorConstants.MCP_API_TYPE.equals(((APIEvent) event).getApiType());
+    }
+}
@@ -18,34 +18,122 @@
 
 package org.wso2.carbon.usage.data.collector.apim.collector.transaction.aggregator;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.usage.data.collector.common.metrics.ConcurrencyGauge;
+import org.wso2.carbon.usage.data.collector.common.metrics.ErrorCounter;
+import org.wso2.carbon.usage.data.collector.common.metrics.HeavyHitters;
+import org.wso2.carbon.usage.data.collector.common.metrics.HyperLogLog;
+import org.wso2.carbon.usage.data.collector.common.metrics.LatencyHistogram;
+import org.wso2.carbon.usage.data.collector.common.metrics.PeakRateTracker;
+import org.wso2.carbon.usage.data.collector.common.metrics.RotatingBloomFilter;
+import org.wso2.carbon.usage.data.collector.common.metrics.StreamSessionSummary;
+import org.wso2.carbon.usage.data.collector.common.metrics.StreamSessionTracker;
+import org.wso2.carbon.usage.data.collector.common.metrics.UsageHistory;
 import org.wso2.carbon.usage.data.collector.common.publisher.api.Publisher;
 import org.wso2.carbon.usage.data.collector.common.publisher.api.PublisherException;
 import org.wso2.carbon.usage.data.collector.common.publisher.api.model.ApiRequest;
 import org.wso2.carbon.usage.data.collector.common.publisher.api.model.ApiResponse;
+import org.wso2.carbon.usage.data.collector.common.publisher.api.model.TransactionAttributes;
+import org.wso2.carbon.usage.data.collector.common.publisher.api.model.TransactionUsageCount;
 import org.wso2.carbon.usage.data.collector.common.publisher.api.model.UsageCount;
+import org.wso2.carbon.usage.data.collector.common.transaction.TransactionCorrelation;
 import org.wso2.carbon.usage.data.collector.common.util.MetaInfoHolder;
+import org.wso2.carbon.usage.data.collector.common.util.PublishCadence;
+import org.wso2.carbon.usage.data.collector.common.util.UsageSpool;
+import org.wso2.carbon.usage.data.collector.apim.collector.transaction.counter.TransactionCountingLogic;
 import org.wso2.carbon.usage.data.collector.apim.internal.ApimUsageDataCollectorConstants;
 
-import java.util.concurrent.Executors;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 public class TransactionAggregator {
 
     private static final Log log = LogFactory.getLog(TransactionAggregator.class);
     private static volatile TransactionAggregator instance = null;
+    private static final int TOP_API_LIMIT =
+            Integer.getInteger(ApimUsageDataCollectorConstants.TOP_APIS_PROPERTY,
+                    ApimUsageDataCollectorConstants.DEFAULT_TOP_APIS);
+    private static final long IN_FLIGHT_TIMEOUT_SECONDS =
+            Long.getLong(ApimUsageDataCollectorConstants.IN_FLIGHT_TIMEOUT_PROPERTY,
+                    ApimUsageDataCollectorConstants.DEFAULT_IN_FLIGHT_TIMEOUT_SECONDS);
 
-    private final AtomicLong hourlyTransactionCount = new AtomicLong(0);
+    private final AtomicLong windowTransactionCount = new AtomicLong(0);
+    private final UsageHistory history = new UsageHistory(windowTransactionCount::get);
+    private final PublishCadence publishCadence = createPublishCadence();
+    private final UsageSpool spool = new UsageSpool(new File(
+            System.getProperty(ApimUsageDataCollectorConstants.SPOOL_DIR_PROPERTY,
+                    ApimUsageDataCollectorConstants.DEFAULT_SPOOL_DIR),
+            ApimUsageDataCollectorConstants.TRANSACTION_SPOOL_FILE));
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final ConcurrencyGauge inFlightTransactions =
+            new ConcurrencyGauge(TimeUnit.SECONDS.toMillis(IN_FLIGHT_TIMEOUT_SECONDS));
+    private final PeakRateTracker transactionRate = new PeakRateTracker();
+    private final ErrorCounter errorCounter = new ErrorCounter();
+    private final HyperLogLog clientAddresses = new HyperLogLog();
+    private final HyperLogLog consumers = new HyperLogLog();
+    private final RotatingBloomFilter outFlowFilter = createOutFlowFilter();
+    private final HeavyHitters topApis = createTopApis();
+    private final StreamSessionTracker streamSessions = createStreamSessions();
     private Publisher publisher;
     private ScheduledExecutorService scheduledExecutorService;
-    private long currentHourStartTime;
+    private long windowStartTime;
     private volatile boolean enabled = false;
 
     private TransactionAggregator() {}
 
+    private static RotatingBloomFilter createOutFlowFilter() {
+        if (!Boolean.getBoolean(ApimUsageDataCollectorConstants.DEDUP_ENABLED_PROPERTY)) {
+            return null;
+        }
+        long expectedMessages = Long.getLong(ApimUsageDataCollectorConstants.DEDUP_EXPECTED_MESSAGES_PROPERTY,
+                ApimUsageDataCollectorConstants.DEFAULT_DEDUP_EXPECTED_MESSAGES);
+        return new RotatingBloomFilter(expectedMessages, ApimUsageDataCollectorConstants.DEDUP_FALSE_POSITIVE_RATE);
+    }
+
+    private static HeavyHitters createTopApis() {
+        if (TOP_API_LIMIT <= 0) {
+            return null;
+        }
+        return new HeavyHitters(TOP_API_LIMIT * ApimUsageDataCollectorConstants.TOP_APIS_CAPACITY_FACTOR);
+    }
+
+    private static StreamSessionTracker createStreamSessions() {
+        return new StreamSessionTracker(
+                TimeUnit.SECONDS.toMillis(Long.getLong(
+                        ApimUsageDataCollectorConstants.STREAM_SESSION_IDLE_TIMEOUT_PROPERTY,
+                        ApimUsageDataCollectorConstants.DEFAULT_STREAM_SESSION_IDLE_TIMEOUT_SECONDS)),
+                ApimUsageDataCollectorConstants.MAX_STREAM_SESSIONS);
+    }
+
+    private static PublishCadence createPublishCadence() {
+        return new PublishCadence(
+                TimeUnit.SECONDS.toMillis(Long.getLong(ApimUsageDataCollectorConstants.MIN_PUBLISH_INTERVAL_PROPERTY,
+                        ApimUsageDataCollectorConstants.DEFAULT_MIN_PUBLISH_INTERVAL_SECONDS)),
+                TimeUnit.SECONDS.toMillis(Long.getLong(ApimUsageDataCollectorConstants.MAX_PUBLISH_INTERVAL_PROPERTY,
+                        ApimUsageDataCollectorConstants.DEFAULT_MAX_PUBLISH_INTERVAL_SECONDS)),
+                TimeUnit.SECONDS.toMillis(ApimUsageDataCollectorConstants.DEFAULT_PUBLISH_INTERVAL_SECONDS),
+                Long.getLong(ApimUsageDataCollectorConstants.PUBLISH_TARGET_COUNT_PROPERTY,
+                        ApimUsageDataCollectorConstants.DEFAULT_PUBLISH_TARGET_COUNT));
+    }
+
     public static TransactionAggregator getInstance() {
         if (instance == null) {
             synchronized (TransactionAggregator.class) {
@@ -60,7 +148,7 @@ public class TransactionAggregator {
     public void init(Publisher publisher) {
         if (publisher == null) {
             if(log.isDebugEnabled()) {
-                log.warn("Publisher is null. Hourly aggregation will be disabled.");
+                log.warn("Publisher is null. Transaction aggregation will be disabled.");
             }
             return;
         }
@@ -91,18 +179,23 @@ public class TransactionAggregator {
 
         // Fresh initialization
         this.publisher = publisher;
-        this.currentHourStartTime = System.currentTimeMillis();
-        this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        this.windowStartTime = System.currentTimeMillis();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        // The next window is scheduled by the previous one, so a pending window must not delay shutdown
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduledExecutorService = executor;
 
-        long interval = 60 * 60 * 1000L;
         try {
-            scheduledExecutorService.scheduleAtFixedRate(
-                    this::publishAndReset,
-                    interval,
-                    interval,
-                    TimeUnit.MILLISECONDS
-            );
+            scheduleNextPublish();
+            scheduledExecutorService.scheduleWithFixedDelay(
+                    TransactionCountingLogic.getInstance()::reloadCountingRules, 0,
+                    ApimUsageDataCollectorConstants.COUNTING_RULES_RELOAD_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            // Requests that never complete are expired between windows as well, so that they do not pile up
+            scheduledExecutorService.scheduleWithFixedDelay(inFlightTransactions::expire, IN_FLIGHT_TIMEOUT_SECONDS,
+                    IN_FLIGHT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            scheduledExecutorService.execute(this::replaySpool);
             this.enabled = true;
+            registerHistoryMBean();
         } catch (Exception e) {
             if(log.isDebugEnabled()) {
                 log.error("TransactionAggregator: Failed to schedule periodic task", e);
@@ -115,54 +208,384 @@ public class TransactionAggregator {
         if (!enabled || count <= 0) {
             return;
         }
-        hourlyTransactionCount.addAndGet(count);
+        windowTransactionCount.addAndGet(count);
+        transactionRate.add(count);
     }
 
-    private void publishAndReset() {
-        try {
-            long count = hourlyTransactionCount.getAndSet(0);
-            long hourEndTime = System.currentTimeMillis();
+    /**
+     * Adds frames received on a streaming session. They are kept in counters of the session and added to the
+     * transaction count, request bytes and peak rate when the window rolls over, so a chatty session does not
+     * contend on the shared counters.
+     *
+     * @param sessionId The streaming session the frames were received on
+     * @param count The number of transactions the frames account for
+     * @param bytes The request bytes of the frames
+     * @return {@link StreamSessionTracker#TRACKED} if the frames were added to a session seen before, which needs
+     * nothing else recorded for them
+     */
+    public int addStreamFrames(String sessionId, int count, long bytes) {
+        if (!enabled || count <= 0) {
+            return StreamSessionTracker.TRACKED;
+        }
+        int recorded = streamSessions.recordFrames(sessionId, count, bytes, System.currentTimeMillis());
+        if (recorded == StreamSessionTracker.UNTRACKED) {
+            addTransactions(count);
+            addRequestBytes(bytes);
+        }
+        return recorded;
+    }
+
+    /**
+     * Checks whether an uncorrelated outgoing message is seen for the first time in this or the previous window.
+     * Clone/iterate mediators, retries and failover endpoints can send the same message out several times.
+     * Always returns true unless duplicate suppression is enabled with the
+     * {@value ApimUsageDataCollectorConstants#DEDUP_ENABLED_PROPERTY} system property.
+     *
+     * @param outFlowKey The key that copies of the outgoing message share, as returned by
+     *                   {@code TransactionCountingLogic.getOutFlowKey}
+     * @return true if the message should be counted, false if it is a duplicate
+     */
+    public boolean isFirstOutFlow(String outFlowKey) {
+        if (outFlowFilter == null || outFlowKey == null) {
+            return true;
+        }
+        return outFlowFilter.add(outFlowKey);
+    }
+
+    /**
+     * Marks the start of a request-response pair for the in-flight gauge.
+     *
+     * @param correlation The correlation of the request
+     */
+    public void transactionStarted(TransactionCorrelation correlation) {
+        if (!enabled) {
+            return;
+        }
+        inFlightTransactions.increment(correlation.getStartNanos());
+    }
+
+    /**
+     * Marks the completion of a request-response pair for the in-flight gauge.
+     *
+     * @param correlation The correlation of the request
+     */
+    public void transactionCompleted(TransactionCorrelation correlation) {
+        inFlightTransactions.decrement(correlation.getStartNanos());
+    }
+
+    /**
+     * Counts a failed transaction in the current window under the category of its error code.
+     *
+     * @param errorCode The Synapse error code, or a negative value when the fault carried no code
+     */
+    public void addError(int errorCode) {
+        if (!enabled) {
+            return;
+        }
+        errorCounter.record(errorCode);
+    }
 
-            // Always send transaction count, even when count is zero
-            publishTransaction(count, currentHourStartTime, hourEndTime);
+    /**
+     * Records the end-to-end mediation latency of a request-response pair for the current window.
+     *
+     * @param latencyMicros The latency in microseconds. Negative values are ignored.
+     */
+    public void recordLatency(long latencyMicros) {
+        if (!enabled || latencyMicros < 0) {
+            return;
+        }
+        latencyHistogram.record(latencyMicros);
+    }
+
+    /**
+     * Adds the payload size of an incoming request to the current window.
+     *
+     * @param bytes The payload size in bytes. Non-positive values are ignored.
+     */
+    public void addRequestBytes(long bytes) {
+        if (!enabled || bytes <= 0) {
+            return;
+        }
+        requestBytes.add(bytes);
+    }
+
+    /**
+     * Adds the payload size of an outgoing response to the current window.
+     *
+     * @param bytes The payload size in bytes. Non-positive values are ignored.
+     */
+    public void addResponseBytes(long bytes) {
+        if (!enabled || bytes <= 0) {
+            return;
+        }
+        responseBytes.add(bytes);
+    }
+
+    /**
+     * Adds the address of a client to the distinct client count of the current window.
+     *
+     * @param clientAddress The remote address of the client. Null values are ignored.
+     */
+    public void addClientAddress(String clientAddress) {
+        if (!enabled) {
+            return;
+        }
+        clientAddresses.add(clientAddress);
+    }
 
-            currentHourStartTime = hourEndTime;
+    /**
+     * Adds an application consumer key to the distinct consumer count of the current window.
+     *
+     * @param consumerKey The consumer key. Null values are ignored.
+     */
+    public void addConsumer(String consumerKey) {
+        if (!enabled) {
+            return;
+        }
+        consumers.add(consumerKey);
+    }
 
+    /**
+     * Counts a request-response pair against the API that mediated it, for the most used APIs of the
+     * current window. Disabled when the {@value ApimUsageDataCollectorConstants#TOP_APIS_PROPERTY} system
+     * property is 0.
+     *
+     * @param apiName The API name. Null values are ignored.
+     */
+    public void addApiTransaction(String apiName) {
+        if (!enabled || topApis == null) {
+            return;
+        }
+        topApis.add(apiName);
+    }
+
+    /**
+     * Schedules the publishing of the current window at the end of its epoch-aligned interval.
+     */
+    private void scheduleNextPublish() {
+        ScheduledExecutorService executor = scheduledExecutorService;
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        try {
+            executor.schedule(this::publishAndScheduleNext,
+                    publishCadence.getDelayMillis(System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("TransactionAggregator: Executor is shut down, not scheduling the next window");
+            }
+        }
+    }
+
+    private void publishAndScheduleNext() {
+        publishAndReset();
+        scheduleNextPublish();
+    }
+
+    private synchronized void publishAndReset() {
+        try {
+            long windowStart = windowStartTime;
+            long windowEndTime = System.currentTimeMillis();
+            UsageCount window = drainWindow(windowEndTime, false);
+            if (!publish(window)) {
+                // The counters are already reset, so keep the window for replay rather than losing it
+                spillWindow(window);
+            }
+            publishCadence.update(window.getCount(), windowEndTime - windowStart,
+                    System.currentTimeMillis() - windowEndTime);
         } catch (Exception e) {
             if(log.isDebugEnabled()) {
-                log.error("TransactionAggregator: Error while publishing hourly transaction count", e);
+                log.error("TransactionAggregator: Error while publishing the transaction count of the window", e);
             }
         }
     }
 
     /**
-     * Publish transaction count using Publisher.publishToReceiver() which has built-in retry logic.
+     * Resets all counters and returns the transaction count of the window that ends now, which is published even
+     * when it is zero. The other metrics of the window are attributes of the same usage count, so that a window
+     * costs a single receiver call, and are only included when the window recorded them. Streaming sessions are
+     * closed with the window when {@code closeStreamSessions} is set, e.g. on shutdown.
      */
-    private void publishTransaction(long count, long periodStartTime, long periodEndTime) {
+    private UsageCount drainWindow(long windowEndTime, boolean closeStreamSessions) {
+        StreamSessionSummary sessions = streamSessions.drain(windowEndTime, closeStreamSessions);
+        long count = windowTransactionCount.getAndSet(0) + sessions.getFrames();
+        history.record(count, windowEndTime);
+        if (outFlowFilter != null) {
+            long outFlows = outFlowFilter.rotate();
+            if (outFlows > outFlowFilter.getCapacity()) {
+                log.warn("Duplicates were counted for part of the window, as " + outFlows
+                        + " outgoing messages exceeded the " + outFlowFilter.getCapacity() + " expected. Raise "
+                        + ApimUsageDataCollectorConstants.DEDUP_EXPECTED_MESSAGES_PROPERTY + " to suppress them.");
+            }
+        }
+        // Distinct counts carry their sketch, so that the receiver can merge the sketches of all gateway nodes
+        // instead of summing their estimates
+        Map<String, Object> attributes = new TransactionAttributes()
+                .withWindow(windowStartTime, windowEndTime, publishCadence.getIntervalMillis())
+                .withLatency(latencyHistogram.snapshotAndReset())
+                .withRequestBytes(requestBytes.sumThenReset() + sessions.getBytes())
+                .withResponseBytes(responseBytes.sumThenReset())
+                .withPeakConcurrency(inFlightTransactions.getPeakAndReset())
+                .withPeakTps(transactionRate.getPeakAndReset(sessions.getFrames(),
+                        windowEndTime - windowStartTime))
+                .withErrorCounts(errorCounter.snapshotAndReset())
+                .withDistinctCount(ApimUsageDataCollectorConstants.DISTINCT_CLIENT_IPS_ATTRIBUTE,
+                        clientAddresses.snapshotAndReset())
+                .withDistinctCount(ApimUsageDataCollectorConstants.DISTINCT_CONSUMERS_ATTRIBUTE,
+                        consumers.snapshotAndReset())
+                .withTopArtifacts(ApimUsageDataCollectorConstants.TOP_APIS_ATTRIBUTE,
+                        topApis != null ? topApis.snapshotAndReset(TOP_API_LIMIT) : null)
+                .withStreamSessions(sessions)
+                .build();
+        windowStartTime = windowEndTime;
+        return new TransactionUsageCount(MetaInfoHolder.getNodeId(), MetaInfoHolder.getProduct(), count,
+                ApimUsageDataCollectorConstants.TRANSACTION_TYPE, attributes);
+    }
+
+    /**
+     * Publish a usage count using Publisher.publishToReceiver() which has built-in retry logic.
+     *
+     * @return true if the usage count was published, false otherwise
+     */
+    private boolean publish(Object usageData, String type) {
         if (publisher == null) {
             if(log.isDebugEnabled()) {
-                log.warn("Cannot publish transaction - Publisher not available");
+                log.warn("Cannot publish " + type + " - Publisher not available");
             }
-            return;
+            return false;
         }
 
         try {
-            String nodeId = MetaInfoHolder.getNodeId();
-            String product = MetaInfoHolder.getProduct();
-
-            UsageCount usageCount = new UsageCount(nodeId, product, count,
-                    ApimUsageDataCollectorConstants.TRANSACTION_TYPE);
-
             ApiRequest request = new ApiRequest.Builder()
                     .withEndpoint(ApimUsageDataCollectorConstants.USAGE_COUNT_ENDPOINT)
-                    .withData(usageCount)
+                    .withData(usageData)
                     .build();
 
             // Publisher.publishToReceiver() handles retry logic automatically
-            ApiResponse response = publisher.publishToReceiver(request);
+            publisher.publishToReceiver(request);
+            return true;
         } catch (PublisherException e) {
             if(log.isDebugEnabled()) {
-                log.error("Failed to publish transaction count after all retries: " + e.getMessage(), e);
+                log.error("Failed to publish " + type + " after all retries: " + e.getMessage(), e);
+            }
+            return false;
+        }
+    }
+
+    private boolean publish(UsageCount usageCount) {
+        return publish(usageCount, usageCount.getType());
+    }
+
+    /**
+     * Publishes the window in progress with a single attempt within the shutdown publish timeout. If it cannot be
+     * published in time, it is spilled to the local spool and replayed on the next start. Synchronized with the
+     * scheduled publishing, which may still be publishing the previous window when the executor did not terminate
+     * in time.
+     */
+    private synchronized void publishFinalWindow() {
+        UsageCount window = drainWindow(System.currentTimeMillis(), true);
+        if (publisher != null
+                && publishOnce(window, ApimUsageDataCollectorConstants.SHUTDOWN_PUBLISH_TIMEOUT_MS)) {
+            return;
+        }
+        spillWindow(window);
+    }
+
+    private void spillWindow(UsageCount window) {
+        if (spool.spill(Collections.singletonList(window.toJson()))) {
+            log.info("Spilled an unpublished transaction usage count for replay on next start");
+        }
+    }
+
+    private boolean publishOnce(UsageCount usageCount, int timeoutMs) {
+        try {
+            ApiRequest request = new ApiRequest.Builder()
+                    .withEndpoint(ApimUsageDataCollectorConstants.USAGE_COUNT_ENDPOINT)
+                    .withData(usageCount)
+                    .withTimeout(timeoutMs)
+                    .withRetryCount(0)
+                    .build();
+            ApiResponse response = publisher.callReceiverApi(request);
+            return response != null && response.isSuccess();
+        } catch (PublisherException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to publish " + usageCount.getType() + " during shutdown: " + e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Publishes the usage counts spilled before the last start. Counts are only removed from the spool once
+     * published, so that counts that cannot be published, or are cut short by a shutdown, stay for the next start.
+     */
+    private void replaySpool() {
+        if (publisher == null) {
+            return;
+        }
+        List<String> records = spool.read();
+        int replayed = 0;
+        for (String json : records) {
+            JsonElement record = null;
+            try {
+                record = new JsonParser().parse(json);
+            } catch (JsonParseException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Discarding malformed spooled usage count: " + json);
+                }
+            }
+            if (record != null) {
+                try {
+                    publisher.publishToReceiver(new ApiRequest.Builder()
+                            .withEndpoint(ApimUsageDataCollectorConstants.USAGE_COUNT_ENDPOINT)
+                            .withData(record)
+                            .build());
+                } catch (PublisherException e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Failed to replay spooled usage counts, keeping them for the next start", e);
+                    }
+                    break;
+                }
+            }
+            replayed++;
+        }
+        spool.remove(replayed);
+        if (replayed > 0 && log.isDebugEnabled()) {
+            log.debug("Replayed " + replayed + " spooled usage counts");
+        }
+    }
+
+    /**
+     * Returns the local history of the transaction counts of this node.
+     */
+    public UsageHistory getHistory() {
+        return history;
+    }
+
+    private void registerHistoryMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(ApimUsageDataCollectorConstants.HISTORY_MBEAN_NAME);
+            if (!mBeanServer.isRegistered(name)) {
+                mBeanServer.registerMBean(history, name);
+            }
+        } catch (JMException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to register the transaction history MBean", e);
+            }
+        }
+    }
+
+    private void unregisterHistoryMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(ApimUsageDataCollectorConstants.HISTORY_MBEAN_NAME);
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to unregister the transaction history MBean", e);
             }
         }
     }
@@ -173,26 +596,25 @@ public class TransactionAggregator {
 
     public void shutdown() {
         if (scheduledExecutorService != null) {
-            // Publish final report before shutdown
-            publishAndReset();
-
-            scheduledExecutorService.shutdown();
+            // Stop the schedule first, interrupting any publish in progress and its retry back-off
+            scheduledExecutorService.shutdownNow();
             try {
                 if (!scheduledExecutorService.awaitTermination(
                         ApimUsageDataCollectorConstants.SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
-                    scheduledExecutorService.shutdownNow();
                     if(log.isDebugEnabled()) {
-                        log.warn("TransactionAggregator forced shutdown");
+                        log.warn("TransactionAggregator executor did not terminate in time");
                     }
                 }
             } catch (InterruptedException e) {
-                scheduledExecutorService.shutdownNow();
                 Thread.currentThread().interrupt();
                 if(log.isDebugEnabled()) {
                     log.error("Interrupted while shutting down TransactionAggregator", e);
                 }
             }
+            // Publish final report before shutdown
+            publishFinalWindow();
         }
+        unregisterHistoryMBean();
         enabled = false;
     }
 }
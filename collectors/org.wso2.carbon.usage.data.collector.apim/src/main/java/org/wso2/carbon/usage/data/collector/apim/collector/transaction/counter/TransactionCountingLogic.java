@@ -19,72 +19,58 @@
 package org.wso2.carbon.usage.data.collector.apim.collector.transaction.counter;
 
 import org.apache.synapse.MessageContext;
-import org.apache.synapse.core.axis2.Axis2MessageContext;
 import org.wso2.carbon.usage.data.collector.apim.internal.ApimUsageDataCollectorConstants;
+import org.wso2.carbon.usage.data.collector.common.transaction.SynapseMessageProperties;
+import org.wso2.carbon.usage.data.collector.common.transaction.SynapseTransactionCounting;
 
-public class TransactionCountingLogic {
+public class TransactionCountingLogic extends SynapseTransactionCounting {
 
-    public static int handleRequestInFlow(MessageContext messageContext) {
-        if (messageContext != null) {
-            org.apache.axis2.context.MessageContext axis2MessageContext = null;
-            if (messageContext instanceof Axis2MessageContext) {
-                axis2MessageContext = ((Axis2MessageContext) messageContext).getAxis2MessageContext();
-            }
-            if (axis2MessageContext != null) {
-                // Checking if the message is inbound
-                Object isInbound = messageContext.getProperty(ApimUsageDataCollectorConstants.IS_INBOUND);
-                if (isInbound instanceof Boolean && (Boolean) isInbound) {
-                    return 1;
-                }
+    private static final TransactionCountingLogic INSTANCE = new TransactionCountingLogic();
 
-                // Setting this property to identify request-response pairs
-                messageContext.setProperty(ApimUsageDataCollectorConstants.IS_THERE_ASSOCIATED_INCOMING_REQUEST, true);
-
-                // Counting message received via an open WebSocket
-                String transport = axis2MessageContext.getIncomingTransportName();
-                if (transport != null &&
-                        (transport.equals(ApimUsageDataCollectorConstants.TRANSPORT_WS) ||
-                        transport.equals(ApimUsageDataCollectorConstants.TRANSPORT_WSS))) {
-                    return 1;
-                }
-            }
-        }
-        return 0;
+    private TransactionCountingLogic() {
+        // Proxy services are not deployed on the API gateway
+        super(new SynapseMessageProperties.Builder()
+                        .withInbound(ApimUsageDataCollectorConstants.IS_INBOUND)
+                        .withRestApi(ApimUsageDataCollectorConstants.REST_API)
+                        .withOutOnly(ApimUsageDataCollectorConstants.OUT_ONLY)
+                        .withCorrelation(ApimUsageDataCollectorConstants.TRANSACTION_CORRELATION)
+                        .withOutFlowKey(ApimUsageDataCollectorConstants.OUT_FLOW_KEY)
+                        .withStreamSessionId(ApimUsageDataCollectorConstants.STREAM_SESSION_ID)
+                        .withErrorCode(ApimUsageDataCollectorConstants.ERROR_CODE)
+                        .build(),
+                ApimUsageDataCollectorConstants.COUNTING_RULES_FILE_PROPERTY);
     }
 
-    public static int handleRequestOutFlow(MessageContext messageContext) {
-        if (messageContext == null) {
-            return 0;
-        }
-        Object isThereAnAssociatedIncomingRequest = messageContext.getProperty(
-                ApimUsageDataCollectorConstants.IS_THERE_ASSOCIATED_INCOMING_REQUEST);
-
-        // Counting outgoing messages that are not related to any request-response pair
-        if (isThereAnAssociatedIncomingRequest == null) {
-            return 1;
-        }
-        return 0;
+    public static TransactionCountingLogic getInstance() {
+        return INSTANCE;
     }
 
-    public static int handleResponseInFlow(MessageContext messageContext) {
+    /**
+     * Returns the consumer key of the application that invoked the API. The key is set by the
+     * authentication handler, so it is only available after the request has been authenticated.
+     *
+     * @param messageContext The message context
+     * @return The consumer key, or null for unauthenticated requests
+     */
+    public String getConsumerKey(MessageContext messageContext) {
         if (messageContext == null) {
-            return 0;
+            return null;
         }
-        return 0;
+        Object consumerKey = messageContext.getProperty(ApimUsageDataCollectorConstants.CONSUMER_KEY);
+        return consumerKey instanceof String ? (String) consumerKey : null;
     }
 
-    public static int handleResponseOutFlow(MessageContext messageContext) {
+    /**
+     * Returns the API that mediated the message.
+     *
+     * @param messageContext The response message context
+     * @return The API name and version as set by the dispatcher, or null if the message did not go through an API
+     */
+    public String getApiName(MessageContext messageContext) {
         if (messageContext == null) {
-            return 0;
-        }
-        Object isThereAnAssociatedIncomingRequest = messageContext.getProperty(
-                ApimUsageDataCollectorConstants.IS_THERE_ASSOCIATED_INCOMING_REQUEST);
-
-        // Counting request-response pairs
-        if (isThereAnAssociatedIncomingRequest instanceof Boolean) {
-            return 1;
+            return null;
         }
-        return 0;
+        Object api = messageContext.getProperty(ApimUsageDataCollectorConstants.REST_API);
+        return api instanceof String ? (String) api : null;
     }
 }
-
@@ -37,17 +37,96 @@ public class ApimUsageDataCollectorConstants {
     public static final String API_COUNT_TYPE = "API_COUNT";
     public static final String MCP_API_COUNT_TYPE = "MCP_API_COUNT";
 
+    // Attributes of the transaction count for the distinct counts and the most used APIs of the window
+    public static final String DISTINCT_CLIENT_IPS_ATTRIBUTE = "distinctClientIps";
+    public static final String DISTINCT_CONSUMERS_ATTRIBUTE = "distinctConsumers";
+    public static final String TOP_APIS_ATTRIBUTE = "topApis";
+
     // Endpoints
     public static final String USAGE_COUNT_ENDPOINT = "receiver/usage-counts";
 
-    // Shutdown timeout
-    public static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+    // Shutdown deadlines: waiting for a publish in progress, and publishing the final hour with a single attempt
+    public static final long SHUTDOWN_TIMEOUT_SECONDS = 1;
+    public static final int SHUTDOWN_PUBLISH_TIMEOUT_MS = 2000;
+
+    // Usage counts that could not be published at shutdown are spilled here and replayed on the next start
+    public static final String SPOOL_DIR_PROPERTY = "usage.data.collector.spool.dir";
+    public static final String DEFAULT_SPOOL_DIR = "./repository/data/usage-data-collector";
+    public static final String TRANSACTION_SPOOL_FILE = "transactions.spool";
 
     // Transaction counter message context properties
     public static final String IS_INBOUND = "isInbound";
-    public static final String IS_THERE_ASSOCIATED_INCOMING_REQUEST = "is_there_incoming_request";
-    public static final String TRANSPORT_WS = "ws";
-    public static final String TRANSPORT_WSS = "wss";
+    public static final String TRANSACTION_CORRELATION = "usage_data_collector_transaction_correlation";
+    public static final String OUT_ONLY = "OUT_ONLY";
+    public static final String ERROR_CODE = "ERROR_CODE";
+    public static final String CONSUMER_KEY = "api.ut.consumerKey";
+    public static final String REST_API = "SYNAPSE_REST_API";
+
+    // Duplicate suppression of uncorrelated outgoing messages
+    public static final String OUT_FLOW_KEY = "usage_data_collector_out_flow_key";
+    public static final String DEDUP_ENABLED_PROPERTY = "usage.data.collector.transaction.dedup.enabled";
+    public static final String DEDUP_EXPECTED_MESSAGES_PROPERTY =
+            "usage.data.collector.transaction.dedup.expectedMessages";
+    public static final long DEFAULT_DEDUP_EXPECTED_MESSAGES = 100000;
+    public static final double DEDUP_FALSE_POSITIVE_RATE = 0.01;
+
+    // Most used APIs per hour
+    public static final String TOP_APIS_PROPERTY = "usage.data.collector.transaction.topArtifacts";
+    public static final int DEFAULT_TOP_APIS = 10;
+    public static final int TOP_APIS_CAPACITY_FACTOR = 10;
+
+    // Adaptive publish interval bounds, in seconds, and the count above which a window is considered busy.
+    // Windows start hourly and shorten down to 5 minutes on busy gateways.
+    public static final String MIN_PUBLISH_INTERVAL_PROPERTY =
+            "usage.data.collector.transaction.minPublishIntervalSeconds";
+    public static final String MAX_PUBLISH_INTERVAL_PROPERTY =
+            "usage.data.collector.transaction.maxPublishIntervalSeconds";
+    public static final String PUBLISH_TARGET_COUNT_PROPERTY = "usage.data.collector.transaction.publishTargetCount";
+    public static final long DEFAULT_MIN_PUBLISH_INTERVAL_SECONDS = 300;
+    public static final long DEFAULT_MAX_PUBLISH_INTERVAL_SECONDS = 3600;
+    public static final long DEFAULT_PUBLISH_INTERVAL_SECONDS = 3600;
+    public static final long DEFAULT_PUBLISH_TARGET_COUNT = 1000000;
+
+    // Rules that exclude or weight counted transactions, reloaded when the file changes
+    public static final String COUNTING_RULES_FILE_PROPERTY = "usage.data.collector.transaction.countingRulesFile";
+    public static final long COUNTING_RULES_RELOAD_INTERVAL_SECONDS = 30;
+
+    // Frames of streaming sessions are counted per session and drained into the window on rollover.
+    // A session without frames for the idle timeout is considered closed.
+    public static final String STREAM_SESSION_ID = "websocket.source.channel.identifier";
+    public static final String STREAM_SESSION_IDLE_TIMEOUT_PROPERTY =
+            "usage.data.collector.transaction.streamSessionIdleTimeoutSeconds";
+    public static final long DEFAULT_STREAM_SESSION_IDLE_TIMEOUT_SECONDS = 300;
+    public static final int MAX_STREAM_SESSIONS = 100000;
+
+    // Requests that never complete, e.g. dropped ones, stop counting as in flight after this time
+    public static final String IN_FLIGHT_TIMEOUT_PROPERTY = "usage.data.collector.transaction.inFlightTimeoutSeconds";
+    public static final long DEFAULT_IN_FLIGHT_TIMEOUT_SECONDS = 300;
+
+    // API counts are kept in memory from API create and delete notifications, and reconciled with AM_API rarely
+    public static final String API_COUNT_RECONCILE_INTERVAL_PROPERTY =
+            "usage.data.collector.apiCount.reconcileIntervalSeconds";
+    public static final long DEFAULT_API_COUNT_RECONCILE_INTERVAL_SECONDS = 86400;
+    public static final String API_NOTIFIER_TYPE = "API";
+    public static final String API_CREATE_EVENT = "API_CREATE";
+    public static final String API_DELETE_EVENT = "API_DELETE";
+    public static final String API_PRODUCT_CREATE_EVENT = "API_PRODUCT_CREATE";
+    public static final String API_PRODUCT_DELETE_EVENT = "API_PRODUCT_DELETE";
+    public static final String MCP_API_TYPE = "MCP";
+
+    // API counts are the same on every node, so a single node of the cluster, holding a lease row in the APIM
+    // database, collects them. The lease is extended three times per lease duration.
+    public static final String API_COUNT_LEASE_ENABLED_PROPERTY = "usage.data.collector.apiCount.leaseEnabled";
+    public static final String API_COUNT_LEASE_DURATION_PROPERTY =
+            "usage.data.collector.apiCount.leaseDurationSeconds";
+    public static final long DEFAULT_API_COUNT_LEASE_DURATION_SECONDS = 90;
+    public static final String API_COUNT_LEASE_NAME = "APIM_API_COUNT";
+    // With the lease enabled, every node adds the API changes it was notified of to these cluster counters
+    public static final String API_COUNT_COUNTER_NAME = "APIM_API_COUNT_CHANGES";
+    public static final String MCP_API_COUNT_COUNTER_NAME = "APIM_MCP_API_COUNT_CHANGES";
+
+    // JMX view of the local transaction history
+    public static final String HISTORY_MBEAN_NAME = "org.wso2.carbon.usage.data.collector:type=TransactionHistory";
 
     private ApimUsageDataCollectorConstants() {
         // Private constructor to prevent instantiation
@@ -20,6 +20,7 @@ package org.wso2.carbon.usage.data.collector.apim.internal;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -27,11 +28,16 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
+import org.wso2.carbon.apimgt.impl.notifier.Notifier;
 import org.wso2.carbon.usage.data.collector.common.publisher.api.Publisher;
+import org.wso2.carbon.usage.data.collector.common.util.ClusterLease;
+import org.wso2.carbon.usage.data.collector.common.util.MetaInfoHolder;
 import org.wso2.carbon.usage.data.collector.apim.collector.apicount.ApiCountCollector;
 import org.wso2.carbon.usage.data.collector.apim.collector.apicount.ApiCountCollectorTask;
+import org.wso2.carbon.usage.data.collector.apim.collector.apicount.ApiCountNotifier;
 import org.wso2.carbon.usage.data.collector.apim.collector.transaction.counter.TransactionCountHandler;
 
+import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -42,7 +48,7 @@ import java.util.concurrent.TimeUnit;
  * OSGi service component that manages APIM usage data collection.
  * This component coordinates:
  * - Transaction count collection (via Synapse handlers)
- * - API count collection (periodic database queries)
+ * - API count collection (in-memory counts from API notifications, reconciled with the database)
  *
  * Architecture follows the common module's solid implementation pattern.
  */
@@ -61,6 +67,9 @@ public class ApimUsageDataCollectorServiceComponent {
     private Publisher publisher;
     private ScheduledExecutorService apiCountExecutorService;
     private ScheduledFuture<?> apiCountScheduledTask;
+    private ScheduledExecutorService apiCountLeaseExecutorService;
+    private ServiceRegistration<?> apiCountNotifierRegistration;
+    private ClusterLease apiCountLease;
 
     /**
      * Bind the Publisher service.
@@ -100,8 +109,14 @@ public class ApimUsageDataCollectorServiceComponent {
                 return;
             }
 
-            // Create API count collector with publisher
-            ApiCountCollector apiCountCollector = new ApiCountCollector(publisher);
+            // Create API count collector with publisher. The node holding the lease publishes counts changed on
+            // other nodes too, which they share through cluster counters.
+            boolean leaseEnabled = Boolean.getBoolean(ApimUsageDataCollectorConstants.API_COUNT_LEASE_ENABLED_PROPERTY);
+            ApiCountCollector apiCountCollector = new ApiCountCollector(publisher, leaseEnabled);
+
+            // Keep the API counts up to date from API create and delete notifications
+            apiCountNotifierRegistration = context.getBundleContext().registerService(
+                    Notifier.class.getName(), new ApiCountNotifier(apiCountCollector), null);
 
             // Initialize scheduler for API count collection
             apiCountExecutorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
@@ -113,9 +128,14 @@ public class ApimUsageDataCollectorServiceComponent {
                 }
             });
 
+            // A single node of the cluster collects the API counts when the lease is enabled
+            if (leaseEnabled) {
+                scheduleApiCountLeaseHeartbeat();
+            }
+
             // Schedule the API count collection task
             apiCountScheduledTask = apiCountExecutorService.scheduleAtFixedRate(
-                    new ApiCountCollectorTask(apiCountCollector),
+                    new ApiCountCollectorTask(apiCountCollector, publisher, apiCountLease),
                     API_COUNT_INITIAL_DELAY_SECONDS,
                     API_COUNT_INTERVAL_SECONDS,
                     TimeUnit.SECONDS
@@ -129,6 +149,15 @@ public class ApimUsageDataCollectorServiceComponent {
 
     @Deactivate
     protected void deactivate() {
+        if (apiCountNotifierRegistration != null) {
+            try {
+                apiCountNotifierRegistration.unregister();
+            } catch (IllegalStateException e) {
+                // Already unregistered along with the bundle
+            }
+            apiCountNotifierRegistration = null;
+        }
+
         // Stop the API count collector scheduler
         if (apiCountScheduledTask != null) {
             apiCountScheduledTask.cancel(false);
@@ -148,6 +177,65 @@ public class ApimUsageDataCollectorServiceComponent {
                 }
             }
         }
+
+        // Stop renewing the lease before giving it up, so that a heartbeat in progress cannot acquire it again
+        if (apiCountLeaseExecutorService != null) {
+            apiCountLeaseExecutorService.shutdown();
+            try {
+                if (!apiCountLeaseExecutorService.awaitTermination(10, TimeUnit.SECONDS)) {
+                    apiCountLeaseExecutorService.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                apiCountLeaseExecutorService.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            apiCountLeaseExecutorService = null;
+        }
+
+        // Let another node take over the API count collection without waiting for the lease to expire
+        if (apiCountLease != null && publisher != null) {
+            try {
+                apiCountLease.release(publisher.getDataSource());
+            } catch (Exception e) {
+                if(log.isDebugEnabled()) {
+                    log.error("Failed to release the API count cluster lease", e);
+                }
+            }
+            apiCountLease = null;
+        }
+    }
+
+    private void scheduleApiCountLeaseHeartbeat() {
+        long durationSeconds = Math.max(3, Long.getLong(
+                ApimUsageDataCollectorConstants.API_COUNT_LEASE_DURATION_PROPERTY,
+                ApimUsageDataCollectorConstants.DEFAULT_API_COUNT_LEASE_DURATION_SECONDS));
+        // A restarted node gets a new holder id, so it never mistakes the lease of its previous run for its own
+        String holderId = MetaInfoHolder.getNodeId() + ":" + UUID.randomUUID();
+        final ClusterLease lease = new ClusterLease(ApimUsageDataCollectorConstants.API_COUNT_LEASE_NAME,
+                holderId, TimeUnit.SECONDS.toMillis(durationSeconds));
+        final Publisher leasePublisher = publisher;
+        apiCountLease = lease;
+        // The heartbeat has a thread of its own, so that a long API count collection cannot let the lease expire
+        apiCountLeaseExecutorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ApiCountLease-Thread");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        apiCountLeaseExecutorService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    lease.acquire(leasePublisher.getDataSource());
+                } catch (Exception e) {
+                    if(log.isDebugEnabled()) {
+                        log.error("Failed to renew the API count cluster lease", e);
+                    }
+                }
+            }
+        }, 0, durationSeconds / 3, TimeUnit.SECONDS);
     }
 }
 
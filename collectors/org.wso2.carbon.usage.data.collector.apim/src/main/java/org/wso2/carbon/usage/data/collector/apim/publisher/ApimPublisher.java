@@ -296,6 +296,19 @@ public class ApimPublisher implements Publisher {
     private static HttpPost getHttpPost(String url, ApiRequest request) {
         HttpPost httpPost = new HttpPost(url);
 
+        // A request with a deadline, such as the final window on shutdown, splits it across the wait for a pooled
+        // connection, the connect and the response, so that together they stay within it. Other requests keep the
+        // configuration of the client.
+        int timeout = request.getTimeoutMs();
+        if (timeout > 0) {
+            int connectTimeout = timeout / 4;
+            httpPost.setConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(connectTimeout)
+                    .setConnectTimeout(connectTimeout)
+                    .setSocketTimeout(timeout - 2 * connectTimeout)
+                    .build());
+        }
+
         // Set custom headers from request
         if (request.getHeaders() != null) {
             for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
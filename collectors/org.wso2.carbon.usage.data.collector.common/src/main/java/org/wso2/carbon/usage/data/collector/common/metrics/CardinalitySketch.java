@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Immutable, mergeable HyperLogLog register snapshot of a window.
+ *
+ * <p>The serialized form is the Base64 encoding of one precision byte followed by one byte per
+ * register. Sketches of the same precision from different nodes or windows are merged by taking the
+ * register-wise maximum, which gives the distinct count of the union.</p>
+ */
+public class CardinalitySketch {
+
+    private final int precision;
+    private final byte[] registers;
+
+    CardinalitySketch(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    /**
+     * Returns the estimated number of distinct values in the sketch.
+     */
+    public long estimate() {
+        int registerCount = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / registerCount);
+        double estimate = alpha * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            // Linear counting is more accurate for small cardinalities
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Returns a sketch of the union of this sketch and another sketch of the same precision.
+     *
+     * @param other The sketch to merge with
+     * @return The merged sketch
+     */
+    public CardinalitySketch merge(CardinalitySketch other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of precision " + precision + " and " +
+                    other.precision);
+        }
+        byte[] merged = Arrays.copyOf(registers, registers.length);
+        for (int i = 0; i < merged.length; i++) {
+            if (other.registers[i] > merged[i]) {
+                merged[i] = other.registers[i];
+            }
+        }
+        return new CardinalitySketch(precision, merged);
+    }
+
+    public String serialize() {
+        byte[] bytes = new byte[registers.length + 1];
+        bytes[0] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * Restores a sketch from its {@link #serialize()} form.
+     *
+     * @param serialized The Base64 encoded sketch
+     * @return The sketch
+     * @throws IllegalArgumentException If the value is not a serialized sketch
+     */
+    public static CardinalitySketch deserialize(String serialized) {
+        byte[] bytes = Base64.getDecoder().decode(serialized);
+        if (bytes.length < 2 || bytes.length - 1 != 1 << bytes[0]) {
+            throw new IllegalArgumentException("Invalid cardinality sketch");
+        }
+        return new CardinalitySketch(bytes[0], Arrays.copyOfRange(bytes, 1, bytes.length));
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-flight gauge that remembers its high-water mark for the current window.
+ *
+ * <p>A request that never completes, e.g. because it was dropped or answered by the transport without a response
+ * flow, stops counting once it has been in flight for longer than the time to live, instead of raising the gauge for
+ * good. Requests are not tracked one by one for that: they are counted in buckets by their start time, an eighth of
+ * the time to live wide, and a bucket is dropped as a whole once all its requests are older than the time to live.
+ * Counting a request therefore only updates a few atomic counters, apart from the first request of a bucket.</p>
+ *
+ * <p>Each request must be counted once and completed at most once, with the start time it was counted with.</p>
+ */
+public class ConcurrencyGauge {
+
+    private static final int BUCKETS = 8;
+    // One more slot than the live buckets, so that the slot of a new bucket never holds a live one
+    private static final int SLOTS = BUCKETS + 2;
+    private static final long EXPIRED = Long.MIN_VALUE;
+
+    private final long bucketNanos;
+    private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(SLOTS);
+    private final AtomicLong current = new AtomicLong(0);
+    private final AtomicLong peak = new AtomicLong(0);
+    private volatile long windowStart;
+
+    /**
+     * @param timeToLiveMillis Time after which a request that has not completed is no longer counted
+     */
+    public ConcurrencyGauge(long timeToLiveMillis) {
+        this.bucketNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis) / BUCKETS);
+    }
+
+    /**
+     * Counts a request as in flight.
+     *
+     * @param startNanos The {@link System#nanoTime()} the request started at
+     */
+    public void increment(long startNanos) {
+        Bucket bucket = getBucket(Math.floorDiv(startNanos, bucketNanos));
+        if (bucket == null || !bucket.add()) {
+            // Started longer than the time to live ago
+            return;
+        }
+        long value = current.incrementAndGet();
+        long currentPeak = peak.get();
+        while (value > currentPeak && !peak.compareAndSet(currentPeak, value)) {
+            currentPeak = peak.get();
+        }
+    }
+
+    /**
+     * Counts a request as completed. Requests that are not counted any more, because they have expired, are
+     * ignored, so a late completion cannot skew later windows.
+     *
+     * @param startNanos The start time passed to {@link #increment}
+     */
+    public void decrement(long startNanos) {
+        long epoch = Math.floorDiv(startNanos, bucketNanos);
+        Bucket bucket = buckets.get(slot(epoch));
+        if (bucket != null && bucket.epoch == epoch && bucket.remove()) {
+            current.decrementAndGet();
+        }
+    }
+
+    public long getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * Returns the in-flight value the current window started from, i.e. the requests carried over from the
+     * previous window.
+     */
+    public long getWindowStart() {
+        return windowStart;
+    }
+
+    /**
+     * Stops counting the requests that have been in flight for longer than the time to live.
+     */
+    public void expire() {
+        long oldestLive = Math.floorDiv(System.nanoTime(), bucketNanos) - BUCKETS;
+        for (int i = 0; i < SLOTS; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.epoch < oldestLive) {
+                expire(bucket);
+            }
+        }
+    }
+
+    /**
+     * Returns the high-water mark of the window and starts the next window from the current in-flight value,
+     * after expiring the requests that have been in flight for too long.
+     *
+     * @return The peak in-flight value since the previous call
+     */
+    public long getPeakAndReset() {
+        expire();
+        long next = current.get();
+        windowStart = next;
+        return peak.getAndSet(next);
+    }
+
+    private Bucket getBucket(long epoch) {
+        int slot = slot(epoch);
+        Bucket bucket = buckets.get(slot);
+        if (bucket != null && bucket.epoch == epoch) {
+            return bucket;
+        }
+        synchronized (this) {
+            bucket = buckets.get(slot);
+            if (bucket != null) {
+                if (bucket.epoch == epoch) {
+                    return bucket;
+                }
+                if (bucket.epoch > epoch) {
+                    return null;
+                }
+                // The previous bucket of the slot started more than the time to live ago
+                expire(bucket);
+            }
+            Bucket next = new Bucket(epoch);
+            buckets.set(slot, next);
+            return next;
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        long count = bucket.count.getAndSet(EXPIRED);
+        if (count > 0) {
+            current.addAndGet(-count);
+        }
+    }
+
+    private static int slot(long epoch) {
+        return (int) Math.floorMod(epoch, (long) SLOTS);
+    }
+
+    /**
+     * Requests in flight that started in the same bucket of time. Once expired, the count is left negative, so
+     * that the requests of the bucket are neither counted nor completed any more.
+     */
+    private static final class Bucket {
+
+        private final long epoch;
+        private final AtomicLong count = new AtomicLong();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+
+        boolean add() {
+            long value;
+            do {
+                value = count.get();
+                if (value < 0) {
+                    return false;
+                }
+            } while (!count.compareAndSet(value, value + 1));
+            return true;
+        }
+
+        boolean remove() {
+            long value;
+            do {
+                value = count.get();
+                if (value <= 0) {
+                    return false;
+                }
+            } while (!count.compareAndSet(value, value - 1));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+/**
+ * Coarse fault categories used to classify failed transactions by their Synapse / API Manager error code.
+ */
+public enum ErrorCategory {
+
+    TIMEOUT("ERROR_TIMEOUT"),
+    CONNECTION("ERROR_CONNECTION"),
+    ENDPOINT("ERROR_ENDPOINT"),
+    AUTH("ERROR_AUTH"),
+    THROTTLED("ERROR_THROTTLED"),
+    OTHER("ERROR_OTHER");
+
+    private static final ErrorCategory[] VALUES = values();
+
+    private final String usageType;
+
+    ErrorCategory(String usageType) {
+        this.usageType = usageType;
+    }
+
+    /**
+     * Returns the name under which the error count of this category is published.
+     */
+    public String getUsageType() {
+        return usageType;
+    }
+
+    public static int count() {
+        return VALUES.length;
+    }
+
+    /**
+     * Classifies an error code set in the ERROR_CODE message context property.
+     *
+     * <ul>
+     *   <li>101504, 101508 - transport send / connect timeout</li>
+     *   <li>1015xx - other transport level connection failures</li>
+     *   <li>303xxx - endpoint failures (address, load-balance, failover, ...)</li>
+     *   <li>9009xx - API Manager authentication and authorization failures</li>
+     *   <li>9008xx - API Manager throttling</li>
+     * </ul>
+     *
+     * @param errorCode The error code, or a negative value when the fault carried no code
+     * @return The category of the error code
+     */
+    public static ErrorCategory fromErrorCode(int errorCode) {
+        if (errorCode == 101504 || errorCode == 101508) {
+            return TIMEOUT;
+        }
+        if (errorCode >= 101500 && errorCode < 101600) {
+            return CONNECTION;
+        }
+        if (errorCode >= 303000 && errorCode < 304000) {
+            return ENDPOINT;
+        }
+        if (errorCode >= 900900 && errorCode < 901000) {
+            return AUTH;
+        }
+        if (errorCode >= 900800 && errorCode < 900900) {
+            return THROTTLED;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-window error counters, one striped counter per {@link ErrorCategory}.
+ */
+public class ErrorCounter {
+
+    private final LongAdder[] counters = new LongAdder[ErrorCategory.count()];
+
+    public ErrorCounter() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts a failed transaction under the category of its error code.
+     *
+     * @param errorCode The error code, or a negative value when the fault carried no code
+     */
+    public void record(int errorCode) {
+        counters[ErrorCategory.fromErrorCode(errorCode).ordinal()].increment();
+    }
+
+    /**
+     * Drains the counters for the next window.
+     *
+     * @return The error counts of the window, indexed by {@link ErrorCategory#ordinal()}
+     */
+    public long[] snapshotAndReset() {
+        long[] counts = new long[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            counts[i] = counters[i].sumThenReset();
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded-memory tracker of the most frequent keys of a window, using the Space-Saving algorithm.
+ *
+ * <p>At most {@code capacity} keys are monitored at any time, kept in an array-backed min-heap ordered by
+ * count. A key that is not monitored replaces the least frequent one and inherits its count as the
+ * error, so the reported count of a key never underestimates and overestimates by at most
+ * {@link HeavyHitter#getError()}. Every key that occurs more than {@code total / capacity} times is
+ * guaranteed to be monitored. Updates are O(log capacity) and memory does not depend on how many
+ * distinct keys are seen.</p>
+ *
+ * <p>Keys are counted on the mediation threads, so the tracker is striped: every thread counts into one of a
+ * few summaries, each with a lock of its own, and the summaries are merged when the window is drained. A key
+ * missing from a full summary may have occurred there up to the smallest count of that summary, which is added
+ * to both its merged count and its error, so the merged counts keep the same guarantees.</p>
+ */
+public class HeavyHitters {
+
+    private static final int MAX_STRIPES = 16;
+
+    private final Summary[] stripes;
+    private final int mask;
+
+    /**
+     * @param capacity The number of keys monitored by every stripe
+     */
+    public HeavyHitters(int capacity) {
+        this(capacity, Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param capacity The number of keys monitored by every stripe
+     * @param stripes The number of stripes, rounded up to a power of two
+     */
+    public HeavyHitters(int capacity, int stripes) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int stripeCount = Integer.highestOneBit(Math.max(1, stripes));
+        if (stripeCount < stripes) {
+            stripeCount <<= 1;
+        }
+        this.stripes = new Summary[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Summary(capacity);
+        }
+        this.mask = stripeCount - 1;
+    }
+
+    /**
+     * Counts one occurrence of a key. Null values are ignored.
+     *
+     * @param key The key to count
+     */
+    public void add(String key) {
+        if (key == null) {
+            return;
+        }
+        Summary stripe = stripes[(int) Thread.currentThread().getId() & mask];
+        synchronized (stripe) {
+            stripe.add(key);
+        }
+    }
+
+    /**
+     * Returns the most frequent keys of the window, most frequent first, and resets the tracker.
+     *
+     * @param limit The maximum number of keys to return
+     * @return The heavy hitters of the window
+     */
+    public List<HeavyHitter> snapshotAndReset(int limit) {
+        List<List<HeavyHitter>> snapshots = new ArrayList<>(stripes.length);
+        long[] minimums = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            Summary stripe = stripes[i];
+            synchronized (stripe) {
+                minimums[i] = stripe.isFull() ? stripe.getMinimum() : 0;
+                snapshots.add(stripe.snapshotAndReset());
+            }
+        }
+        List<HeavyHitter> hitters = snapshots.size() == 1 ? snapshots.get(0) : merge(snapshots, minimums);
+        Collections.sort(hitters, (first, second) -> Long.compare(second.getCount(), first.getCount()));
+        return hitters.size() > limit ? new ArrayList<>(hitters.subList(0, limit)) : hitters;
+    }
+
+    private static List<HeavyHitter> merge(List<List<HeavyHitter>> snapshots, long[] minimums) {
+        long sum = 0;
+        for (long minimum : minimums) {
+            sum += minimum;
+        }
+        final long missingTotal = sum;
+        // Start every key as missing from all stripes, then replace the minimum of every stripe it was found in
+        Map<String, long[]> merged = new HashMap<>();
+        for (int i = 0; i < snapshots.size(); i++) {
+            for (HeavyHitter hitter : snapshots.get(i)) {
+                long[] totals = merged.computeIfAbsent(hitter.getKey(), key -> new long[]{missingTotal, missingTotal});
+                totals[0] += hitter.getCount() - minimums[i];
+                totals[1] += hitter.getError() - minimums[i];
+            }
+        }
+        List<HeavyHitter> hitters = new ArrayList<>(merged.size());
+        for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+            hitters.add(new HeavyHitter(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        }
+        return hitters;
+    }
+
+    /**
+     * A single Space-Saving summary. Not thread safe, every stripe is guarded by its own lock.
+     */
+    private static class Summary {
+
+        private final int capacity;
+        private final String[] keys;
+        private final long[] counts;
+        private final long[] errors;
+        private final Map<String, Integer> positions;
+        private int size;
+
+        Summary(int capacity) {
+            this.capacity = capacity;
+            this.keys = new String[capacity];
+            this.counts = new long[capacity];
+            this.errors = new long[capacity];
+            this.positions = new HashMap<>(capacity * 2);
+        }
+
+        void add(String key) {
+            Integer position = positions.get(key);
+            if (position != null) {
+                counts[position]++;
+                siftDown(position);
+            } else if (size < capacity) {
+                keys[size] = key;
+                counts[size] = 1;
+                errors[size] = 0;
+                positions.put(key, size);
+                siftUp(size++);
+            } else {
+                // Replace the least frequent key, which is at the root of the heap
+                positions.remove(keys[0]);
+                keys[0] = key;
+                errors[0] = counts[0];
+                counts[0]++;
+                positions.put(key, 0);
+                siftDown(0);
+            }
+        }
+
+        boolean isFull() {
+            return size == capacity;
+        }
+
+        long getMinimum() {
+            return size > 0 ? counts[0] : 0;
+        }
+
+        List<HeavyHitter> snapshotAndReset() {
+            List<HeavyHitter> hitters = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                hitters.add(new HeavyHitter(keys[i], counts[i], errors[i]));
+                keys[i] = null;
+            }
+            positions.clear();
+            size = 0;
+            return hitters;
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (counts[parent] <= counts[position]) {
+                    return;
+                }
+                swap(position, parent);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int smallest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < size && counts[left] < counts[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && counts[right] < counts[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == position) {
+                    return;
+                }
+                swap(position, smallest);
+                position = smallest;
+            }
+        }
+
+        private void swap(int first, int second) {
+            String key = keys[first];
+            keys[first] = keys[second];
+            keys[second] = key;
+            long count = counts[first];
+            counts[first] = counts[second];
+            counts[second] = count;
+            long error = errors[first];
+            errors[first] = errors[second];
+            errors[second] = error;
+            positions.put(keys[first], first);
+            positions.put(keys[second], second);
+        }
+    }
+
+    /**
+     * A frequent key with its estimated count and the maximum overestimation of that count.
+     */
+    public static class HeavyHitter {
+
+        private final String key;
+        private final long count;
+        private final long error;
+
+        public HeavyHitter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "HeavyHitter{" +
+                    "key='" + key + '\'' +
+                    ", count=" + count +
+                    ", error=" + error +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Derives the peak per-second rate of a window from a ring of one-second buckets.
+ *
+ * <p>Each bucket is tagged with the epoch second it counts. The first writer of a new second takes
+ * over the bucket and folds the finished second into the peak, so the hot path is a single atomic
+ * add in the common case. Adds that race with a bucket takeover may be attributed to the adjacent
+ * second, which only affects the peak at second boundaries.</p>
+ */
+public class PeakRateTracker {
+
+    private static final int BUCKET_COUNT = 64;
+    private static final int BUCKET_MASK = BUCKET_COUNT - 1;
+
+    private final AtomicLongArray bucketSeconds = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong peak = new AtomicLong(0);
+
+    public void add(long count) {
+        add(count, System.currentTimeMillis() / 1000);
+    }
+
+    void add(long count, long epochSecond) {
+        int index = (int) (epochSecond & BUCKET_MASK);
+        long bucketSecond = bucketSeconds.get(index);
+        if (bucketSecond != epochSecond && bucketSeconds.compareAndSet(index, bucketSecond, epochSecond)) {
+            updatePeak(bucketCounts.getAndSet(index, count));
+            return;
+        }
+        bucketCounts.addAndGet(index, count);
+    }
+
+    /**
+     * Returns the highest one-second count seen since the previous call, including seconds that are still open.
+     *
+     * @return The peak per-second rate of the window
+     */
+    public long getPeakAndReset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            updatePeak(bucketCounts.getAndSet(i, 0));
+        }
+        return peak.getAndSet(0);
+    }
+
+    /**
+     * Returns the peak as {@link #getPeakAndReset()} does, raised by the average per-second rate of transactions
+     * that were counted for the whole period instead of per second, such as the frames of streaming sessions.
+     *
+     * @param periodCount The transactions counted for the period
+     * @param periodMillis The length of the period
+     * @return The peak per-second rate of the window
+     */
+    public long getPeakAndReset(long periodCount, long periodMillis) {
+        long peakRate = getPeakAndReset();
+        if (periodCount <= 0) {
+            return peakRate;
+        }
+        long periodSeconds = Math.max(1, (periodMillis + 999) / 1000);
+        return peakRate + (periodCount + periodSeconds - 1) / periodSeconds;
+    }
+
+    private void updatePeak(long value) {
+        long currentPeak = peak.get();
+        while (value > currentPeak && !peak.compareAndSet(currentPeak, value)) {
+            currentPeak = peak.get();
+        }
+    }
+}
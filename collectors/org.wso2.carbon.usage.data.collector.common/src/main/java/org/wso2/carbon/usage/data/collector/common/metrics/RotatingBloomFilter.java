@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory duplicate detector built from a rotating pair of Bloom filters.
+ *
+ * <p>Keys are inserted into the current filter and looked up in both the current and the previous one,
+ * so a key is remembered for at least one and at most two windows. {@link #rotate()} is called at every
+ * window rollover. It discards the previous filter and reuses its memory as the new current filter.
+ * The filters are sized from the expected number of distinct keys per window and the target
+ * false-positive rate. A false positive makes one genuine key look like a duplicate.</p>
+ *
+ * <p>The false-positive rate climbs quickly once a filter holds more keys than it was sized for. The new keys of
+ * each window are therefore counted, and once the current filter is full no more keys are inserted and every key
+ * is reported as new until the next rotation. Counting a duplicate is preferred over dropping a genuine key.</p>
+ *
+ * <p>Concurrent inserts of the same key may both be reported as new. This only matters for keys
+ * inserted at exactly the same time, which is not the case for retried or re-sent messages.</p>
+ */
+public class RotatingBloomFilter {
+
+    private final int bitCount;
+    private final int hashCount;
+    private final long capacity;
+    private volatile AtomicLongArray current;
+    private volatile AtomicLongArray previous;
+    private volatile AtomicLong currentInsertions = new AtomicLong();
+
+    /**
+     * @param expectedInsertions  Expected number of distinct keys per window
+     * @param falsePositiveRate   Target false-positive rate, e.g. 0.01
+     */
+    public RotatingBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long insertions = Math.max(1, expectedInsertions);
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        // Round up to whole words and keep the array within int indexing
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63L, Math.max(64, (bits + 63) & ~63L));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / insertions * ln2));
+        this.capacity = insertions;
+        this.current = new AtomicLongArray(bitCount / 64);
+        this.previous = new AtomicLongArray(bitCount / 64);
+    }
+
+    /**
+     * Inserts a key unless it has already been seen in the current or the previous window.
+     *
+     * @param key The key to insert
+     * @return true if the key was not seen before or the filter is over capacity, false if it is (probably)
+     *         a duplicate
+     */
+    public boolean add(String key) {
+        AtomicLong insertions = currentInsertions;
+        if (insertions.get() >= capacity) {
+            insertions.incrementAndGet();
+            return true;
+        }
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        AtomicLongArray currentBits = current;
+        AtomicLongArray previousBits = previous;
+        boolean inCurrent = true;
+        boolean inPrevious = true;
+        for (int i = 1; i <= hashCount; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+            if (!setBit(currentBits, bit)) {
+                inCurrent = false;
+            }
+            if (inPrevious && !isSet(previousBits, bit)) {
+                inPrevious = false;
+            }
+        }
+        if (inCurrent || inPrevious) {
+            return false;
+        }
+        insertions.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns the number of distinct keys per window the filter was sized for.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Starts a new window. Keys inserted in the window before the previous one are forgotten.
+     *
+     * @return The number of keys reported as new in the window that ended. Duplicates were not suppressed for
+     *         the keys above {@link #getCapacity()}.
+     */
+    public synchronized long rotate() {
+        AtomicLongArray recycled = previous;
+        long ended = currentInsertions.get();
+        previous = current;
+        for (int i = 0; i < recycled.length(); i++) {
+            recycled.set(i, 0);
+        }
+        current = recycled;
+        currentInsertions = new AtomicLong();
+        return ended;
+    }
+
+    /**
+     * Sets a bit and reports whether it was already set.
+     */
+    private static boolean setBit(AtomicLongArray bits, int bit) {
+        int index = bit >>> 6;
+        long mask = 1L << bit;
+        long word = bits.get(index);
+        while ((word & mask) == 0) {
+            if (bits.compareAndSet(index, word, word | mask)) {
+                return false;
+            }
+            word = bits.get(index);
+        }
+        return true;
+    }
+
+    private static boolean isSet(AtomicLongArray bits, int bit) {
+        return (bits.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+/**
+ * Immutable result of draining a {@link StreamSessionTracker} at the end of a window.
+ */
+public class StreamSessionSummary {
+
+    public static final StreamSessionSummary EMPTY = new StreamSessionSummary(0, 0, 0, 0, 0, 0,
+            LatencySummary.EMPTY);
+
+    private final long frames;
+    private final long bytes;
+    private final long activeSessions;
+    private final long closedSessions;
+    private final long closedSessionFrames;
+    private final long maxSessionFrames;
+    private final LatencySummary durationSeconds;
+
+    public StreamSessionSummary(long frames, long bytes, long activeSessions, long closedSessions,
+                                long closedSessionFrames, long maxSessionFrames, LatencySummary durationSeconds) {
+        this.frames = frames;
+        this.bytes = bytes;
+        this.activeSessions = activeSessions;
+        this.closedSessions = closedSessions;
+        this.closedSessionFrames = closedSessionFrames;
+        this.maxSessionFrames = maxSessionFrames;
+        this.durationSeconds = durationSeconds;
+    }
+
+    /**
+     * Returns the frames received by all sessions during the window.
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Returns the request bytes of the frames received by all sessions during the window.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the sessions still open at the end of the window.
+     */
+    public long getActiveSessions() {
+        return activeSessions;
+    }
+
+    /**
+     * Returns the sessions closed during the window.
+     */
+    public long getClosedSessions() {
+        return closedSessions;
+    }
+
+    /**
+     * Returns the frames received over the whole lifetime of the sessions closed during the window.
+     */
+    public long getClosedSessionFrames() {
+        return closedSessionFrames;
+    }
+
+    public long getMaxSessionFrames() {
+        return maxSessionFrames;
+    }
+
+    /**
+     * Returns the duration percentiles, in seconds, of the sessions closed during the window.
+     */
+    public LatencySummary getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamSessionSummary{" +
+                "frames=" + frames +
+                ", bytes=" + bytes +
+                ", activeSessions=" + activeSessions +
+                ", closedSessions=" + closedSessions +
+                ", closedSessionFrames=" + closedSessionFrames +
+                ", maxSessionFrames=" + maxSessionFrames +
+                ", durationSeconds=" + durationSeconds +
+                '}';
+    }
+}
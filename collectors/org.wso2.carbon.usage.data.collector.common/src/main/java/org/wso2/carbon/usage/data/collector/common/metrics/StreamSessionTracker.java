@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the frames of streaming sessions (WebSocket connections and the like) in a counter of their own, so that
+ * a chatty session does not update the shared window counters for every frame. The request bytes of the frames
+ * are kept with the session as well.
+ *
+ * <p>The frames of every session are drained into the window on rollover. A session that has not received a frame
+ * for the idle timeout is considered closed, and its frame count and duration are added to the statistics of the
+ * window it closed in.</p>
+ */
+public class StreamSessionTracker {
+
+    /**
+     * The frames could not be tracked, because the session was closed concurrently or too many sessions are open.
+     */
+    public static final int UNTRACKED = 0;
+    /**
+     * The frames were added to a session that was already tracked.
+     */
+    public static final int TRACKED = 1;
+    /**
+     * The frames opened a new session.
+     */
+    public static final int OPENED = 2;
+
+    // Marks the frame counter of a closed session, any frame added afterwards leaves it negative
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long idleTimeoutMillis;
+    private final int maxSessions;
+
+    public StreamSessionTracker(long idleTimeoutMillis, int maxSessions) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Records frames received on a session. Bytes of frames that race with the close of their idle session may be
+     * counted both with the session and by the caller.
+     *
+     * @param sessionId The session the frames belong to
+     * @param frames The number of frames
+     * @param bytes The request bytes of the frames
+     * @param now The current time in milliseconds
+     * @return {@link #OPENED} or {@link #TRACKED} if the frames were recorded with the session, {@link #UNTRACKED}
+     * if they could not be, in which case the caller counts the frames and bytes directly
+     */
+    public int recordFrames(String sessionId, long frames, long bytes, long now) {
+        int result = TRACKED;
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            if (sessions.size() >= maxSessions) {
+                return UNTRACKED;
+            }
+            Session created = new Session(now);
+            session = sessions.putIfAbsent(sessionId, created);
+            if (session == null) {
+                session = created;
+                result = OPENED;
+            }
+        }
+        if (bytes > 0) {
+            session.pendingBytes.addAndGet(bytes);
+        }
+        if (session.pendingFrames.addAndGet(frames) < 0) {
+            return UNTRACKED;
+        }
+        session.lastFrameTime = now;
+        return result;
+    }
+
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Drains the frames of all sessions and closes the sessions that are idle. Must not be called concurrently.
+     *
+     * @param now The end of the window in milliseconds
+     * @param closeAll true to close every session, e.g. on shutdown
+     * @return The frames and session statistics of the window
+     */
+    public StreamSessionSummary drain(long now, boolean closeAll) {
+        long frames = 0;
+        long bytes = 0;
+        long closedSessions = 0;
+        long closedSessionFrames = 0;
+        long maxSessionFrames = 0;
+        LatencyHistogram durations = new LatencyHistogram();
+        Iterator<Session> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            Session session = iterator.next();
+            boolean close = closeAll || now - session.lastFrameTime >= idleTimeoutMillis;
+            long pending = session.pendingFrames.getAndSet(close ? CLOSED : 0);
+            bytes += session.pendingBytes.getAndSet(0);
+            frames += pending;
+            session.totalFrames += pending;
+            if (close) {
+                iterator.remove();
+                closedSessions++;
+                closedSessionFrames += session.totalFrames;
+                maxSessionFrames = Math.max(maxSessionFrames, session.totalFrames);
+                durations.record((session.lastFrameTime - session.startTime) / 1000);
+            }
+        }
+        return new StreamSessionSummary(frames, bytes, sessions.size(), closedSessions, closedSessionFrames,
+                maxSessionFrames, durations.snapshotAndReset());
+    }
+
+    private static final class Session {
+
+        private final long startTime;
+        private final AtomicLong pendingFrames = new AtomicLong(0);
+        private final AtomicLong pendingBytes = new AtomicLong(0);
+        private volatile long lastFrameTime;
+        // Only updated by the draining thread
+        private long totalFrames;
+
+        private Session(long startTime) {
+            this.startTime = startTime;
+            this.lastFrameTime = startTime;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Fixed-size, multi-resolution history of published usage counts.
+ *
+ * <p>Every published window is added to three rings of primitive buckets at once: 120 one-minute buckets,
+ * 48 one-hour buckets and 35 one-day buckets, so a query over the last N minutes, hours or days reads at
+ * most N buckets of the matching resolution. Each bucket remembers the period it belongs to, and a bucket
+ * of an older period is cleared when the ring wraps around to it. A window is attributed to the minute
+ * in which it was recorded.</p>
+ */
+public class UsageHistory implements UsageHistoryMBean {
+
+    private final Ring minutes = new Ring(TimeUnit.MINUTES.toMillis(1), 120);
+    private final Ring hours = new Ring(TimeUnit.HOURS.toMillis(1), 48);
+    private final Ring days = new Ring(TimeUnit.DAYS.toMillis(1), 35);
+    private final LongSupplier currentWindowCount;
+
+    /**
+     * @param currentWindowCount Supplies the count of the window in progress, which is added to every query
+     */
+    public UsageHistory(LongSupplier currentWindowCount) {
+        this.currentWindowCount = currentWindowCount;
+    }
+
+    /**
+     * Records the count of a completed window.
+     *
+     * @param count           The count of the window
+     * @param timestampMillis The time the window was completed
+     */
+    public synchronized void record(long count, long timestampMillis) {
+        minutes.add(count, timestampMillis);
+        hours.add(count, timestampMillis);
+        days.add(count, timestampMillis);
+    }
+
+    @Override
+    public long getCurrentWindowCount() {
+        return currentWindowCount.getAsLong();
+    }
+
+    @Override
+    public long getCountInLastMinutes(int minuteCount) {
+        return sum(minutes, minuteCount, System.currentTimeMillis()) + getCurrentWindowCount();
+    }
+
+    @Override
+    public long getCountInLastHours(int hourCount) {
+        return sum(hours, hourCount, System.currentTimeMillis()) + getCurrentWindowCount();
+    }
+
+    @Override
+    public long getCountInLastDays(int dayCount) {
+        return sum(days, dayCount, System.currentTimeMillis()) + getCurrentWindowCount();
+    }
+
+    private synchronized long sum(Ring ring, int periodCount, long nowMillis) {
+        return ring.sum(periodCount, nowMillis);
+    }
+
+    /**
+     * Ring of buckets of a single resolution.
+     */
+    private static final class Ring {
+
+        private final long periodMillis;
+        private final long[] counts;
+        private final long[] periods;
+
+        private Ring(long periodMillis, int bucketCount) {
+            this.periodMillis = periodMillis;
+            this.counts = new long[bucketCount];
+            this.periods = new long[bucketCount];
+            Arrays.fill(periods, -1);
+        }
+
+        private void add(long count, long timestampMillis) {
+            long period = timestampMillis / periodMillis;
+            int bucket = (int) (period % counts.length);
+            if (periods[bucket] > period) {
+                // Older than the history kept at this resolution, e.g. after a clock change
+                return;
+            }
+            if (periods[bucket] != period) {
+                periods[bucket] = period;
+                counts[bucket] = 0;
+            }
+            counts[bucket] += count;
+        }
+
+        /**
+         * Sums the bucket of the current period and the buckets of the {@code periodCount - 1} periods before it.
+         */
+        private long sum(int periodCount, long nowMillis) {
+            if (periodCount <= 0) {
+                return 0;
+            }
+            if (periodCount > counts.length) {
+                throw new IllegalArgumentException("Only the last " + counts.length + " periods are kept");
+            }
+            long currentPeriod = nowMillis / periodMillis;
+            long total = 0;
+            for (long period = currentPeriod - periodCount + 1; period <= currentPeriod; period++) {
+                int bucket = (int) (period % counts.length);
+                if (periods[bucket] == period) {
+                    total += counts[bucket];
+                }
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+/**
+ * JMX view of a {@link UsageHistory}, for operators to check the usage of a node locally.
+ */
+public interface UsageHistoryMBean {
+
+    /**
+     * Returns the count of the window that is in progress and not yet recorded in the history.
+     */
+    long getCurrentWindowCount();
+
+    /**
+     * Returns the count of the last {@code minutes} minutes, including the current minute and the window
+     * in progress. At most 120 minutes are kept.
+     */
+    long getCountInLastMinutes(int minutes);
+
+    /**
+     * Returns the count of the last {@code hours} hours, including the current hour and the window in
+     * progress. At most 48 hours are kept.
+     */
+    long getCountInLastHours(int hours);
+
+    /**
+     * Returns the count of the last {@code days} days (UTC), including the current day and the window in
+     * progress. At most 35 days are kept.
+     */
+    long getCountInLastDays(int days);
+}
@@ -64,6 +64,10 @@ public class ApiRequest {
         return httpMethod;
     }
 
+    /**
+     * @return The timeout of the request in milliseconds, or 0 if not set, in which case the publisher applies
+     * its own default
+     */
     public int getTimeoutMs() {
         return timeoutMs;
     }
@@ -78,7 +82,7 @@ public class ApiRequest {
         private final Map<String, String> headers = new HashMap<>();
         private final Map<String, String> queryParams = new HashMap<>();
         private String httpMethod = "POST";
-        private int timeoutMs = 10000;
+        private int timeoutMs;
         private int retryCount = 3;
 
         public Builder withData(Object data) {
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.publisher.api.model;
+
+import org.wso2.carbon.usage.data.collector.common.metrics.CardinalitySketch;
+import org.wso2.carbon.usage.data.collector.common.metrics.ErrorCategory;
+import org.wso2.carbon.usage.data.collector.common.metrics.HeavyHitters;
+import org.wso2.carbon.usage.data.collector.common.metrics.LatencySummary;
+import org.wso2.carbon.usage.data.collector.common.metrics.StreamSessionSummary;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the attributes that a transaction usage count carries for the metrics of its window, so that all
+ * metrics of a window are published in a single payload. Metrics that the window did not record are left out.
+ */
+public class TransactionAttributes {
+
+    private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+    /**
+     * Adds the window the metrics cover. Windows are aligned to multiples of their interval since the epoch, so
+     * that the receiver can merge windows of different nodes and intervals.
+     *
+     * @param windowStart     Start of the window as an ISO-8601 UTC time
+     * @param windowEnd       End of the window as an ISO-8601 UTC time
+     * @param intervalSeconds Publish interval the window was scheduled with, in seconds
+     */
+    public TransactionAttributes withWindow(String windowStart, String windowEnd, long intervalSeconds) {
+        if (windowStart != null && windowEnd != null) {
+            attributes.put("windowStart", windowStart);
+            attributes.put("windowEnd", windowEnd);
+        }
+        return withPositive("intervalSeconds", intervalSeconds);
+    }
+
+    /**
+     * @param windowStartMillis Start of the window
+     * @param windowEndMillis   End of the window
+     * @param intervalMillis    Publish interval the window was scheduled with
+     */
+    public TransactionAttributes withWindow(long windowStartMillis, long windowEndMillis, long intervalMillis) {
+        return withWindow(ISO_FORMATTER.format(Instant.ofEpochMilli(windowStartMillis)),
+                ISO_FORMATTER.format(Instant.ofEpochMilli(windowEndMillis)),
+                TimeUnit.MILLISECONDS.toSeconds(intervalMillis));
+    }
+
+    /**
+     * @param latency Mediation latency percentiles of the window, in microseconds
+     */
+    public TransactionAttributes withLatency(LatencySummary latency) {
+        if (latency != null && !latency.isEmpty()) {
+            Map<String, Object> percentiles = new LinkedHashMap<>();
+            percentiles.put("p50", latency.getP50());
+            percentiles.put("p90", latency.getP90());
+            percentiles.put("p99", latency.getP99());
+            percentiles.put("max", latency.getMax());
+            attributes.put("latencyMicros", percentiles);
+        }
+        return this;
+    }
+
+    public TransactionAttributes withRequestBytes(long requestBytes) {
+        return withPositive("requestBytes", requestBytes);
+    }
+
+    public TransactionAttributes withResponseBytes(long responseBytes) {
+        return withPositive("responseBytes", responseBytes);
+    }
+
+    public TransactionAttributes withPeakConcurrency(long peakConcurrency) {
+        return withPositive("peakConcurrency", peakConcurrency);
+    }
+
+    public TransactionAttributes withPeakTps(long peakTps) {
+        return withPositive("peakTps", peakTps);
+    }
+
+    /**
+     * @param errorCounts Error counts indexed by {@link ErrorCategory#ordinal()}
+     */
+    public TransactionAttributes withErrorCounts(long[] errorCounts) {
+        if (errorCounts == null) {
+            return this;
+        }
+        Map<String, Object> errors = new LinkedHashMap<>();
+        for (ErrorCategory category : ErrorCategory.values()) {
+            if (errorCounts[category.ordinal()] > 0) {
+                errors.put(category.getUsageType(), errorCounts[category.ordinal()]);
+            }
+        }
+        if (!errors.isEmpty()) {
+            attributes.put("errors", errors);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a distinct count along with its serialized sketch, so that the receiver can merge the sketches of
+     * several nodes and windows instead of summing their estimates.
+     */
+    public TransactionAttributes withDistinctCount(String name, CardinalitySketch sketch) {
+        if (sketch == null) {
+            return this;
+        }
+        long estimate = sketch.estimate();
+        if (estimate > 0) {
+            Map<String, Object> distinctCount = new LinkedHashMap<>();
+            distinctCount.put("estimate", estimate);
+            distinctCount.put("sketch", sketch.serialize());
+            attributes.put(name, distinctCount);
+        }
+        return this;
+    }
+
+    /**
+     * @param name         Name of the attribute, e.g. the kind of artifact
+     * @param heavyHitters The most used artifacts of the window, most used first
+     */
+    public TransactionAttributes withTopArtifacts(String name, List<HeavyHitters.HeavyHitter> heavyHitters) {
+        if (heavyHitters == null || heavyHitters.isEmpty()) {
+            return this;
+        }
+        List<Map<String, Object>> artifacts = new ArrayList<>(heavyHitters.size());
+        for (HeavyHitters.HeavyHitter heavyHitter : heavyHitters) {
+            Map<String, Object> artifact = new LinkedHashMap<>();
+            artifact.put("artifact", heavyHitter.getKey());
+            artifact.put("count", heavyHitter.getCount());
+            artifact.put("error", heavyHitter.getError());
+            artifacts.add(artifact);
+        }
+        attributes.put(name, artifacts);
+        return this;
+    }
+
+    public TransactionAttributes withStreamSessions(StreamSessionSummary sessions) {
+        if (sessions == null || (sessions.getClosedSessions() == 0 && sessions.getActiveSessions() == 0)) {
+            return this;
+        }
+        Map<String, Object> streamSessions = new LinkedHashMap<>();
+        streamSessions.put("closedSessions", sessions.getClosedSessions());
+        streamSessions.put("activeSessions", sessions.getActiveSessions());
+        streamSessions.put("frames", sessions.getClosedSessionFrames());
+        streamSessions.put("maxFrames", sessions.getMaxSessionFrames());
+        streamSessions.put("p50DurationSeconds", sessions.getDurationSeconds().getP50());
+        streamSessions.put("maxDurationSeconds", sessions.getDurationSeconds().getMax());
+        attributes.put("streamSessions", streamSessions);
+        return this;
+    }
+
+    /**
+     * @param scope What the count and the other attributes cover, e.g. "process" or "host"
+     */
+    public TransactionAttributes withScope(String scope) {
+        attributes.put("scope", scope);
+        return this;
+    }
+
+    public Map<String, Object> build() {
+        return attributes;
+    }
+
+    private TransactionAttributes withPositive(String name, long value) {
+        if (value > 0) {
+            attributes.put(name, value);
+        }
+        return this;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.publisher.api.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Transaction count of a window, published together with the other metrics of the window as attributes of the
+ * same payload.
+ */
+public class TransactionUsageCount extends UsageCount {
+
+    private Map<String, Object> attributes = Collections.emptyMap();
+
+    public TransactionUsageCount() {
+        super();
+    }
+
+    public TransactionUsageCount(String nodeId, String product, long count, String type,
+                                 Map<String, Object> attributes) {
+        super(nodeId, product, count, type);
+        setAttributes(attributes);
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    public void setAttributes(Map<String, Object> attributes) {
+        this.attributes = attributes != null ? attributes : Collections.<String, Object>emptyMap();
+    }
+}
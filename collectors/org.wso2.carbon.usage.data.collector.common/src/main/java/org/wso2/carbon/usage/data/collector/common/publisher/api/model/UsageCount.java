@@ -13,6 +13,8 @@ public class UsageCount extends MetaInformation {
 
     private long count;
     private String type;
+    // Only set for counts published by the holder of a cluster lease, and left out of the payload otherwise
+    private Long fencingToken;
 
     public UsageCount() {
         super();
@@ -53,6 +55,18 @@ public class UsageCount extends MetaInformation {
         }
     }
 
+    /**
+     * Returns the fencing token of the cluster lease the count was published under. The receiver can drop a
+     * count with a lower token than one it has already accepted, as it comes from a node that lost the lease.
+     */
+    public Long getFencingToken() {
+        return fencingToken;
+    }
+
+    public void setFencingToken(Long fencingToken) {
+        this.fencingToken = fencingToken;
+    }
+
     @Override
     public String toString() {
         return "UsageCount{" +
@@ -60,6 +74,7 @@ public class UsageCount extends MetaInformation {
                 ", product='" + getProduct() + '\'' +
                 ", count=" + count +
                 ", type='" + type + '\'' +
+                ", fencingToken=" + fencingToken +
                 ", createdTime='" + createdTime + '\'' +
                 '}';
     }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.transaction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Counting rules kept in a file, recompiled whenever the file changes.
+ */
+public class CountingRuleFile {
+
+    private final File file;
+    private long lastModified = -1;
+
+    public CountingRuleFile(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Compiles the rules if the file changed since the previous call. A removed file yields no rules.
+     * A file that fails to compile is not retried until it changes again.
+     *
+     * @return The compiled rules, or null if the file is unchanged
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file holds an invalid rule
+     */
+    public synchronized CountingRuleSet reloadIfModified() throws IOException {
+        long modified = file.lastModified();
+        if (modified == lastModified) {
+            return null;
+        }
+        lastModified = modified;
+        if (modified == 0 && !file.exists()) {
+            return CountingRuleSet.EMPTY;
+        }
+        return CountingRuleSet.compile(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.transaction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled set of rules that exclude or weight counted transactions.
+ *
+ * <p>Each non-empty line of the source holds one rule, and lines starting with {@code #} are comments:</p>
+ * <pre>
+ * exclude proxy HealthCheckProxy
+ * exclude api admin--*
+ * exclude transport jms
+ * weight api BatchAPI 10
+ * </pre>
+ *
+ * <p>A rule matches the incoming transport, the API or the proxy service of a message, either by exact name or, when
+ * the pattern ends with {@code *}, by prefix. The first rule in source order that matches a message decides its
+ * count: an excluded message counts as 0 and a weighted one counts as its weight. Exact names are compiled into
+ * hash lookups and prefix matches are resolved once per name, so evaluating a message costs a few map lookups.</p>
+ */
+public final class CountingRuleSet {
+
+    public static final CountingRuleSet EMPTY = new CountingRuleSet(
+            new Matcher(new ArrayList<>()), new Matcher(new ArrayList<>()), new Matcher(new ArrayList<>()), new int[0]);
+
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+    private static final int MAX_RESOLVED_NAMES = 10000;
+
+    private final Matcher transports;
+    private final Matcher apis;
+    private final Matcher proxies;
+    private final int[] weights;
+
+    private CountingRuleSet(Matcher transports, Matcher apis, Matcher proxies, int[] weights) {
+        this.transports = transports;
+        this.apis = apis;
+        this.proxies = proxies;
+        this.weights = weights;
+    }
+
+    /**
+     * Compiles rules from their source lines.
+     *
+     * @param lines The rule source
+     * @return The compiled rules
+     * @throws IllegalArgumentException if a line is not a valid rule
+     */
+    public static CountingRuleSet compile(List<String> lines) {
+        List<String[]> transportPatterns = new ArrayList<>();
+        List<String[]> apiPatterns = new ArrayList<>();
+        List<String[]> proxyPatterns = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("\\s+");
+            int weight;
+            if ("exclude".equals(tokens[0]) && tokens.length == 3) {
+                weight = 0;
+            } else if ("weight".equals(tokens[0]) && tokens.length == 4) {
+                weight = parseWeight(tokens[3], i + 1);
+            } else {
+                throw new IllegalArgumentException("Invalid counting rule at line " + (i + 1) + ": " + line);
+            }
+            String[] pattern = {tokens[2], String.valueOf(weights.size())};
+            switch (tokens[1].toLowerCase(Locale.ROOT)) {
+                case "transport":
+                    transportPatterns.add(pattern);
+                    break;
+                case "api":
+                    apiPatterns.add(pattern);
+                    break;
+                case "proxy":
+                    proxyPatterns.add(pattern);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown counting rule target '" + tokens[1] + "' at line "
+                            + (i + 1));
+            }
+            weights.add(weight);
+        }
+        int[] weightArray = new int[weights.size()];
+        for (int i = 0; i < weightArray.length; i++) {
+            weightArray[i] = weights.get(i);
+        }
+        return new CountingRuleSet(new Matcher(transportPatterns), new Matcher(apiPatterns),
+                new Matcher(proxyPatterns), weightArray);
+    }
+
+    public boolean isEmpty() {
+        return weights.length == 0;
+    }
+
+    public int size() {
+        return weights.length;
+    }
+
+    /**
+     * Applies the rules to a counted message.
+     *
+     * @param transport The incoming transport name, or null
+     * @param api The API that mediated the message, or null
+     * @param proxy The proxy service that mediated the message, or null
+     * @param count The number of transactions the message accounts for
+     * @return The number of transactions to record
+     */
+    public int apply(String transport, String api, String proxy, int count) {
+        int rule = Math.min(transports.match(transport), Math.min(apis.match(api), proxies.match(proxy)));
+        return rule == NO_MATCH ? count : count * weights[rule];
+    }
+
+    private static int parseWeight(String weight, int lineNumber) {
+        try {
+            int value = Integer.parseInt(weight);
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid weight '" + weight + "' at line " + lineNumber);
+    }
+
+    /**
+     * Resolves a name to the first rule that matches it.
+     */
+    private static final class Matcher {
+
+        private final Map<String, Integer> exact = new HashMap<>();
+        private final String[] prefixes;
+        private final int[] prefixRules;
+        private final Map<String, Integer> resolved = new ConcurrentHashMap<>();
+
+        private Matcher(List<String[]> patterns) {
+            List<String[]> prefixPatterns = new ArrayList<>();
+            for (String[] pattern : patterns) {
+                if (pattern[0].endsWith("*")) {
+                    prefixPatterns.add(pattern);
+                } else {
+                    exact.putIfAbsent(pattern[0], Integer.valueOf(pattern[1]));
+                }
+            }
+            prefixes = new String[prefixPatterns.size()];
+            prefixRules = new int[prefixPatterns.size()];
+            for (int i = 0; i < prefixes.length; i++) {
+                String pattern = prefixPatterns.get(i)[0];
+                prefixes[i] = pattern.substring(0, pattern.length() - 1);
+                prefixRules[i] = Integer.parseInt(prefixPatterns.get(i)[1]);
+            }
+        }
+
+        int match(String name) {
+            if (name == null) {
+                return NO_MATCH;
+            }
+            if (prefixes.length == 0) {
+                Integer rule = exact.get(name);
+                return rule != null ? rule : NO_MATCH;
+            }
+            Integer rule = resolved.get(name);
+            if (rule == null) {
+                rule = resolve(name);
+                // Names come from deployed artifacts, the bound only guards against unexpected ones
+                if (resolved.size() < MAX_RESOLVED_NAMES) {
+                    resolved.put(name, rule);
+                }
+            }
+            return rule;
+        }
+
+        private int resolve(String name) {
+            Integer exactRule = exact.get(name);
+            int rule = exactRule != null ? exactRule : NO_MATCH;
+            for (int i = 0; i < prefixes.length && prefixRules[i] < rule; i++) {
+                if (name.startsWith(prefixes[i])) {
+                    rule = prefixRules[i];
+                }
+            }
+            return rule;
+        }
+    }
+}
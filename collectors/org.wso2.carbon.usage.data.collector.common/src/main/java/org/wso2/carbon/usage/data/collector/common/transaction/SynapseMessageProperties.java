@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.transaction;
+
+/**
+ * Names of the Synapse message properties a product reads and writes to count transactions.
+ */
+public final class SynapseMessageProperties {
+
+    private final String inbound;
+    private final String restApi;
+    private final String proxyName;
+    private final String outOnly;
+    private final String correlation;
+    private final String outFlowKey;
+    private final String streamSessionId;
+    private final String errorCode;
+
+    private SynapseMessageProperties(Builder builder) {
+        this.inbound = builder.inbound;
+        this.restApi = builder.restApi;
+        this.proxyName = builder.proxyName;
+        this.outOnly = builder.outOnly;
+        this.correlation = builder.correlation;
+        this.outFlowKey = builder.outFlowKey;
+        this.streamSessionId = builder.streamSessionId;
+        this.errorCode = builder.errorCode;
+    }
+
+    public String getInbound() {
+        return inbound;
+    }
+
+    public String getRestApi() {
+        return restApi;
+    }
+
+    /**
+     * Returns the property that names the proxy service of a message, or null if the product deploys none.
+     */
+    public String getProxyName() {
+        return proxyName;
+    }
+
+    public String getOutOnly() {
+        return outOnly;
+    }
+
+    public String getCorrelation() {
+        return correlation;
+    }
+
+    /**
+     * Returns the property that carries the duplicate suppression key of an uncorrelated outgoing message.
+     */
+    public String getOutFlowKey() {
+        return outFlowKey;
+    }
+
+    public String getStreamSessionId() {
+        return streamSessionId;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public static class Builder {
+        private String inbound;
+        private String restApi;
+        private String proxyName;
+        private String outOnly;
+        private String correlation;
+        private String outFlowKey;
+        private String streamSessionId;
+        private String errorCode;
+
+        public Builder withInbound(String inbound) {
+            this.inbound = inbound;
+            return this;
+        }
+
+        public Builder withRestApi(String restApi) {
+            this.restApi = restApi;
+            return this;
+        }
+
+        public Builder withProxyName(String proxyName) {
+            this.proxyName = proxyName;
+            return this;
+        }
+
+        public Builder withOutOnly(String outOnly) {
+            this.outOnly = outOnly;
+            return this;
+        }
+
+        public Builder withCorrelation(String correlation) {
+            this.correlation = correlation;
+            return this;
+        }
+
+        public Builder withOutFlowKey(String outFlowKey) {
+            this.outFlowKey = outFlowKey;
+            return this;
+        }
+
+        public Builder withStreamSessionId(String streamSessionId) {
+            this.streamSessionId = streamSessionId;
+            return this;
+        }
+
+        public Builder withErrorCode(String errorCode) {
+            this.errorCode = errorCode;
+            return this;
+        }
+
+        public SynapseMessageProperties build() {
+            if (inbound == null || restApi == null || outOnly == null || correlation == null || outFlowKey == null
+                    || streamSessionId == null || errorCode == null) {
+                throw new IllegalArgumentException("All message properties but the proxy name are required");
+            }
+            return new SynapseMessageProperties(this);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.transaction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Transaction counting of a Synapse based product. Classifies messages with the counting rules of the product,
+ * and reads the metrics that every product records from a message. Products add the metrics only they record.
+ */
+public class SynapseTransactionCounting {
+
+    private static final Log log = LogFactory.getLog(SynapseTransactionCounting.class);
+    private static final String CONTENT_LENGTH_HEADER = "Content-Length";
+    private static final String CONTENT_LENGTH_HEADER_LOWER_CASE = "content-length";
+
+    private final SynapseMessageProperties properties;
+    private final TransactionClassifier<MessageContext> classifier;
+    private final CountingRuleFile countingRuleFile;
+
+    /**
+     * @param properties The message properties of the product
+     * @param countingRulesFileProperty The system property that holds the path of the counting rules file
+     */
+    protected SynapseTransactionCounting(SynapseMessageProperties properties, String countingRulesFileProperty) {
+        this.properties = properties;
+        this.classifier = new TransactionClassifier<>(new SynapseTransactionRules(properties));
+        String path = System.getProperty(countingRulesFileProperty);
+        this.countingRuleFile =
+                path != null && !path.trim().isEmpty() ? new CountingRuleFile(new File(path.trim())) : null;
+    }
+
+    /**
+     * Recompiles the counting rules if their file changed. An invalid file is reported and the rules in use are
+     * kept until it is fixed.
+     */
+    public void reloadCountingRules() {
+        if (countingRuleFile == null) {
+            return;
+        }
+        try {
+            CountingRuleSet countingRules = countingRuleFile.reloadIfModified();
+            if (countingRules != null) {
+                classifier.setCountingRules(countingRules);
+                log.info("Loaded " + countingRules.size() + " transaction counting rules from "
+                        + countingRuleFile.getFile());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Failed to load transaction counting rules from " + countingRuleFile.getFile()
+                    + ". The previous rules are kept.", e);
+        }
+    }
+
+    public int handleRequestInFlow(MessageContext messageContext) {
+        return classifier.handleRequestInFlow(messageContext);
+    }
+
+    public int handleRequestOutFlow(MessageContext messageContext) {
+        return classifier.handleRequestOutFlow(messageContext);
+    }
+
+    public int handleResponseInFlow(MessageContext messageContext) {
+        return classifier.handleResponseInFlow(messageContext);
+    }
+
+    public int handleResponseOutFlow(MessageContext messageContext) {
+        return classifier.handleResponseOutFlow(messageContext);
+    }
+
+    /**
+     * Returns the correlation of a request that has been marked as in flight by {@link #handleRequestInFlow}.
+     *
+     * @param messageContext The request message context
+     * @return The correlation of the request if it awaits a response, null otherwise
+     */
+    public TransactionCorrelation getInFlight(MessageContext messageContext) {
+        return classifier.getInFlight(messageContext);
+    }
+
+    /**
+     * Clears the in-flight mark of a request when its response is sent, or when the request is sent out
+     * one-way and no response will follow.
+     *
+     * @param messageContext The message context
+     * @param isRequest true when called from the request out flow
+     * @return The correlation of the request if it was in flight and has now completed, null otherwise
+     */
+    public TransactionCorrelation completeInFlight(MessageContext messageContext, boolean isRequest) {
+        return classifier.completeInFlight(messageContext, isRequest);
+    }
+
+    /**
+     * Returns the key that duplicates of an uncorrelated outgoing message are recognized by. Clone and iterate
+     * mediators and retries assign a new message ID to every copy they send, so the message ID of the first send
+     * is stored on the message as the key. Copies inherit the message properties and so report the same key.
+     *
+     * @param messageContext The outgoing message context
+     * @return The message ID the message was first sent with, or null if the message has no ID
+     */
+    public String getOutFlowKey(MessageContext messageContext) {
+        if (messageContext == null) {
+            return null;
+        }
+        Object key = messageContext.getProperty(properties.getOutFlowKey());
+        if (key instanceof String) {
+            return (String) key;
+        }
+        String messageId = messageContext.getMessageID();
+        if (messageId != null) {
+            messageContext.setProperty(properties.getOutFlowKey(), messageId);
+        }
+        return messageId;
+    }
+
+    /**
+     * Returns the time elapsed since the associated incoming request was received.
+     *
+     * @param messageContext The response message context
+     * @return The mediation latency in microseconds, or -1 if the message has no associated incoming request
+     */
+    public long getMediationLatencyMicros(MessageContext messageContext) {
+        return classifier.getMediationLatencyMicros(messageContext);
+    }
+
+    /**
+     * Returns the streaming session, such as a WebSocket connection, that the message was received on.
+     *
+     * @param messageContext The request message context
+     * @return The session identifier, or null if the message was not received on a streaming session
+     */
+    public String getStreamSessionId(MessageContext messageContext) {
+        if (messageContext == null) {
+            return null;
+        }
+        Object sessionId = messageContext.getProperty(properties.getStreamSessionId());
+        return sessionId != null ? sessionId.toString() : null;
+    }
+
+    /**
+     * Returns the error code of a faulted message.
+     *
+     * @param messageContext The faulted message context
+     * @return The value of the error code property, or -1 if it is not set or not numeric
+     */
+    public int getErrorCode(MessageContext messageContext) {
+        if (messageContext == null) {
+            return -1;
+        }
+        Object errorCode = messageContext.getProperty(properties.getErrorCode());
+        if (errorCode instanceof Integer) {
+            return (Integer) errorCode;
+        }
+        if (errorCode instanceof String) {
+            try {
+                return Integer.parseInt(((String) errorCode).trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the payload size declared by the Content-Length transport header. The message body is
+     * never built or buffered to compute it.
+     *
+     * @param messageContext The message context
+     * @return The payload size in bytes, or -1 if the message does not declare a Content-Length
+     */
+    public long getContentLength(MessageContext messageContext) {
+        Object headers = getAxis2Property(messageContext, org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
+        if (!(headers instanceof Map)) {
+            return -1;
+        }
+        Object contentLength = ((Map<?, ?>) headers).get(CONTENT_LENGTH_HEADER);
+        if (contentLength == null) {
+            // HTTP/2 and some transports only carry lower-case header names
+            contentLength = ((Map<?, ?>) headers).get(CONTENT_LENGTH_HEADER_LOWER_CASE);
+        }
+        if (contentLength instanceof String) {
+            try {
+                return Long.parseLong(((String) contentLength).trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the address of the client that sent the request.
+     *
+     * @param messageContext The request message context
+     * @return The remote address, or null if the transport does not expose it
+     */
+    public String getClientAddress(MessageContext messageContext) {
+        Object remoteAddress = getAxis2Property(messageContext, org.apache.axis2.context.MessageContext.REMOTE_ADDR);
+        return remoteAddress instanceof String ? (String) remoteAddress : null;
+    }
+
+    /**
+     * Returns a property of the Axis2 message context underneath a Synapse message context.
+     *
+     * @param messageContext The message context
+     * @param name The property name
+     * @return The property value, or null if it is not set or the message has no Axis2 message context
+     */
+    protected static Object getAxis2Property(MessageContext messageContext, String name) {
+        if (!(messageContext instanceof Axis2MessageContext)) {
+            return null;
+        }
+        org.apache.axis2.context.MessageContext axis2MessageContext =
+                ((Axis2MessageContext) messageContext).getAxis2MessageContext();
+        return axis2MessageContext != null ? axis2MessageContext.getProperty(name) : null;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.transaction;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+
+/**
+ * Reads the message properties the transaction classifier needs from a Synapse message context.
+ */
+public final class SynapseTransactionRules implements TransactionRules<MessageContext> {
+
+    private final SynapseMessageProperties properties;
+
+    public SynapseTransactionRules(SynapseMessageProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public boolean isTransportMessage(MessageContext message) {
+        return message instanceof Axis2MessageContext
+                && ((Axis2MessageContext) message).getAxis2MessageContext() != null;
+    }
+
+    @Override
+    public boolean isInbound(MessageContext message) {
+        return Boolean.TRUE.equals(message.getProperty(properties.getInbound()));
+    }
+
+    @Override
+    public int getIncomingTransport(MessageContext message) {
+        return TransportId.of(((Axis2MessageContext) message).getAxis2MessageContext().getIncomingTransportName());
+    }
+
+    @Override
+    public String getIncomingTransportName(MessageContext message) {
+        if (!isTransportMessage(message)) {
+            return null;
+        }
+        return ((Axis2MessageContext) message).getAxis2MessageContext().getIncomingTransportName();
+    }
+
+    @Override
+    public String getApiName(MessageContext message) {
+        Object api = message.getProperty(properties.getRestApi());
+        return api instanceof String ? (String) api : null;
+    }
+
+    @Override
+    public String getProxyName(MessageContext message) {
+        if (properties.getProxyName() == null) {
+            return null;
+        }
+        Object proxy = message.getProperty(properties.getProxyName());
+        return proxy instanceof String ? (String) proxy : null;
+    }
+
+    @Override
+    public boolean isOutOnly(MessageContext message) {
+        return Boolean.TRUE.equals(message.getProperty(properties.getOutOnly()));
+    }
+
+    @Override
+    public TransactionCorrelation getCorrelation(MessageContext message) {
+        Object correlation = message.getProperty(properties.getCorrelation());
+        return correlation instanceof TransactionCorrelation ? (TransactionCorrelation) correlation : null;
+    }
+
+    @Override
+    public void setCorrelation(MessageContext message, TransactionCorrelation correlation) {
+        message.setProperty(properties.getCorrelation(), correlation);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.transaction;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how many transactions a message accounts for in each mediation flow.
+ *
+ * <p>A request received through the transport is correlated with its response and counted once, when the response
+ * is sent. Messages received through an inbound endpoint or an open WebSocket, and outgoing messages that are not
+ * related to any request, are counted on their own. Apart from the correlation attached to each request, nothing
+ * is allocated while classifying a message.</p>
+ *
+ * <p>Counted messages are then passed through the configured {@link CountingRuleSet}. The API and proxy service are
+ * only known once the message has been dispatched, so rules on them apply to request-response pairs and outgoing
+ * messages, while messages counted on arrival are only matched by transport.</p>
+ *
+ * @param <M> The message context type of the product
+ */
+public final class TransactionClassifier<M> {
+
+    private final TransactionRules<M> rules;
+    private volatile CountingRuleSet countingRules = CountingRuleSet.EMPTY;
+
+    public TransactionClassifier(TransactionRules<M> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Replaces the counting rules. Messages classified afterwards are counted with the new rules.
+     *
+     * @param countingRules The compiled counting rules
+     */
+    public void setCountingRules(CountingRuleSet countingRules) {
+        this.countingRules = countingRules != null ? countingRules : CountingRuleSet.EMPTY;
+    }
+
+    public CountingRuleSet getCountingRules() {
+        return countingRules;
+    }
+
+    public int handleRequestInFlow(M message) {
+        if (message == null || !rules.isTransportMessage(message)) {
+            return 0;
+        }
+        // Checking if the message is inbound
+        if (rules.isInbound(message)) {
+            return applyCountingRules(message, 1);
+        }
+        // Counting message received via an open WebSocket, which awaits no response
+        boolean webSocket = TransportId.isWebSocket(rules.getIncomingTransport(message));
+        rules.setCorrelation(message, new TransactionCorrelation(System.nanoTime(), !webSocket));
+        return webSocket ? applyCountingRules(message, 1) : 0;
+    }
+
+    public int handleRequestOutFlow(M message) {
+        if (message == null) {
+            return 0;
+        }
+        // Counting outgoing messages that are not related to any request-response pair
+        return rules.getCorrelation(message) == null ? applyCountingRules(message, 1) : 0;
+    }
+
+    public int handleResponseInFlow(M message) {
+        return 0;
+    }
+
+    public int handleResponseOutFlow(M message) {
+        if (message == null) {
+            return 0;
+        }
+        // Counting request-response pairs
+        return rules.getCorrelation(message) != null ? applyCountingRules(message, 1) : 0;
+    }
+
+    /**
+     * Returns the correlation of a request that has been marked as in flight by {@link #handleRequestInFlow}.
+     *
+     * @param message The request message context
+     * @return The correlation of the request if it awaits a response, null otherwise
+     */
+    public TransactionCorrelation getInFlight(M message) {
+        if (message == null) {
+            return null;
+        }
+        TransactionCorrelation correlation = rules.getCorrelation(message);
+        return correlation != null && correlation.isInFlight() ? correlation : null;
+    }
+
+    /**
+     * Clears the in-flight mark of a request when its response is sent, or when the request is sent out
+     * one-way and no response will follow.
+     *
+     * @param message The message context
+     * @param isRequest true when called from the request out flow
+     * @return The correlation of the request if it was in flight and has now completed, null otherwise
+     */
+    public TransactionCorrelation completeInFlight(M message, boolean isRequest) {
+        if (message == null) {
+            return null;
+        }
+        TransactionCorrelation correlation = rules.getCorrelation(message);
+        if (correlation == null || !correlation.isInFlight()) {
+            return null;
+        }
+        if (isRequest && !rules.isOutOnly(message)) {
+            return null;
+        }
+        return correlation.complete() ? correlation : null;
+    }
+
+    /**
+     * Returns the time elapsed since the associated incoming request was received.
+     *
+     * @param message The response message context
+     * @return The mediation latency in microseconds, or -1 if the message has no associated incoming request
+     */
+    public long getMediationLatencyMicros(M message) {
+        if (message == null) {
+            return -1;
+        }
+        TransactionCorrelation correlation = rules.getCorrelation(message);
+        if (correlation == null) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - correlation.getStartNanos());
+    }
+
+    private int applyCountingRules(M message, int count) {
+        CountingRuleSet current = countingRules;
+        if (current.isEmpty()) {
+            return count;
+        }
+        return current.apply(rules.getIncomingTransportName(message), rules.getApiName(message),
+                rules.getProxyName(message), count);
+    }
+}
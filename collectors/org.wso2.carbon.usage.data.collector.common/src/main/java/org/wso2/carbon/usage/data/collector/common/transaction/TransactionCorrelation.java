@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.transaction;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Per-request correlation state, attached to a request once and carried over to its response.
+ *
+ * <p>It replaces the separate "associated incoming request", start time and in-flight properties, so a request
+ * costs a single property write and the in-flight mark is cleared on the correlation instead of another write.</p>
+ */
+public final class TransactionCorrelation {
+
+    private static final AtomicIntegerFieldUpdater<TransactionCorrelation> IN_FLIGHT =
+            AtomicIntegerFieldUpdater.newUpdater(TransactionCorrelation.class, "inFlight");
+
+    private final long startNanos;
+    private volatile int inFlight;
+
+    TransactionCorrelation(long startNanos, boolean inFlight) {
+        this.startNanos = startNanos;
+        this.inFlight = inFlight ? 1 : 0;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public boolean isInFlight() {
+        return inFlight != 0;
+    }
+
+    /**
+     * Clears the in-flight mark. When the response flow and the error flow of a request race, only one of them
+     * completes it.
+     *
+     * @return true if the request was in flight, false if it had already completed
+     */
+    boolean complete() {
+        return IN_FLIGHT.compareAndSet(this, 1, 0);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.transaction;
+
+/**
+ * Product-specific access to a message, used by {@link TransactionClassifier} to classify it.
+ *
+ * @param <M> The message context type of the product
+ */
+public interface TransactionRules<M> {
+
+    /**
+     * Checks whether the message carries a transport level context. Messages without one are not classified.
+     */
+    boolean isTransportMessage(M message);
+
+    /**
+     * Checks whether the message was received through an inbound endpoint.
+     */
+    boolean isInbound(M message);
+
+    /**
+     * Returns the {@link TransportId} of the transport the message was received on.
+     */
+    int getIncomingTransport(M message);
+
+    /**
+     * Returns the name of the transport the message was received on, or null if it is not known.
+     */
+    String getIncomingTransportName(M message);
+
+    /**
+     * Returns the API that mediated the message, or null if it did not go through an API.
+     */
+    String getApiName(M message);
+
+    /**
+     * Returns the proxy service that mediated the message, or null if it did not go through a proxy service.
+     */
+    String getProxyName(M message);
+
+    /**
+     * Checks whether the message is sent out one-way, with no response to follow.
+     */
+    boolean isOutOnly(M message);
+
+    /**
+     * Returns the correlation state attached to the message, or null if there is none.
+     */
+    TransactionCorrelation getCorrelation(M message);
+
+    /**
+     * Attaches correlation state to the message.
+     */
+    void setCorrelation(M message, TransactionCorrelation correlation);
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.transaction;
+
+/**
+ * Small integer ids for the transports the transaction counters distinguish, so that a message is classified by
+ * comparing ints instead of transport names.
+ */
+public final class TransportId {
+
+    public static final int UNKNOWN = 0;
+    public static final int HTTP = 1;
+    public static final int HTTPS = 2;
+    public static final int WS = 3;
+    public static final int WSS = 4;
+
+    private TransportId() {
+        // Private constructor to prevent instantiation
+    }
+
+    /**
+     * Returns the id of a transport name. The lookup does not allocate.
+     *
+     * @param transportName The transport name as reported by the message context
+     * @return The transport id, or {@link #UNKNOWN} for a null or unrecognized name
+     */
+    public static int of(String transportName) {
+        if (transportName == null) {
+            return UNKNOWN;
+        }
+        switch (transportName) {
+            case "http":
+                return HTTP;
+            case "https":
+                return HTTPS;
+            case "ws":
+                return WS;
+            case "wss":
+                return WSS;
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    public static boolean isWebSocket(int transportId) {
+        return transportId == WS || transportId == WSS;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+/**
+ * Counter row in a shared database, so that changes seen by any node of a cluster add up to a value every node
+ * can read.
+ *
+ * <p>Nodes add their changes with a single update, and the value is read with a primary key lookup, so following
+ * the counter costs far less than recounting what it counts. The {@code USAGE_COLLECTOR_COUNTER} table is shared by
+ * all counters. It is created by the {@code dbscripts} of this bundle for each supported database.</p>
+ */
+public class ClusterCounter {
+
+    private static final String ADD_QUERY =
+            "UPDATE USAGE_COLLECTOR_COUNTER SET COUNTER_VALUE = COUNTER_VALUE + ? WHERE COUNTER_NAME = ?";
+    private static final String INSERT_QUERY =
+            "INSERT INTO USAGE_COLLECTOR_COUNTER (COUNTER_NAME, COUNTER_VALUE) VALUES (?, ?)";
+    private static final String SELECT_QUERY =
+            "SELECT COUNTER_VALUE FROM USAGE_COLLECTOR_COUNTER WHERE COUNTER_NAME = ?";
+    // SQL state class of integrity constraint violations, raised when another node inserted the counter first
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+    private final String counterName;
+
+    /**
+     * @param counterName Name of the counter, shared by all nodes adding to it
+     */
+    public ClusterCounter(String counterName) {
+        this.counterName = counterName;
+    }
+
+    /**
+     * Adds a change to the counter, creating it if it does not exist yet.
+     *
+     * @param dataSource The datasource of the shared database
+     * @param delta The change to add
+     * @throws SQLException if the counter could not be written. Nothing was added then.
+     */
+    public void add(DataSource dataSource, long delta) throws SQLException {
+        if (delta == 0) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            if (!update(connection, delta) && !insert(connection, delta) && !update(connection, delta)) {
+                throw new SQLException("Counter " + counterName + " could neither be updated nor created");
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+    }
+
+    /**
+     * Reads the counter.
+     *
+     * @param dataSource The datasource of the shared database
+     * @return The sum of all changes added to the counter, or 0 if none were added yet
+     * @throws SQLException if the counter could not be read
+     */
+    public long get(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT_QUERY)) {
+            statement.setString(1, counterName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    private boolean update(Connection connection, long delta) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(ADD_QUERY)) {
+            statement.setLong(1, delta);
+            statement.setString(2, counterName);
+            return statement.executeUpdate() == 1;
+        }
+    }
+
+    private boolean insert(Connection connection, long delta) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_QUERY)) {
+            statement.setString(1, counterName);
+            statement.setLong(2, delta);
+            statement.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            String sqlState = e.getSQLState();
+            if (sqlState != null && sqlState.startsWith(INTEGRITY_CONSTRAINT_VIOLATION)) {
+                // Another node created the counter in the meantime
+                return false;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+/**
+ * Lease row in a shared database, so that a single node of a cluster runs the collectors whose data is the same
+ * on every node.
+ *
+ * <p>The node holding the lease extends it on every heartbeat. Once a lease is not extended before it expires, any
+ * node may take it over, which increments its fencing token. A node only extends the lease while it still holds
+ * the token it acquired it with, so a node that was paused past the expiry finds out that it was superseded on its
+ * next heartbeat. Expiry times are written with the clock of the holder, so the clocks of the nodes must agree
+ * well within the lease duration.</p>
+ *
+ * <p>The {@code USAGE_COLLECTOR_LEASE} table is shared by all leases. It is created by the {@code dbscripts} of this
+ * bundle for each supported database.</p>
+ */
+public class ClusterLease {
+
+    private static final String RENEW_QUERY = "UPDATE USAGE_COLLECTOR_LEASE SET EXPIRES_AT = ? "
+            + "WHERE LEASE_NAME = ? AND HOLDER_ID = ? AND FENCING_TOKEN = ?";
+    private static final String TAKE_OVER_QUERY = "UPDATE USAGE_COLLECTOR_LEASE "
+            + "SET HOLDER_ID = ?, FENCING_TOKEN = FENCING_TOKEN + 1, EXPIRES_AT = ? "
+            + "WHERE LEASE_NAME = ? AND EXPIRES_AT < ?";
+    private static final String SELECT_TOKEN_QUERY =
+            "SELECT FENCING_TOKEN FROM USAGE_COLLECTOR_LEASE WHERE LEASE_NAME = ? AND HOLDER_ID = ?";
+    private static final String INSERT_QUERY = "INSERT INTO USAGE_COLLECTOR_LEASE "
+            + "(LEASE_NAME, HOLDER_ID, FENCING_TOKEN, EXPIRES_AT) VALUES (?, ?, 1, ?)";
+    private static final String RELEASE_QUERY = "UPDATE USAGE_COLLECTOR_LEASE SET EXPIRES_AT = 0 "
+            + "WHERE LEASE_NAME = ? AND HOLDER_ID = ? AND FENCING_TOKEN = ?";
+    // SQL state class of integrity constraint violations, raised when another node inserted the lease first
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+    private final String leaseName;
+    private final String holderId;
+    private final long durationMillis;
+    private long fencingToken;
+    private long validUntilNanos;
+
+    /**
+     * @param leaseName Name of the lease, shared by all nodes competing for it
+     * @param holderId Identifier of this node, unique within the cluster
+     * @param durationMillis Time after the last heartbeat at which the lease may be taken over
+     */
+    public ClusterLease(String leaseName, String holderId, long durationMillis) {
+        this.leaseName = leaseName;
+        this.holderId = holderId;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * Extends the lease if this node holds it, or takes it over if it has expired or does not exist yet.
+     *
+     * @param dataSource The datasource of the shared database
+     * @return Whether this node holds the lease
+     * @throws SQLException if the lease could not be read or written. The lease is still held locally until the
+     *                      last successful heartbeat expires.
+     */
+    public synchronized boolean acquire(DataSource dataSource) throws SQLException {
+        long startNanos = System.nanoTime();
+        long now = System.currentTimeMillis();
+        long expiresAt = now + durationMillis;
+        long token;
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                token = fencingToken > 0 && renew(connection, expiresAt) ? fencingToken : 0;
+                if (token == 0) {
+                    token = takeOver(connection, now, expiresAt);
+                }
+                if (token == 0) {
+                    token = insert(connection, expiresAt);
+                }
+                // Nothing was written unless the lease was acquired, and a failed insert may have aborted the
+                // transaction
+                if (token > 0) {
+                    connection.commit();
+                } else {
+                    connection.rollback();
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        fencingToken = token;
+        validUntilNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        return token > 0;
+    }
+
+    /**
+     * Gives the lease up, so that another node can take it over without waiting for it to expire.
+     *
+     * @param dataSource The datasource of the shared database
+     * @throws SQLException if the lease could not be written
+     */
+    public synchronized void release(DataSource dataSource) throws SQLException {
+        if (fencingToken == 0) {
+            return;
+        }
+        long token = fencingToken;
+        fencingToken = 0;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(RELEASE_QUERY)) {
+            statement.setString(1, leaseName);
+            statement.setString(2, holderId);
+            statement.setLong(3, token);
+            statement.executeUpdate();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+    }
+
+    /**
+     * @return Whether this node holds the lease and its last heartbeat has not expired yet
+     */
+    public synchronized boolean isHeld() {
+        return fencingToken > 0 && System.nanoTime() - validUntilNanos < 0;
+    }
+
+    /**
+     * @return The fencing token the lease is held with, or 0 if this node does not hold it
+     */
+    public synchronized long getFencingToken() {
+        return isHeld() ? fencingToken : 0;
+    }
+
+    private boolean renew(Connection connection, long expiresAt) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(RENEW_QUERY)) {
+            statement.setLong(1, expiresAt);
+            statement.setString(2, leaseName);
+            statement.setString(3, holderId);
+            statement.setLong(4, fencingToken);
+            return statement.executeUpdate() == 1;
+        }
+    }
+
+    private long takeOver(Connection connection, long now, long expiresAt) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(TAKE_OVER_QUERY)) {
+            statement.setString(1, holderId);
+            statement.setLong(2, expiresAt);
+            statement.setString(3, leaseName);
+            statement.setLong(4, now);
+            if (statement.executeUpdate() != 1) {
+                return 0;
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_TOKEN_QUERY)) {
+            statement.setString(1, leaseName);
+            statement.setString(2, holderId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    private long insert(Connection connection, long expiresAt) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_QUERY)) {
+            statement.setString(1, leaseName);
+            statement.setString(2, holderId);
+            statement.setLong(3, expiresAt);
+            statement.executeUpdate();
+            return 1;
+        } catch (SQLException e) {
+            String sqlState = e.getSQLState();
+            if (sqlState != null && sqlState.startsWith(INTEGRITY_CONSTRAINT_VIOLATION)) {
+                // The lease exists and is held by another node
+                return 0;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * Memory-mapped counter file shared by the server processes of a host, so that a single elected process can
+ * publish the usage of the whole host.
+ *
+ * <p>Every process claims a slot of its own by locking its region of the file, and adds its window counts to the
+ * running total of that slot. The process holding the lock on the file header is the publisher of the host. It
+ * reads the totals of all slots and, once they are published, stores them as the published mark of each slot.
+ * Every value has a single writer, and a slot or the leadership of a process that dies is released by the
+ * operating system, so a process that takes it over continues from the values left in the file.</p>
+ */
+public class HostCounterSegment implements Closeable {
+
+    private static final int HEADER_SIZE = 64;
+    // One cache line per slot, so processes do not write to the same line
+    private static final int SLOT_SIZE = 64;
+    private static final int TOTAL_OFFSET = 0;
+    private static final int PUBLISHED_OFFSET = 8;
+
+    private final File file;
+    private final int slots;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final FileLock slotLock;
+    private final int slotOffset;
+    private FileLock leaderLock;
+
+    private HostCounterSegment(File file, int slots, RandomAccessFile randomAccessFile) throws IOException {
+        this.file = file;
+        this.slots = slots;
+        this.randomAccessFile = randomAccessFile;
+        this.channel = randomAccessFile.getChannel();
+        long size = HEADER_SIZE + (long) slots * SLOT_SIZE;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        FileLock claimed = null;
+        int claimedOffset = -1;
+        for (int slot = 0; slot < slots && claimed == null; slot++) {
+            int offset = HEADER_SIZE + slot * SLOT_SIZE;
+            claimed = tryLock(offset, SLOT_SIZE);
+            claimedOffset = offset;
+        }
+        if (claimed == null) {
+            throw new IOException("All " + slots + " slots of the host counter file " + file + " are in use");
+        }
+        this.slotLock = claimed;
+        this.slotOffset = claimedOffset;
+    }
+
+    /**
+     * Opens the counter file of the host, creating it if needed, and claims a free slot in it.
+     *
+     * @param file The counter file shared by the processes of the host
+     * @param slots The number of processes the file can hold, the same for every process of the host
+     * @return The opened segment
+     * @throws IOException if the file cannot be mapped or has no free slot
+     */
+    public static HostCounterSegment open(File file, int slots) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the directory of the host counter file " + file);
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            return new HostCounterSegment(file, slots, randomAccessFile);
+        } catch (IOException | RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Adds a window count to the total of the slot of this process.
+     *
+     * @param count The count to add
+     */
+    public synchronized void add(long count) {
+        if (count > 0) {
+            buffer.putLong(slotOffset + TOTAL_OFFSET, buffer.getLong(slotOffset + TOTAL_OFFSET) + count);
+        }
+    }
+
+    /**
+     * Makes this process the publisher of the host if no other process is.
+     *
+     * @return true if this process is the publisher of the host
+     */
+    public synchronized boolean tryLead() throws IOException {
+        if (leaderLock == null || !leaderLock.isValid()) {
+            leaderLock = tryLock(0, HEADER_SIZE);
+        }
+        return leaderLock != null;
+    }
+
+    /**
+     * Reads the totals of all slots. Only meaningful for the publisher of the host.
+     *
+     * @return The totals of all slots, to be passed to {@link #markPublished(long[])} once published
+     */
+    public synchronized long[] readTotals() {
+        long[] totals = new long[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            totals[slot] = getSlotValue(slot, TOTAL_OFFSET);
+        }
+        return totals;
+    }
+
+    /**
+     * Returns the part of the given totals that has not been published yet.
+     *
+     * @param totals Totals read by {@link #readTotals()}
+     * @return The unpublished count of the host
+     */
+    public synchronized long getUnpublished(long[] totals) {
+        long unpublished = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            unpublished += Math.max(0, totals[slot] - getSlotValue(slot, PUBLISHED_OFFSET));
+        }
+        return unpublished;
+    }
+
+    /**
+     * Records the given totals as published. Only the publisher of the host may call this.
+     *
+     * @param totals Totals read by {@link #readTotals()} and included in a published report
+     */
+    public synchronized void markPublished(long[] totals) {
+        for (int slot = 0; slot < slots; slot++) {
+            buffer.putLong(HEADER_SIZE + slot * SLOT_SIZE + PUBLISHED_OFFSET, totals[slot]);
+        }
+    }
+
+    /**
+     * Releases the slot and the leadership of this process.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (leaderLock != null) {
+                leaderLock.release();
+            }
+            slotLock.release();
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private long getSlotValue(int slot, int offset) {
+        return buffer.getLong(HEADER_SIZE + slot * SLOT_SIZE + offset);
+    }
+
+    private FileLock tryLock(long position, long size) throws IOException {
+        try {
+            return channel.tryLock(position, size, false);
+        } catch (OverlappingFileLockException e) {
+            // Already held by this process, e.g. by a segment that was not closed
+            return null;
+        }
+    }
+}
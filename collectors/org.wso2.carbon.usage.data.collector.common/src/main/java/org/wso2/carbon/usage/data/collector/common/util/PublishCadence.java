@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive, epoch-aligned publish interval of a usage aggregator.
+ *
+ * <p>Intervals are picked from a fixed ladder (15 s, 30 s, 1 min, 5 min, 15 min, 1 h) where every step
+ * divides the next one and the hour, and a window always ends on a multiple of its interval since the
+ * epoch. Windows of different nodes, and of the same node before and after a change of interval,
+ * therefore nest and can be merged by the receiver. A window that would be shorter than an eighth of its interval,
+ * e.g. the first one or one right after a change of interval, is extended to the following multiple. After every
+ * window the interval is stepped:</p>
+ * <ul>
+ *     <li>up, when publishing took more than a quarter of the interval, so a slow receiver gets fewer calls;</li>
+ *     <li>down, when the window carried more than the target count, for fresher data on busy nodes;</li>
+ *     <li>up, when the window carried less than an eighth of the target count, so quiet nodes publish
+ *     rarely.</li>
+ * </ul>
+ */
+public class PublishCadence {
+
+    private static final long[] LADDER_MILLIS = {
+            TimeUnit.SECONDS.toMillis(15),
+            TimeUnit.SECONDS.toMillis(30),
+            TimeUnit.MINUTES.toMillis(1),
+            TimeUnit.MINUTES.toMillis(5),
+            TimeUnit.MINUTES.toMillis(15),
+            TimeUnit.HOURS.toMillis(1)
+    };
+    private static final int LOW_COUNT_DIVISOR = 8;
+    private static final int SLOW_PUBLISH_DIVISOR = 4;
+    private static final int SHORT_WINDOW_DIVISOR = 8;
+
+    private final long[] intervals;
+    private final long targetCount;
+    private volatile int current;
+
+    /**
+     * @param minIntervalMillis     The shortest interval to use
+     * @param maxIntervalMillis     The longest interval to use
+     * @param initialIntervalMillis The interval of the first window
+     * @param targetCount           The count above which a window is considered busy
+     */
+    public PublishCadence(long minIntervalMillis, long maxIntervalMillis, long initialIntervalMillis,
+                          long targetCount) {
+        List<Long> allowed = new ArrayList<>();
+        for (long interval : LADDER_MILLIS) {
+            if (interval >= minIntervalMillis && interval <= maxIntervalMillis) {
+                allowed.add(interval);
+            }
+        }
+        if (allowed.isEmpty()) {
+            // Bounds that exclude the whole ladder fall back to the step closest to the initial interval
+            allowed.add(closestStep(initialIntervalMillis));
+        }
+        this.intervals = new long[allowed.size()];
+        int initial = 0;
+        for (int i = 0; i < intervals.length; i++) {
+            intervals[i] = allowed.get(i);
+            if (intervals[i] <= initialIntervalMillis) {
+                initial = i;
+            }
+        }
+        this.current = initial;
+        this.targetCount = targetCount;
+    }
+
+    public long getIntervalMillis() {
+        return intervals[current];
+    }
+
+    /**
+     * Returns the delay until the end of the current window, which is the next multiple of the interval
+     * since the epoch. A scheduler that fires slightly before the end of the previous window would otherwise
+     * start a window of a few milliseconds, so a delay shorter than an eighth of the interval is extended by an
+     * interval.
+     *
+     * @param nowMillis The current time
+     * @return The delay in milliseconds, always positive
+     */
+    public long getDelayMillis(long nowMillis) {
+        long interval = getIntervalMillis();
+        long delay = interval - Math.floorMod(nowMillis, interval);
+        return delay < interval / SHORT_WINDOW_DIVISOR ? delay + interval : delay;
+    }
+
+    /**
+     * Steps the interval for the next window based on the window that was just published.
+     *
+     * @param count         The count of the window
+     * @param windowMillis  The length of the window
+     * @param publishMillis The time taken to publish the window
+     */
+    public void update(long count, long windowMillis, long publishMillis) {
+        long interval = getIntervalMillis();
+        if (publishMillis > interval / SLOW_PUBLISH_DIVISOR) {
+            stepUp();
+            return;
+        }
+        if (windowMillis < interval / SHORT_WINDOW_DIVISOR) {
+            // Too short to tell the rate of traffic, e.g. a final window on shutdown
+            return;
+        }
+        // Windows right after a change of interval are shorter, so compare the count of a full interval
+        double expectedCount = (double) count * interval / windowMillis;
+        if (expectedCount > targetCount) {
+            stepDown();
+        } else if (expectedCount < (double) targetCount / LOW_COUNT_DIVISOR) {
+            stepUp();
+        }
+    }
+
+    private void stepUp() {
+        if (current < intervals.length - 1) {
+            current++;
+        }
+    }
+
+    private void stepDown() {
+        if (current > 0) {
+            current--;
+        }
+    }
+
+    private static long closestStep(long intervalMillis) {
+        long closest = LADDER_MILLIS[0];
+        for (long step : LADDER_MILLIS) {
+            if (Math.abs(step - intervalMillis) < Math.abs(closest - intervalMillis)) {
+                closest = step;
+            }
+        }
+        return closest;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Local file of usage records that could not be published, kept for replay on the next start.
+ * Every record is stored as one JSON document per line.
+ */
+public class UsageSpool {
+
+    private static final Log log = LogFactory.getLog(UsageSpool.class);
+
+    private final File file;
+
+    public UsageSpool(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Appends records to the spool file and syncs it to disk.
+     *
+     * @param records The JSON documents to append
+     * @return true if all records were written, false otherwise
+     */
+    public synchronized boolean spill(List<String> records) {
+        if (records.isEmpty()) {
+            return true;
+        }
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Could not create the usage spool directory " + directory);
+            }
+            return false;
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            for (String record : records) {
+                writer.write(record);
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to spill " + records.size() + " usage records to " + file, e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reads all spooled records, which stay in the spool until removed once they have been delivered.
+     *
+     * @return The spooled JSON documents, oldest first
+     */
+    public synchronized List<String> read() {
+        if (!file.isFile()) {
+            return Collections.emptyList();
+        }
+        try {
+            return readRecords();
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to read spooled usage records from " + file, e);
+            }
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Removes the oldest records from the spool, keeping the records spilled since they were read.
+     *
+     * @param count The number of records to remove
+     * @return true if the records were removed, false otherwise
+     */
+    public synchronized boolean remove(int count) {
+        if (count <= 0 || !file.isFile()) {
+            return true;
+        }
+        try {
+            List<String> records = readRecords();
+            if (count >= records.size()) {
+                Files.delete(file.toPath());
+                return true;
+            }
+            // Write the remaining records aside and move them over the spool, so that a failure leaves it whole
+            File remaining = new File(file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(remaining);
+                 Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                for (String record : records.subList(count, records.size())) {
+                    writer.write(record);
+                    writer.write('\n');
+                }
+                writer.flush();
+                out.getFD().sync();
+            }
+            Files.move(remaining.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to remove " + count + " replayed usage records from " + file, e);
+            }
+            return false;
+        }
+    }
+
+    private List<String> readRecords() throws IOException {
+        List<String> records = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    records.add(line);
+                }
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,18 @@
+-- Tables shared by the usage data collectors of all nodes of a cluster. Create them in the database the
+-- collectors publish from, e.g. the APIM database for the API count lease and counters.
+
+-- Cluster leases, see org.wso2.carbon.usage.data.collector.common.util.ClusterLease
+CREATE TABLE USAGE_COLLECTOR_LEASE (
+    LEASE_NAME VARCHAR(64) NOT NULL,
+    HOLDER_ID VARCHAR(255) NOT NULL,
+    FENCING_TOKEN BIGINT NOT NULL,
+    EXPIRES_AT BIGINT NOT NULL,
+    PRIMARY KEY (LEASE_NAME)
+);
+
+-- Cluster counters, see org.wso2.carbon.usage.data.collector.common.util.ClusterCounter
+CREATE TABLE USAGE_COLLECTOR_COUNTER (
+    COUNTER_NAME VARCHAR(64) NOT NULL,
+    COUNTER_VALUE BIGINT NOT NULL,
+    PRIMARY KEY (COUNTER_NAME)
+);
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts requests with start times in the past to check the peak, the expiry of requests that never complete and
+ * that late or repeated completions do not skew the gauge.
+ */
+public class ConcurrencyGaugeTest {
+
+    private static final long TIME_TO_LIVE_MILLIS = 1000;
+
+    @Test
+    public void testPeakAndCarriedOverRequests() {
+        ConcurrencyGauge gauge = new ConcurrencyGauge(TIME_TO_LIVE_MILLIS);
+        long now = System.nanoTime();
+        gauge.increment(now);
+        gauge.increment(now);
+        gauge.increment(now);
+        gauge.decrement(now);
+        Assert.assertEquals(gauge.getCurrent(), 2);
+        Assert.assertEquals(gauge.getPeakAndReset(), 3);
+        Assert.assertEquals(gauge.getWindowStart(), 2);
+        Assert.assertEquals(gauge.getPeakAndReset(), 2);
+    }
+
+    @Test
+    public void testRequestsOlderThanTimeToLiveExpire() {
+        ConcurrencyGauge gauge = new ConcurrencyGauge(TIME_TO_LIVE_MILLIS);
+        long now = System.nanoTime();
+        long stale = now - TimeUnit.MILLISECONDS.toNanos(2 * TIME_TO_LIVE_MILLIS);
+        gauge.increment(stale);
+        gauge.increment(now);
+        gauge.expire();
+        Assert.assertEquals(gauge.getCurrent(), 1);
+
+        // The completion of an expired request is ignored
+        gauge.decrement(stale);
+        Assert.assertEquals(gauge.getCurrent(), 1);
+        gauge.decrement(now);
+        Assert.assertEquals(gauge.getCurrent(), 0);
+    }
+
+    @Test
+    public void testStrayCompletionDoesNotGoNegative() {
+        ConcurrencyGauge gauge = new ConcurrencyGauge(TIME_TO_LIVE_MILLIS);
+        long now = System.nanoTime();
+        gauge.decrement(now);
+        gauge.increment(now);
+        gauge.decrement(now);
+        gauge.decrement(now);
+        Assert.assertEquals(gauge.getCurrent(), 0);
+    }
+
+    @Test
+    public void testCountingFromManyThreads() throws InterruptedException {
+        ConcurrencyGauge gauge = new ConcurrencyGauge(TimeUnit.MINUTES.toMillis(1));
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    long start = System.nanoTime();
+                    gauge.increment(start);
+                    gauge.decrement(start);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(gauge.getCurrent(), 0);
+        Assert.assertTrue(gauge.getPeakAndReset() <= threads.length);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Counts keys from several threads, so that they land in different stripes, and checks the merged counts.
+ */
+public class HeavyHittersTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void testCountsAreExactWhileAllKeysAreMonitored() throws InterruptedException {
+        HeavyHitters heavyHitters = new HeavyHitters(10, 4);
+        runThreads(thread -> {
+            for (int i = 0; i < 1000; i++) {
+                heavyHitters.add("api" + (i % 5));
+            }
+        });
+
+        List<HeavyHitters.HeavyHitter> hitters = heavyHitters.snapshotAndReset(10);
+        Assert.assertEquals(hitters.size(), 5);
+        for (HeavyHitters.HeavyHitter hitter : hitters) {
+            Assert.assertEquals(hitter.getCount(), THREADS * 200, hitter.getKey());
+            Assert.assertEquals(hitter.getError(), 0, hitter.getKey());
+        }
+    }
+
+    @Test
+    public void testMergedCountsBoundTheTrueCounts() throws InterruptedException {
+        HeavyHitters heavyHitters = new HeavyHitters(8, 4);
+        Map<String, Integer> trueCounts = new HashMap<>();
+        List<List<String>> streams = new ArrayList<>();
+        Random random = new Random(42);
+        for (int thread = 0; thread < THREADS; thread++) {
+            List<String> stream = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                // A few hot keys over a long tail of rare ones
+                String key = random.nextInt(2) == 0 ? "hot" + random.nextInt(3) : "rare" + random.nextInt(500);
+                stream.add(key);
+                trueCounts.merge(key, 1, Integer::sum);
+            }
+            streams.add(stream);
+        }
+        runThreads(thread -> {
+            for (String key : streams.get(thread)) {
+                heavyHitters.add(key);
+            }
+        });
+
+        List<HeavyHitters.HeavyHitter> hitters = heavyHitters.snapshotAndReset(3);
+        Assert.assertEquals(hitters.size(), 3);
+        for (HeavyHitters.HeavyHitter hitter : hitters) {
+            Assert.assertTrue(hitter.getKey().startsWith("hot"), hitter.getKey());
+            long trueCount = trueCounts.get(hitter.getKey());
+            Assert.assertTrue(hitter.getCount() >= trueCount, hitter.toString());
+            Assert.assertTrue(hitter.getCount() - hitter.getError() <= trueCount, hitter.toString());
+        }
+    }
+
+    @Test
+    public void testSnapshotResetsAllStripes() throws InterruptedException {
+        HeavyHitters heavyHitters = new HeavyHitters(4, 4);
+        runThreads(thread -> heavyHitters.add("api"));
+
+        Assert.assertEquals(heavyHitters.snapshotAndReset(1).get(0).getCount(), THREADS);
+        Assert.assertTrue(heavyHitters.snapshotAndReset(1).isEmpty());
+    }
+
+    private static void runThreads(ThreadBody body) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                body.run(index);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private interface ThreadBody {
+        void run(int thread);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that keys are remembered for one rotation, and that a full filter counts keys instead of dropping them.
+ */
+public class RotatingBloomFilterTest {
+
+    @Test
+    public void testKeysAreRememberedUntilTheSecondRotation() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(100, 0.01);
+        Assert.assertTrue(filter.add("message-1"));
+        Assert.assertFalse(filter.add("message-1"));
+
+        Assert.assertEquals(filter.rotate(), 1);
+        Assert.assertFalse(filter.add("message-1"));
+
+        filter.rotate();
+        filter.rotate();
+        Assert.assertTrue(filter.add("message-1"));
+    }
+
+    @Test
+    public void testFullFilterStopsSuppressing() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(10, 0.01);
+        for (int i = 0; i < 10; i++) {
+            filter.add("message-" + i);
+        }
+        // Over capacity every key is counted, including the ones seen before
+        Assert.assertTrue(filter.add("message-0"));
+        Assert.assertTrue(filter.add("message-0"));
+        Assert.assertEquals(filter.rotate(), 12);
+
+        // The filter of the full window still suppresses the keys it holds
+        Assert.assertFalse(filter.add("message-0"));
+        Assert.assertTrue(filter.add("message-10"));
+    }
+}
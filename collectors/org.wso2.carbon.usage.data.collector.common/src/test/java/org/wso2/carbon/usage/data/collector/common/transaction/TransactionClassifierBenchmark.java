@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.common.transaction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of classifying a request-response pair with {@link TransactionClassifier} against the
+ * property based classification it replaced, over a message context backed by a property map.
+ *
+ * <p>Run it from the test classpath, adding {@code -prof gc} to see the allocation per pair:</p>
+ * <pre>
+ * java -cp &lt;test classpath&gt; org.openjdk.jmh.Main TransactionClassifierBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionClassifierBenchmark {
+
+    private static final String TRANSPORT_IN = "TRANSPORT_IN";
+    private static final String INBOUND = "isInbound";
+    private static final String OUT_ONLY = "OUT_ONLY";
+    private static final String CORRELATION = "TRANSACTION_CORRELATION";
+    private static final String IS_THERE_ASSOCIATED_INCOMING_REQUEST = "is_there_incoming_request";
+    private static final String REQUEST_START_TIME = "REQUEST_START_TIME";
+    private static final String REQUEST_IN_FLIGHT = "REQUEST_IN_FLIGHT";
+
+    private final TransactionClassifier<Message> classifier = new TransactionClassifier<>(new MessageRules());
+    private final String transport = new String("https");
+
+    @Benchmark
+    public int legacy() {
+        Message message = new Message(transport);
+        int count = legacyRequestInFlow(message);
+        count += legacyRequestOutFlow(message);
+        count += legacyResponseOutFlow(message);
+        return count;
+    }
+
+    @Benchmark
+    public int classifier() {
+        Message message = new Message(transport);
+        int count = classifier.handleRequestInFlow(message);
+        count += classifier.handleRequestOutFlow(message);
+        count += classifier.handleResponseOutFlow(message);
+        classifier.completeInFlight(message, false);
+        return count;
+    }
+
+    private static int legacyRequestInFlow(Message message) {
+        if (message.getProperty(TRANSPORT_IN) == null) {
+            return 0;
+        }
+        if (Boolean.TRUE.equals(message.getProperty(INBOUND))) {
+            return 1;
+        }
+        String transport = (String) message.getProperty(TRANSPORT_IN);
+        if ("ws".equals(transport) || "wss".equals(transport)) {
+            return 1;
+        }
+        message.setProperty(IS_THERE_ASSOCIATED_INCOMING_REQUEST, true);
+        message.setProperty(REQUEST_START_TIME, System.nanoTime());
+        message.setProperty(REQUEST_IN_FLIGHT, true);
+        return 0;
+    }
+
+    private static int legacyRequestOutFlow(Message message) {
+        return message.getProperty(IS_THERE_ASSOCIATED_INCOMING_REQUEST) == null ? 1 : 0;
+    }
+
+    private static int legacyResponseOutFlow(Message message) {
+        Object associated = message.getProperty(IS_THERE_ASSOCIATED_INCOMING_REQUEST);
+        if (!(associated instanceof Boolean) || !(Boolean) associated) {
+            return 0;
+        }
+        if (Boolean.TRUE.equals(message.getProperty(REQUEST_IN_FLIGHT))) {
+            message.setProperty(REQUEST_IN_FLIGHT, false);
+        }
+        Object startTime = message.getProperty(REQUEST_START_TIME);
+        return startTime instanceof Long && System.nanoTime() >= (Long) startTime ? 1 : 0;
+    }
+
+    /**
+     * A message context reduced to its property map, as in the Synapse message context.
+     */
+    private static final class Message {
+
+        private final Map<String, Object> properties = new HashMap<>();
+
+        Message(String transport) {
+            properties.put(TRANSPORT_IN, transport);
+        }
+
+        Object getProperty(String name) {
+            return properties.get(name);
+        }
+
+        void setProperty(String name, Object value) {
+            properties.put(name, value);
+        }
+    }
+
+    private static final class MessageRules implements TransactionRules<Message> {
+
+        @Override
+        public boolean isTransportMessage(Message message) {
+            return message.getProperty(TRANSPORT_IN) != null;
+        }
+
+        @Override
+        public boolean isInbound(Message message) {
+            return Boolean.TRUE.equals(message.getProperty(INBOUND));
+        }
+
+        @Override
+        public int getIncomingTransport(Message message) {
+            return TransportId.of((String) message.getProperty(TRANSPORT_IN));
+        }
+
+        @Override
+        public String getIncomingTransportName(Message message) {
+            return (String) message.getProperty(TRANSPORT_IN);
+        }
+
+        @Override
+        public String getApiName(Message message) {
+            return null;
+        }
+
+        @Override
+        public String getProxyName(Message message) {
+            return null;
+        }
+
+        @Override
+        public boolean isOutOnly(Message message) {
+            return Boolean.TRUE.equals(message.getProperty(OUT_ONLY));
+        }
+
+        @Override
+        public TransactionCorrelation getCorrelation(Message message) {
+            return (TransactionCorrelation) message.getProperty(CORRELATION);
+        }
+
+        @Override
+        public void setCorrelation(Message message, TransactionCorrelation correlation) {
+            message.setProperty(CORRELATION, correlation);
+        }
+    }
+}
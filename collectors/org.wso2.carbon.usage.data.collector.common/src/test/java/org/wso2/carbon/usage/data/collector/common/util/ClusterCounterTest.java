@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.common.util;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Adds to a counter from several simulated nodes sharing an in-memory H2 database.
+ */
+public class ClusterCounterTest {
+
+    private static final String COUNTER_NAME = "TEST_COUNTER";
+
+    private JdbcDataSource dataSource;
+    private Connection keepAlive;
+
+    @BeforeMethod
+    public void createTables() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:counter;DB_CLOSE_DELAY=-1");
+        keepAlive = dataSource.getConnection();
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("RUNSCRIPT FROM 'classpath:/dbscripts/h2.sql'");
+        }
+    }
+
+    @AfterMethod
+    public void dropTables() throws SQLException {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        keepAlive.close();
+    }
+
+    @Test
+    public void testMissingCounterReadsZero() throws SQLException {
+        Assert.assertEquals(new ClusterCounter(COUNTER_NAME).get(dataSource), 0);
+    }
+
+    @Test
+    public void testChangesOfAllNodesAddUp() throws SQLException {
+        ClusterCounter node1 = new ClusterCounter(COUNTER_NAME);
+        ClusterCounter node2 = new ClusterCounter(COUNTER_NAME);
+
+        node1.add(dataSource, 3);
+        node2.add(dataSource, -1);
+        node2.add(dataSource, 0);
+
+        Assert.assertEquals(node1.get(dataSource), 2);
+        Assert.assertEquals(new ClusterCounter("OTHER_COUNTER").get(dataSource), 0);
+    }
+
+    @Test
+    public void testConcurrentFirstAddsAreAllCounted() throws Exception {
+        int nodes = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(nodes);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < nodes; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws SQLException {
+                        new ClusterCounter(COUNTER_NAME).add(dataSource, 1);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(new ClusterCounter(COUNTER_NAME).get(dataSource), nodes);
+    }
+}
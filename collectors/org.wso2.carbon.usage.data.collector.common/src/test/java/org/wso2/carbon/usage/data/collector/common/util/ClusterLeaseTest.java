@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.common.util;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+/**
+ * Runs the lease against an in-memory H2 database shared by the simulated nodes.
+ */
+public class ClusterLeaseTest {
+
+    private static final String LEASE_NAME = "TEST_LEASE";
+    private static final long DURATION_MILLIS = 200;
+
+    private JdbcDataSource dataSource;
+    private Connection keepAlive;
+
+    @BeforeMethod
+    public void createTables() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:lease;DB_CLOSE_DELAY=-1");
+        keepAlive = dataSource.getConnection();
+        try (Statement statement = keepAlive.createStatement()) {
+            // The shipped script, so that the lease is tested against the table it is deployed with
+            statement.execute("RUNSCRIPT FROM 'classpath:/dbscripts/h2.sql'");
+        }
+    }
+
+    @AfterMethod
+    public void dropTables() throws SQLException {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        keepAlive.close();
+    }
+
+    @Test
+    public void testFirstNodeAcquiresLease() throws SQLException {
+        ClusterLease lease = new ClusterLease(LEASE_NAME, "node-1", DURATION_MILLIS);
+
+        Assert.assertTrue(lease.acquire(dataSource));
+        Assert.assertTrue(lease.isHeld());
+        Assert.assertEquals(lease.getFencingToken(), 1);
+        Assert.assertEquals(readHolder(), "node-1");
+    }
+
+    @Test
+    public void testHolderRenewsLeaseWithSameToken() throws SQLException {
+        ClusterLease lease = new ClusterLease(LEASE_NAME, "node-1", DURATION_MILLIS);
+        lease.acquire(dataSource);
+        long expiresAt = readExpiresAt();
+
+        Assert.assertTrue(lease.acquire(dataSource));
+        Assert.assertEquals(lease.getFencingToken(), 1);
+        Assert.assertTrue(readExpiresAt() >= expiresAt);
+    }
+
+    @Test
+    public void testOtherNodeCannotAcquireHeldLease() throws SQLException {
+        ClusterLease first = new ClusterLease(LEASE_NAME, "node-1", DURATION_MILLIS);
+        ClusterLease second = new ClusterLease(LEASE_NAME, "node-2", DURATION_MILLIS);
+        first.acquire(dataSource);
+
+        // The lease exists, so the insert of the second node fails on the primary key and is rolled back
+        Assert.assertFalse(second.acquire(dataSource));
+        Assert.assertFalse(second.isHeld());
+        Assert.assertEquals(readHolder(), "node-1");
+    }
+
+    @Test
+    public void testNodeLosingInsertRaceDoesNotAcquireLease() throws SQLException {
+        ClusterLease first = new ClusterLease(LEASE_NAME, "node-1", DURATION_MILLIS);
+        ClusterLease second = new ClusterLease(LEASE_NAME, "node-2", DURATION_MILLIS);
+        // Both nodes find no lease to take over, and the first one inserts it just before the second one does
+        DataSource racingDataSource = insertingFirst(() -> Assert.assertTrue(first.acquire(dataSource)));
+
+        Assert.assertFalse(second.acquire(racingDataSource));
+        Assert.assertFalse(second.isHeld());
+        Assert.assertEquals(readHolder(), "node-1");
+        Assert.assertTrue(first.acquire(dataSource));
+        Assert.assertEquals(first.getFencingToken(), 1);
+    }
+
+    @Test
+    public void testOtherNodeTakesOverExpiredLease() throws Exception {
+        ClusterLease first = new ClusterLease(LEASE_NAME, "node-1", DURATION_MILLIS);
+        ClusterLease second = new ClusterLease(LEASE_NAME, "node-2", DURATION_MILLIS);
+        first.acquire(dataSource);
+        Thread.sleep(DURATION_MILLIS * 2);
+
+        Assert.assertFalse(first.isHeld());
+        Assert.assertTrue(second.acquire(dataSource));
+        Assert.assertEquals(second.getFencingToken(), 2);
+        Assert.assertEquals(readHolder(), "node-2");
+    }
+
+    @Test
+    public void testSupersededHolderCannotRenewWithStaleToken() throws Exception {
+        ClusterLease first = new ClusterLease(LEASE_NAME, "node-1", DURATION_MILLIS);
+        ClusterLease second = new ClusterLease(LEASE_NAME, "node-2", DURATION_MILLIS);
+        first.acquire(dataSource);
+        // The first node is paused past the expiry and the second node takes over
+        Thread.sleep(DURATION_MILLIS * 2);
+        second.acquire(dataSource);
+
+        Assert.assertFalse(first.acquire(dataSource));
+        Assert.assertFalse(first.isHeld());
+        Assert.assertEquals(first.getFencingToken(), 0);
+        Assert.assertEquals(readHolder(), "node-2");
+        Assert.assertTrue(second.acquire(dataSource));
+        Assert.assertEquals(second.getFencingToken(), 2);
+    }
+
+    @Test
+    public void testReleasedLeaseIsTakenOverWithoutWaiting() throws SQLException {
+        ClusterLease first = new ClusterLease(LEASE_NAME, "node-1", DURATION_MILLIS);
+        ClusterLease second = new ClusterLease(LEASE_NAME, "node-2", DURATION_MILLIS);
+        first.acquire(dataSource);
+
+        first.release(dataSource);
+        Assert.assertFalse(first.isHeld());
+        Assert.assertTrue(second.acquire(dataSource));
+        Assert.assertEquals(second.getFencingToken(), 2);
+    }
+
+    @Test
+    public void testReleaseByFormerHolderKeepsLeaseOfNewHolder() throws Exception {
+        ClusterLease first = new ClusterLease(LEASE_NAME, "node-1", DURATION_MILLIS);
+        ClusterLease second = new ClusterLease(LEASE_NAME, "node-2", DURATION_MILLIS);
+        first.acquire(dataSource);
+        Thread.sleep(DURATION_MILLIS * 2);
+        second.acquire(dataSource);
+
+        first.release(dataSource);
+        Assert.assertTrue(readExpiresAt() > System.currentTimeMillis());
+        Assert.assertEquals(readHolder(), "node-2");
+    }
+
+    /**
+     * Returns a datasource whose connections run the given action right before preparing the lease insert.
+     */
+    private DataSource insertingFirst(SqlAction action) {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(dataSource, method, args);
+                    if (!"getConnection".equals(method.getName())) {
+                        return result;
+                    }
+                    Connection connection = (Connection) result;
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                            (connectionProxy, connectionMethod, connectionArgs) -> {
+                                if ("prepareStatement".equals(connectionMethod.getName())
+                                        && ((String) connectionArgs[0]).startsWith("INSERT")) {
+                                    action.run();
+                                }
+                                return invoke(connection, connectionMethod, connectionArgs);
+                            });
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private String readHolder() throws SQLException {
+        try (PreparedStatement statement = keepAlive.prepareStatement(
+                "SELECT HOLDER_ID FROM USAGE_COLLECTOR_LEASE WHERE LEASE_NAME = ?")) {
+            statement.setString(1, LEASE_NAME);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+
+    private long readExpiresAt() throws SQLException {
+        try (PreparedStatement statement = keepAlive.prepareStatement(
+                "SELECT EXPIRES_AT FROM USAGE_COLLECTOR_LEASE WHERE LEASE_NAME = ?")) {
+            statement.setString(1, LEASE_NAME);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Assert.assertTrue(resultSet.next());
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.common.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steps the cadence with simulated windows and checks that it stays epoch-aligned and ignores windows too short to
+ * tell the rate of traffic.
+ */
+public class PublishCadenceTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void testBusyWindowStepsDown() {
+        PublishCadence cadence = new PublishCadence(MINUTE, HOUR, 5 * MINUTE, 1000);
+        cadence.update(2000, 5 * MINUTE, 0);
+        Assert.assertEquals(cadence.getIntervalMillis(), MINUTE);
+    }
+
+    @Test
+    public void testShortWindowDoesNotStepDown() {
+        PublishCadence cadence = new PublishCadence(MINUTE, HOUR, 5 * MINUTE, 1000);
+        // A few requests in a window of a second would extrapolate to far more than the target
+        cadence.update(10, TimeUnit.SECONDS.toMillis(1), 0);
+        Assert.assertEquals(cadence.getIntervalMillis(), 5 * MINUTE);
+    }
+
+    @Test
+    public void testEarlyFiringDoesNotStartTinyWindow() {
+        PublishCadence cadence = new PublishCadence(MINUTE, HOUR, 5 * MINUTE, 1000);
+        long boundary = 1000 * 5 * MINUTE;
+        // Fired 2 ms before the end of the window, the next window ends on the following multiple
+        Assert.assertEquals(cadence.getDelayMillis(boundary - 2), 5 * MINUTE + 2);
+        Assert.assertEquals(cadence.getDelayMillis(boundary + 2), 5 * MINUTE - 2);
+    }
+
+    @Test
+    public void testSlowPublishStepsUp() {
+        PublishCadence cadence = new PublishCadence(MINUTE, HOUR, 5 * MINUTE, 1000);
+        cadence.update(500, 5 * MINUTE, 2 * MINUTE);
+        Assert.assertEquals(cadence.getIntervalMillis(), 15 * MINUTE);
+    }
+}
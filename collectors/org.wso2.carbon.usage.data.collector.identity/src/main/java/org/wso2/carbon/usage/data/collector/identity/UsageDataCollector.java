@@ -23,19 +23,38 @@ import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.organization.management.service.OrganizationManager;
 import org.wso2.carbon.usage.data.collector.common.publisher.api.model.ApiRequest;
 import org.wso2.carbon.usage.data.collector.common.publisher.api.model.ApiResponse;
+import org.wso2.carbon.usage.data.collector.identity.cluster.CollectionRoundClusterMessage;
+import org.wso2.carbon.usage.data.collector.identity.cluster.CollectionRounds;
+import org.wso2.carbon.usage.data.collector.identity.cluster.PartialTenantUsages;
+import org.wso2.carbon.usage.data.collector.identity.cluster.TenantPartitioner;
+import org.wso2.carbon.usage.data.collector.identity.cluster.TenantUsageClusterMessage;
 import org.wso2.carbon.usage.data.collector.identity.counter.OrganizationCounter;
+import org.wso2.carbon.usage.data.collector.identity.counter.SqlUsageCounter;
 import org.wso2.carbon.usage.data.collector.identity.counter.UserCounter;
 import org.wso2.carbon.usage.data.collector.identity.internal.UsageDataCollectorDataHolder;
 import org.wso2.carbon.usage.data.collector.identity.model.SystemUsage;
 import org.wso2.carbon.usage.data.collector.identity.model.TenantUsage;
 import org.wso2.carbon.usage.data.collector.identity.publisher.HTTPClient;
 import org.wso2.carbon.usage.data.collector.identity.publisher.PublisherImp;
-import org.wso2.carbon.user.api.Tenant;
+import org.wso2.carbon.usage.data.collector.identity.store.TenantUsageCheckpoint;
+import org.wso2.carbon.usage.data.collector.identity.util.AdaptiveConcurrencyLimiter;
+import org.wso2.carbon.usage.data.collector.identity.util.ClusteringUtil;
+import org.wso2.carbon.usage.data.collector.identity.util.TenantPager;
+import org.wso2.carbon.usage.data.collector.identity.util.UsageCollectorConstants;
 import org.wso2.carbon.user.core.service.RealmService;
-import org.wso2.carbon.user.core.tenant.TenantManager;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main service for collecting usage statistics.
@@ -54,14 +73,56 @@ public class UsageDataCollector {
     private final UserCounter userCountCalculator;
     private final OrganizationCounter orgCountCalculator;
     private final PublisherImp publisher;
+    private final long collectionIntervalMillis;
+    private final TenantUsageCheckpoint checkpoint;
+    private final int maxConcurrency;
+    private final SqlUsageCounter sqlCounter;
+    private final ThreadPoolExecutor workers;
+    private long previousRound;
 
     public UsageDataCollector() {
 
+        this(0);
+    }
+
+    /**
+     * @param collectionIntervalMillis Interval of the collection rounds when tenants are partitioned across the
+     *                                 cluster members, or 0 to collect all tenants on this node
+     */
+    public UsageDataCollector(long collectionIntervalMillis) {
+
+        this.collectionIntervalMillis = collectionIntervalMillis;
         this.realmService = UsageDataCollectorDataHolder.getInstance().getRealmService();
         this.organizationManager = UsageDataCollectorDataHolder.getInstance().getOrganizationManager();
-        this.userCountCalculator = new UserCounter(realmService, organizationManager);
-        this.orgCountCalculator = new OrganizationCounter(organizationManager);
+        this.maxConcurrency = Math.max(1, Integer.getInteger(UsageCollectorConstants.MAX_CONCURRENCY_PROPERTY,
+                UsageCollectorConstants.DEFAULT_MAX_CONCURRENCY));
+        AdaptiveConcurrencyLimiter limiter =
+                new AdaptiveConcurrencyLimiter(maxConcurrency, UsageCollectorConstants.LATENCY_TOLERANCE);
         this.publisher = new PublisherImp();
+        this.sqlCounter = Boolean.getBoolean(UsageCollectorConstants.SQL_COUNT_DISABLED_PROPERTY) ? null :
+                new SqlUsageCounter(publisher.getDataSource(), realmService);
+        this.userCountCalculator = new UserCounter(realmService, organizationManager, limiter, sqlCounter);
+        this.orgCountCalculator = new OrganizationCounter(organizationManager, limiter, sqlCounter);
+        this.checkpoint = Boolean.getBoolean(UsageCollectorConstants.CHECKPOINT_ENABLED_PROPERTY) ?
+                createCheckpoint() : null;
+        this.workers = maxConcurrency > 1 ? createWorkers(maxConcurrency) : null;
+    }
+
+    /**
+     * Create the pool that counts tenants, shared by all pages and runs. Its threads end after being idle, so
+     * that the pool holds no threads between collection runs.
+     */
+    private static ThreadPoolExecutor createWorkers(int maxConcurrency) {
+
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+                UsageCollectorConstants.WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "IS-UsageCounter-Worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        workers.allowCoreThreadTimeOut(true);
+        return workers;
     }
 
     /**
@@ -69,7 +130,12 @@ public class UsageDataCollector {
      */
     public void collectAndPublish() {
 
-        SystemUsage report = this.collectSystemStatistics();
+        SystemUsage report = collectionIntervalMillis > 0 ? collectPartitionedStatistics() :
+                collectSystemStatistics();
+        if (report == null) {
+            // The counts of this member were sent to the coordinator
+            return;
+        }
         publishUsageMetrics(report);
         publish(report);
     }
@@ -82,53 +148,34 @@ public class UsageDataCollector {
         SystemUsage usage = new SystemUsage();
 
         try {
-            TenantManager tenantManager = realmService.getTenantManager();
-            Tenant[] tenants = tenantManager.getAllTenants();
-
-            // Calculate root tenant count (all tenants including super tenant)
-            int rootTenantCount = (tenants != null ? tenants.length : 0) + 1; // +1 for super tenant
-            usage.setRootTenantCount(rootTenantCount);
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Root Tenant Count: " + rootTenantCount);
-            }
-            // Prepare list of all tenants
-            List<String> allTenantDomains = new ArrayList<>();
-            allTenantDomains.add(SUPER_TENANT);
-
-            if (tenants != null) {
-                for (Tenant tenant : tenants) {
-                    allTenantDomains.add(tenant.getDomain());
-                }
-            }
+            Map<String, TenantUsage> checkpointed = beginCheckpointedRun();
+            refreshSqlCounts();
 
             // Calculate B2B organization count and total users
             int totalB2BOrgs = 0;
             int totalUsers = 0;
 
-            for (String tenantDomain : allTenantDomains) {
-                try {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Processing tenant: " + tenantDomain);
-                    }
-                    TenantUsage stats = processTenant(tenantDomain);
-
+            // Count the tenants a page at a time, starting with the super tenant
+            TenantPager pager = new TenantPager(realmService, UsageCollectorConstants.TENANT_PAGE_SIZE);
+            int rootTenantCount = 0;
+            for (List<String> page = Collections.singletonList(SUPER_TENANT); !page.isEmpty();
+                 page = pager.nextPage()) {
+                rootTenantCount += page.size();
+                for (TenantUsage stats : countTenants(page, checkpointed).values()) {
                     // Add to totals
                     totalB2BOrgs += stats.getB2bOrgCount();
                     totalUsers += stats.getUserCount();
-
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug(String.format("Processed: %s | B2B Orgs: %d | Users: %d",
-                                tenantDomain, stats.getB2bOrgCount(), stats.getUserCount()));
-                    }
-                } catch (Exception e) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Error processing tenant: " + tenantDomain, e);
-                        // Continue with next tenant
-                    }
                 }
             }
+
+            // Root tenant count (all tenants including super tenant)
+            usage.setRootTenantCount(rootTenantCount);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Root Tenant Count: " + rootTenantCount);
+            }
             usage.setTotalB2BOrganizations(totalB2BOrgs);
             usage.setTotalUsers(totalUsers);
+            completeCheckpointedRun();
         } catch (Exception e) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Error calculating system statistics", e);
@@ -138,6 +185,270 @@ public class UsageDataCollector {
         return usage;
     }
 
+    /**
+     * Collect the statistics of the tenants this member owns on the consistent hash ring of the cluster members.
+     * The coordinator starts every round and announces it with the members taking part. Other members count their
+     * share of the announced round and send their tenant usages to the coordinator, which merges them with its own,
+     * counts the tenants of members whose usages did not arrive in time, and returns the system-wide statistics.
+     *
+     * @return The system-wide statistics on the coordinator, null on other members
+     */
+    SystemUsage collectPartitionedStatistics() {
+
+        String localMemberId = ClusteringUtil.getLocalMemberId();
+        boolean coordinator = ClusteringUtil.isCoordinator();
+        if (localMemberId == null) {
+            // Without a known place on the ring this member counts everything, as in a single node setup
+            return ClusteringUtil.isClusteringEnabled() && !coordinator ? null : collectSystemStatistics();
+        }
+        if (!coordinator) {
+            countAnnouncedRound(localMemberId);
+            return null;
+        }
+
+        // Partition the round across the members that took part in the previous one
+        Set<String> memberIds = PartialTenantUsages.getInstance().getActiveMembers(previousRound);
+        memberIds.add(localMemberId);
+        CollectionRounds.Round round = CollectionRounds.getInstance().start(memberIds);
+        previousRound = round.getId();
+        ClusteringUtil.sendMessage(new CollectionRoundClusterMessage(round.getId(), round.getMemberIds()));
+
+        SystemUsage usage = new SystemUsage();
+        List<String> allTenantDomains;
+        try {
+            allTenantDomains = getAllTenantDomains();
+        } catch (Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Error listing tenants for partitioned collection", e);
+            }
+            return null;
+        }
+        // Calculate root tenant count (all tenants including super tenant)
+        usage.setRootTenantCount(allTenantDomains.size());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Root Tenant Count: " + allTenantDomains.size());
+        }
+
+        Map<String, TenantUsage> checkpointed = beginCheckpointedRun();
+        refreshSqlCounts();
+        TenantPartitioner partitioner =
+                new TenantPartitioner(round.getMemberIds(), UsageCollectorConstants.PARTITION_VIRTUAL_NODES);
+        List<String> remoteTenantDomains = new ArrayList<>();
+        Map<String, TenantUsage> merged;
+        try {
+            List<String> localTenantDomains = partitioner.select(allTenantDomains, localMemberId,
+                    remoteTenantDomains);
+            Map<String, TenantUsage> localUsages = countTenants(localTenantDomains, checkpointed);
+            // Wait for the other members at most half an interval, leaving time to count their share here
+            merged = PartialTenantUsages.getInstance().await(round.getId(), remoteTenantDomains,
+                    collectionIntervalMillis / 2);
+            merged.putAll(localUsages);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        int totalB2BOrgs = 0;
+        int totalUsers = 0;
+        List<String> missingTenantDomains = new ArrayList<>();
+        for (String tenantDomain : allTenantDomains) {
+            if (!merged.containsKey(tenantDomain)) {
+                missingTenantDomains.add(tenantDomain);
+            }
+        }
+        try {
+            merged.putAll(countTenants(missingTenantDomains, checkpointed));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        for (String tenantDomain : allTenantDomains) {
+            TenantUsage stats = merged.get(tenantDomain);
+            totalB2BOrgs += stats.getB2bOrgCount();
+            totalUsers += stats.getUserCount();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Merged usages of " + allTenantDomains.size() + " tenants across " + memberIds.size() +
+                    " members for round " + round.getId() + ", counted " + missingTenantDomains.size() +
+                    " missing tenants locally");
+        }
+        usage.setTotalB2BOrganizations(totalB2BOrgs);
+        usage.setTotalUsers(totalUsers);
+        completeCheckpointedRun();
+        return usage;
+    }
+
+    /**
+     * Count the share of this member in the round announced by the coordinator and send the usages to it. A member
+     * that is not taking part in the round yet sends an empty list, which lets the coordinator include it in the
+     * next round.
+     */
+    private void countAnnouncedRound(String localMemberId) {
+
+        CollectionRounds.Round round;
+        try {
+            // The announcement is sent when the coordinator starts the round at the same interval boundary
+            round = CollectionRounds.getInstance().await(previousRound, collectionIntervalMillis / 4);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (round == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("No collection round was announced by the coordinator");
+            }
+            return;
+        }
+        previousRound = round.getId();
+
+        Map<String, TenantUsage> checkpointed = beginCheckpointedRun();
+        List<TenantUsage> localUsages = new ArrayList<>();
+        if (round.getMemberIds().contains(localMemberId)) {
+            try {
+                List<String> localTenantDomains = new TenantPartitioner(round.getMemberIds(),
+                        UsageCollectorConstants.PARTITION_VIRTUAL_NODES).select(getAllTenantDomains(),
+                        localMemberId, new ArrayList<>());
+                refreshSqlCounts();
+                localUsages.addAll(countTenants(localTenantDomains, checkpointed).values());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Error listing tenants for partitioned collection", e);
+                }
+                return;
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Sending usages of " + localUsages.size() + " tenants to the coordinator for round " +
+                    round.getId());
+        }
+        ClusteringUtil.sendMessage(new TenantUsageClusterMessage(round.getId(), localMemberId, localUsages));
+        completeCheckpointedRun();
+    }
+
+    /**
+     * List the domains of all tenants, including the super tenant. Partitioned collection needs every domain to
+     * check which ones the other members counted, so the pages are collected into a single list of domains.
+     */
+    private List<String> getAllTenantDomains() throws Exception {
+
+        List<String> allTenantDomains = new ArrayList<>();
+        allTenantDomains.add(SUPER_TENANT);
+        TenantPager pager = new TenantPager(realmService, UsageCollectorConstants.TENANT_PAGE_SIZE);
+        for (List<String> page = pager.nextPage(); !page.isEmpty(); page = pager.nextPage()) {
+            allTenantDomains.addAll(page);
+        }
+        return allTenantDomains;
+    }
+
+    /**
+     * Count tenants on the pool of workers. The database calls of the workers are limited by the adaptive
+     * concurrency limiter of the counters, so the workers only run as many calls at a time as it allows.
+     *
+     * @return Usages of the tenants, in the order of the given domains
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    private Map<String, TenantUsage> countTenants(List<String> tenantDomains,
+                                                  Map<String, TenantUsage> checkpointed)
+            throws InterruptedException {
+
+        Map<String, TenantUsage> usages = new LinkedHashMap<>();
+        if (workers == null || tenantDomains.size() < 2) {
+            for (String tenantDomain : tenantDomains) {
+                usages.put(tenantDomain, countTenant(tenantDomain, checkpointed));
+            }
+            return usages;
+        }
+
+        Map<String, Future<TenantUsage>> futures = new LinkedHashMap<>();
+        try {
+            for (String tenantDomain : tenantDomains) {
+                futures.put(tenantDomain, workers.submit(() -> countTenant(tenantDomain, checkpointed)));
+            }
+            for (Map.Entry<String, Future<TenantUsage>> future : futures.entrySet()) {
+                try {
+                    usages.put(future.getKey(), future.getValue().get());
+                } catch (ExecutionException e) {
+                    usages.put(future.getKey(), new TenantUsage(future.getKey()));
+                }
+            }
+        } catch (InterruptedException e) {
+            // The pool outlives this run, so stop the tenants of the run that are still queued or being counted
+            for (Future<TenantUsage> future : futures.values()) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+        return usages;
+    }
+
+    /**
+     * Count a single tenant unless it was counted before an interruption. A tenant that fails is counted as empty
+     * and is not checkpointed, so it is counted again on resume.
+     */
+    private TenantUsage countTenant(String tenantDomain, Map<String, TenantUsage> checkpointed) {
+
+        TenantUsage stats = checkpointed.get(tenantDomain);
+        if (stats != null) {
+            return stats;
+        }
+        try {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Processing tenant: " + tenantDomain);
+            }
+            stats = processTenant(tenantDomain);
+            recordCheckpoint(stats);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Processed: %s | B2B Orgs: %d | Users: %d",
+                        tenantDomain, stats.getB2bOrgCount(), stats.getUserCount()));
+            }
+            return stats;
+        } catch (Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Error processing tenant: " + tenantDomain, e);
+            }
+            return new TenantUsage(tenantDomain);
+        }
+    }
+
+    private static TenantUsageCheckpoint createCheckpoint() {
+
+        File directory = new File(System.getProperty(UsageCollectorConstants.CHECKPOINT_DIR_PROPERTY,
+                UsageCollectorConstants.DEFAULT_CHECKPOINT_DIR));
+        long maxAgeSeconds = Long.getLong(UsageCollectorConstants.CHECKPOINT_MAX_AGE_PROPERTY,
+                UsageCollectorConstants.DEFAULT_CHECKPOINT_MAX_AGE_SECONDS);
+        return new TenantUsageCheckpoint(new File(directory, UsageCollectorConstants.CHECKPOINT_FILE),
+                TimeUnit.SECONDS.toMillis(maxAgeSeconds));
+    }
+
+    private Map<String, TenantUsage> beginCheckpointedRun() {
+
+        return checkpoint != null ? checkpoint.begin() : Collections.<String, TenantUsage>emptyMap();
+    }
+
+    private void recordCheckpoint(TenantUsage stats) {
+
+        if (checkpoint != null) {
+            checkpoint.record(stats);
+        }
+    }
+
+    private void refreshSqlCounts() {
+
+        if (sqlCounter != null) {
+            sqlCounter.refresh();
+        }
+    }
+
+    private void completeCheckpointedRun() {
+
+        if (checkpoint != null) {
+            checkpoint.complete();
+        }
+    }
+
     /**
      * Process a single tenant using the calculator classes
      */
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.identity.cluster;
+
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.ClusteringMessage;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Cluster message the coordinator sends at the start of a collection round, carrying the round id and the members
+ * the tenants are partitioned across.
+ */
+public class CollectionRoundClusterMessage extends ClusteringMessage {
+
+    private static final long serialVersionUID = 1L;
+    private static final Log LOG = LogFactory.getLog(CollectionRoundClusterMessage.class);
+
+    private final long round;
+    private final ArrayList<String> memberIds;
+
+    public CollectionRoundClusterMessage(long round, Collection<String> memberIds) {
+
+        this.round = round;
+        this.memberIds = new ArrayList<>(memberIds);
+    }
+
+    @Override
+    public void execute(ConfigurationContext configurationContext) throws ClusteringFault {
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Collection round " + round + " started across members " + memberIds);
+        }
+        CollectionRounds.getInstance().announce(round, memberIds);
+    }
+
+    @Override
+    public ClusteringCommand getResponse() {
+
+        return null;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.identity.cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The collection rounds started by the coordinator. The coordinator takes the id of every round from here and
+ * announces it to the other members together with the members taking part, so that all members count the same
+ * round over the same ring however late their own schedules run.
+ */
+public class CollectionRounds {
+
+    private static final CollectionRounds instance = new CollectionRounds();
+
+    private Round latestRound = new Round(0, Collections.<String>emptyList());
+
+    public static CollectionRounds getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Starts a round on the coordinator. Round ids increase across coordinators, as a member taking over as the
+     * coordinator continues after the last round it was told about.
+     *
+     * @param memberIds Ids of the members taking part in the round, including the coordinator
+     * @return The new round
+     */
+    public synchronized Round start(Collection<String> memberIds) {
+
+        latestRound = new Round(Math.max(latestRound.getId() + 1, System.currentTimeMillis()), memberIds);
+        return latestRound;
+    }
+
+    /**
+     * Records a round announced by the coordinator.
+     *
+     * @param roundId The round id
+     * @param memberIds Ids of the members taking part in the round
+     */
+    public synchronized void announce(long roundId, Collection<String> memberIds) {
+
+        if (roundId <= latestRound.getId()) {
+            return;
+        }
+        latestRound = new Round(roundId, memberIds);
+        notifyAll();
+    }
+
+    /**
+     * Waits until a round later than the given one has been announced, or the timeout has passed.
+     *
+     * @param previousRoundId Id of the last round this member took part in
+     * @param timeoutMillis Maximum time to wait
+     * @return The latest announced round, or null if no later round was announced in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized Round await(long previousRoundId, long timeoutMillis) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (latestRound.getId() <= previousRoundId) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                return null;
+            }
+            wait(remainingMillis);
+        }
+        return latestRound;
+    }
+
+    /**
+     * A collection round and the members taking part in it.
+     */
+    public static class Round {
+
+        private final long id;
+        private final List<String> memberIds;
+
+        Round(long id, Collection<String> memberIds) {
+
+            this.id = id;
+            this.memberIds = Collections.unmodifiableList(new ArrayList<>(memberIds));
+        }
+
+        public long getId() {
+
+            return id;
+        }
+
+        public List<String> getMemberIds() {
+
+            return memberIds;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.identity.cluster;
+
+import org.wso2.carbon.usage.data.collector.identity.model.TenantUsage;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tenant usages counted by other cluster members, kept per collection round until the coordinator merges them.
+ * Only the two latest rounds are kept, so partials of members that run late are still accepted, while partials of
+ * a round that has already been merged are dropped.
+ *
+ * <p>The members that report are remembered, so that the coordinator can partition the next round across the
+ * members that are known to be taking part.</p>
+ */
+public class PartialTenantUsages {
+
+    private static final PartialTenantUsages instance = new PartialTenantUsages();
+    private static final int KEPT_ROUNDS = 2;
+
+    private final TreeMap<Long, Map<String, TenantUsage>> rounds = new TreeMap<>();
+    private final Map<String, Long> memberRounds = new HashMap<>();
+    private long mergedRound;
+
+    public static PartialTenantUsages getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Adds the tenant usages counted by a member.
+     *
+     * @param round The collection round the usages were counted in
+     * @param memberId Id of the member that counted the usages
+     * @param usages The counted tenant usages
+     */
+    public synchronized void add(long round, String memberId, Collection<TenantUsage> usages) {
+
+        Long memberRound = memberRounds.get(memberId);
+        if (memberRound == null || memberRound < round) {
+            memberRounds.put(memberId, round);
+        }
+        if (round <= mergedRound) {
+            return;
+        }
+        Map<String, TenantUsage> roundUsages = rounds.computeIfAbsent(round, key -> new HashMap<>());
+        for (TenantUsage usage : usages) {
+            roundUsages.put(usage.getTenantDomain(), usage);
+        }
+        while (rounds.size() > KEPT_ROUNDS) {
+            rounds.pollFirstEntry();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns the members that reported for the given round or a later one, and forgets the members that did not.
+     *
+     * @param round The oldest round a member must have reported for
+     * @return Ids of the members taking part
+     */
+    public synchronized Set<String> getActiveMembers(long round) {
+
+        Set<String> memberIds = new TreeSet<>();
+        Iterator<Map.Entry<String, Long>> iterator = memberRounds.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> member = iterator.next();
+            if (member.getValue() < round) {
+                iterator.remove();
+            } else {
+                memberIds.add(member.getKey());
+            }
+        }
+        return memberIds;
+    }
+
+    /**
+     * Waits until usages of all the given tenants have been received for a round, or the timeout has passed.
+     * Partials of the round and of earlier rounds that arrive afterwards are dropped.
+     *
+     * @param round The collection round
+     * @param tenantDomains The tenants expected from other members
+     * @param timeoutMillis Maximum time to wait
+     * @return The usages received for the round, by tenant domain
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized Map<String, TenantUsage> await(long round, Collection<String> tenantDomains,
+                                                       long timeoutMillis) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!containsAll(round, tenantDomains)) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                break;
+            }
+            wait(remainingMillis);
+        }
+        Map<String, TenantUsage> roundUsages = rounds.remove(round);
+        rounds.headMap(round).clear();
+        mergedRound = Math.max(mergedRound, round);
+        return roundUsages != null ? roundUsages : new HashMap<>();
+    }
+    private boolean containsAll(long round, Collection<String> tenantDomains) {
+
+        Map<String, TenantUsage> roundUsages = rounds.get(round);
+        return roundUsages != null ? roundUsages.keySet().containsAll(tenantDomains) : tenantDomains.isEmpty();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.identity.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Consistent hash ring assigning every tenant to a single cluster member.
+ *
+ * <p>Every member is placed on the ring at a fixed number of virtual nodes, and a tenant belongs to the first
+ * member found clockwise from its own hash. Members computing the ring from the same member ids agree on the
+ * owner of every tenant, and a member joining or leaving only moves the tenants of its own share.</p>
+ */
+public class TenantPartitioner {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * @param memberIds Ids of the cluster members, including the local member
+     * @param virtualNodes Number of ring points of every member
+     */
+    public TenantPartitioner(Collection<String> memberIds, int virtualNodes) {
+
+        TreeSet<String> members = new TreeSet<>(memberIds);
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("At least one member is required");
+        }
+        int size = members.size() * virtualNodes;
+        long[] hashes = new long[size];
+        String[] hashOwners = new String[size];
+        int index = 0;
+        for (String member : members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                hashes[index] = hash(member + "#" + i);
+                hashOwners[index] = member;
+                index++;
+            }
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int compared = Long.compare(hashes[a], hashes[b]);
+            return compared != 0 ? compared : hashOwners[a].compareTo(hashOwners[b]);
+        });
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = hashOwners[order[i]];
+        }
+    }
+
+    /**
+     * @param tenantDomain The tenant domain
+     * @return Id of the member the tenant belongs to
+     */
+    public String getOwner(String tenantDomain) {
+
+        long hash = hash(tenantDomain);
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * Splits tenants into the ones a member owns and the ones owned by other members.
+     *
+     * @param tenantDomains The tenant domains to split
+     * @param memberId Id of the member
+     * @param otherTenantDomains List the tenants owned by other members are added to
+     * @return The tenants the member owns, in the given order
+     */
+    public List<String> select(Collection<String> tenantDomains, String memberId, List<String> otherTenantDomains) {
+
+        List<String> ownTenantDomains = new ArrayList<>();
+        for (String tenantDomain : tenantDomains) {
+            if (memberId.equals(getOwner(tenantDomain))) {
+                ownTenantDomains.add(tenantDomain);
+            } else {
+                otherTenantDomains.add(tenantDomain);
+            }
+        }
+        return ownTenantDomains;
+    }
+
+    private static long hash(String key) {
+
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        // Spread nearby keys such as consecutive virtual nodes across the ring
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
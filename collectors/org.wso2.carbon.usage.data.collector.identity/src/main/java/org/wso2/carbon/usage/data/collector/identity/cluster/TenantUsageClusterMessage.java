@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.identity.cluster;
+
+import org.apache.axis2.clustering.ClusteringCommand;
+import org.apache.axis2.clustering.ClusteringFault;
+import org.apache.axis2.clustering.ClusteringMessage;
+import org.apache.axis2.context.ConfigurationContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.usage.data.collector.identity.model.TenantUsage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cluster message carrying the tenant usages a member counted for its share of the tenants in a collection round.
+ */
+public class TenantUsageClusterMessage extends ClusteringMessage {
+
+    private static final long serialVersionUID = 1L;
+    private static final Log LOG = LogFactory.getLog(TenantUsageClusterMessage.class);
+
+    private final long round;
+    private final String memberId;
+    private final ArrayList<TenantUsage> usages;
+
+    public TenantUsageClusterMessage(long round, String memberId, List<TenantUsage> usages) {
+
+        this.round = round;
+        this.memberId = memberId;
+        this.usages = new ArrayList<>(usages);
+    }
+
+    @Override
+    public void execute(ConfigurationContext configurationContext) throws ClusteringFault {
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received usages of " + usages.size() + " tenants from member " + memberId +
+                    " for round " + round);
+        }
+        PartialTenantUsages.getInstance().add(round, memberId, usages);
+    }
+
+    @Override
+    public ClusteringCommand getResponse() {
+
+        return null;
+    }
+}
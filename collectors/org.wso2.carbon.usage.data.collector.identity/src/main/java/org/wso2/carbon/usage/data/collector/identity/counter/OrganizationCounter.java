@@ -21,6 +21,7 @@ package org.wso2.carbon.usage.data.collector.identity.counter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.identity.organization.management.service.OrganizationManager;
+import org.wso2.carbon.usage.data.collector.identity.util.AdaptiveConcurrencyLimiter;
 
 import java.util.List;
 
@@ -30,12 +31,21 @@ import java.util.List;
 public class OrganizationCounter {
 
     private static final Log LOG = LogFactory.getLog(OrganizationCounter.class);
+    private static final String CHILD_ORGANIZATIONS_CALL = "childOrganizations";
 
     private final OrganizationManager organizationManager;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final SqlUsageCounter sqlCounter;
 
-    public OrganizationCounter(OrganizationManager organizationManager) {
+    /**
+     * @param sqlCounter Grouped counts of all tenants, or null to count through the organization management API only
+     */
+    public OrganizationCounter(OrganizationManager organizationManager, AdaptiveConcurrencyLimiter limiter,
+                               SqlUsageCounter sqlCounter) {
 
         this.organizationManager = organizationManager;
+        this.limiter = limiter;
+        this.sqlCounter = sqlCounter;
     }
 
     /**
@@ -52,13 +62,20 @@ public class OrganizationCounter {
         }
 
         try {
+            // Resolving the organization is a cached lookup, so only the query for the children is limited
             String rootOrgId = organizationManager.resolveOrganizationId(tenantDomain);
 
             if (rootOrgId == null) {
                 return 0;
             }
 
-            List<String> childOrgIds = organizationManager.getChildOrganizationsIds(rootOrgId, true);
+            Integer descendantCount = sqlCounter != null ? sqlCounter.getDescendantOrganizationCount(rootOrgId) : null;
+            if (descendantCount != null) {
+                return descendantCount;
+            }
+
+            List<String> childOrgIds = limiter.call(CHILD_ORGANIZATIONS_CALL,
+                    () -> organizationManager.getChildOrganizationsIds(rootOrgId, true));
             return (childOrgIds != null) ? childOrgIds.size() : 0;
         } catch (Exception e) {
             if (LOG.isDebugEnabled()) {
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.identity.counter;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.user.api.RealmConfiguration;
+import org.wso2.carbon.user.core.jdbc.JDBCRealmConstants;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.user.core.util.DatabaseUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+/**
+ * Counts organizations and primary user store users of all tenants with grouped count queries.
+ *
+ * <p>Descendant organizations are counted per ancestor from {@code UM_ORG_HIERARCHY} in the identity database, and
+ * users of the primary JDBC user store are counted per tenant from {@code UM_USER} in the realm database. User counts
+ * are only used for a primary user store that keeps its users in the realm database. Counts that could not be
+ * loaded or do not apply are reported as unavailable, so that the counters fall back to the user store and
+ * organization management APIs.</p>
+ */
+public class SqlUsageCounter {
+
+    private static final Log LOG = LogFactory.getLog(SqlUsageCounter.class);
+    private static final String DESCENDANT_ORG_COUNT_QUERY =
+            "SELECT UM_PARENT_ID, COUNT(1) FROM UM_ORG_HIERARCHY WHERE DEPTH > 0 GROUP BY UM_PARENT_ID";
+    private static final String USER_COUNT_QUERY = "SELECT UM_TENANT_ID, COUNT(1) FROM UM_USER GROUP BY UM_TENANT_ID";
+
+    private final DataSource identityDataSource;
+    private final RealmService realmService;
+    private volatile Map<String, Integer> descendantOrgCounts;
+    private volatile Map<String, Integer> userCounts;
+    private volatile String realmDataSourceName;
+
+    public SqlUsageCounter(DataSource identityDataSource, RealmService realmService) {
+
+        this.identityDataSource = identityDataSource;
+        this.realmService = realmService;
+    }
+
+    /**
+     * Load the counts of all tenants for a collection run. Each count is a single grouped query, so it is not
+     * limited by the concurrency limit of the per tenant calls.
+     */
+    public void refresh() {
+
+        descendantOrgCounts = loadCounts(identityDataSource, DESCENDANT_ORG_COUNT_QUERY, "organization");
+        RealmConfiguration realmConfig = realmService.getBootstrapRealmConfiguration();
+        realmDataSourceName = realmConfig != null ? realmConfig.getRealmProperty(JDBCRealmConstants.DATASOURCE) : null;
+        userCounts = loadCounts(getRealmDataSource(realmConfig), USER_COUNT_QUERY, "user");
+    }
+
+    /**
+     * @param organizationId The organization id
+     * @return Number of descendant organizations of the organization, or null if the counts are not available
+     */
+    public Integer getDescendantOrganizationCount(String organizationId) {
+
+        Map<String, Integer> counts = descendantOrgCounts;
+        if (counts == null) {
+            return null;
+        }
+        Integer count = counts.get(organizationId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * @param tenantId           The tenant id
+     * @param primaryStoreConfig The configuration of the primary user store of the tenant
+     * @return Number of users of the tenant in the primary user store, or null if the counts are not available or
+     * the primary user store keeps its users in another database
+     */
+    public Integer getPrimaryUserCount(int tenantId, RealmConfiguration primaryStoreConfig) {
+
+        Map<String, Integer> counts = userCounts;
+        if (counts == null || !isInRealmDatabase(primaryStoreConfig)) {
+            return null;
+        }
+        Integer count = counts.get(String.valueOf(tenantId));
+        return count != null ? count : 0;
+    }
+
+    private Map<String, Integer> loadCounts(DataSource dataSource, String query, String description) {
+
+        if (dataSource == null) {
+            return null;
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                counts.put(resultSet.getString(1), resultSet.getInt(2));
+            }
+        } catch (SQLException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Error loading " + description + " counts, falling back to the APIs", e);
+            }
+            return null;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Loaded " + description + " counts of " + counts.size() + " entries");
+        }
+        return counts;
+    }
+
+    /**
+     * A JDBC user store without a datasource of its own uses the realm datasource. A store with its own datasource
+     * is only in the realm database when it names the same datasource as the realm.
+     */
+    private boolean isInRealmDatabase(RealmConfiguration primaryStoreConfig) {
+
+        if (primaryStoreConfig == null) {
+            return false;
+        }
+        String dataSourceName = primaryStoreConfig.getUserStoreProperty(JDBCRealmConstants.DATASOURCE);
+        if (StringUtils.isEmpty(dataSourceName)) {
+            return true;
+        }
+        boolean inRealmDatabase = dataSourceName.equals(realmDataSourceName);
+        if (!inRealmDatabase && LOG.isDebugEnabled()) {
+            LOG.debug("Primary user store uses datasource " + dataSourceName + " instead of the realm datasource, " +
+                    "counting its users through the user store");
+        }
+        return inRealmDatabase;
+    }
+
+    private DataSource getRealmDataSource(RealmConfiguration realmConfig) {
+
+        try {
+            return DatabaseUtil.getRealmDataSource(realmConfig);
+        } catch (Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Realm datasource is not available for counting users", e);
+            }
+            return null;
+        }
+    }
+}
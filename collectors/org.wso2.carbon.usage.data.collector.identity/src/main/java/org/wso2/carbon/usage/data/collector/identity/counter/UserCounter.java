@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.context.PrivilegedCarbonContext;
 import org.wso2.carbon.identity.organization.management.service.OrganizationManager;
+import org.wso2.carbon.usage.data.collector.identity.util.AdaptiveConcurrencyLimiter;
 import org.wso2.carbon.usage.data.collector.identity.util.UsageCollectorConstants;
 import org.wso2.carbon.user.core.UserStoreManager;
 import org.wso2.carbon.user.core.common.AbstractUserStoreManager;
@@ -43,6 +44,9 @@ import java.util.List;
 public class UserCounter {
 
     private static final Log LOG = LogFactory.getLog(UserCounter.class);
+    private static final String CHILD_ORGANIZATIONS_CALL = "childOrganizations";
+    private static final String COUNT_USERS_CALL = "countUsers";
+    private static final String LDAP_USERS_PAGE_CALL = "ldapUsersPage";
 
     // Configuration
     private static final int LDAP_PAGE_SIZE = 100;
@@ -53,11 +57,19 @@ public class UserCounter {
 
     private final RealmService realmService;
     private final OrganizationManager organizationManager;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final SqlUsageCounter sqlCounter;
 
-    public UserCounter(RealmService realmService, OrganizationManager organizationManager) {
+    /**
+     * @param sqlCounter Grouped counts of all tenants, or null to count through the user store API only
+     */
+    public UserCounter(RealmService realmService, OrganizationManager organizationManager,
+                       AdaptiveConcurrencyLimiter limiter, SqlUsageCounter sqlCounter) {
 
         this.realmService = realmService;
         this.organizationManager = organizationManager;
+        this.limiter = limiter;
+        this.sqlCounter = sqlCounter;
     }
 
     /**
@@ -68,6 +80,7 @@ public class UserCounter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Counting users in tenant: " + tenantDomain);
         }
+        // Resolving organizations and tenants are cached lookups, so only the queries and counts are limited
         String rootOrgId = organizationManager.resolveOrganizationId(tenantDomain);
         if (rootOrgId == null) {
             return 0;
@@ -77,7 +90,8 @@ public class UserCounter {
         List<String> allOrgIds = new ArrayList<>();
         allOrgIds.add(rootOrgId);
 
-        List<String> childOrgIds = organizationManager.getChildOrganizationsIds(rootOrgId, true);
+        List<String> childOrgIds = limiter.call(CHILD_ORGANIZATIONS_CALL,
+                () -> organizationManager.getChildOrganizationsIds(rootOrgId, true));
         if (childOrgIds != null) {
             allOrgIds.addAll(childOrgIds);
         }
@@ -120,7 +134,7 @@ public class UserCounter {
             UserStoreManager userStoreManager =
                     (UserStoreManager) realmService.getTenantUserRealm(tenantId).getUserStoreManager();
 
-            return getTotalUsersFromAllDomains(userStoreManager);
+            return getTotalUsersFromAllDomains(userStoreManager, tenantId);
 
         } finally {
             PrivilegedCarbonContext.endTenantFlow();
@@ -130,15 +144,22 @@ public class UserCounter {
     /**
      * Get total users from all user store domains
      */
-    private int getTotalUsersFromAllDomains(UserStoreManager userStoreManager) throws Exception {
+    private int getTotalUsersFromAllDomains(UserStoreManager userStoreManager, int tenantId) throws Exception {
 
         int totalUsers = 0;
         String[] domains = getDomainNames(userStoreManager);
 
-        for (String domain : domains) {
+        for (int i = 0; i < domains.length; i++) {
+            String domain = domains[i];
             try {
                 // Todo: Currently LDAP Users are skipped and need to enable this properly.
-                int count = isJDBCUserStore(userStoreManager, domain) ? countJDBCUsers(userStoreManager, domain) : 0;
+                int count = 0;
+                if (isJDBCUserStore(userStoreManager, domain)) {
+                    // Users of a primary user store in the realm database are counted for all tenants at once
+                    Integer primaryCount = i == 0 && sqlCounter != null ?
+                            sqlCounter.getPrimaryUserCount(tenantId, userStoreManager.getRealmConfiguration()) : null;
+                    count = primaryCount != null ? primaryCount : countJDBCUsers(userStoreManager, domain);
+                }
                 totalUsers += count;
             } catch (Exception e) {
                 if (LOG.isDebugEnabled()) {
@@ -159,7 +180,8 @@ public class UserCounter {
                 (AbstractUserStoreManager) userStoreManager.getSecondaryUserStoreManager(domain);
 
         if (abstractUSM instanceof JDBCUserStoreManager) {
-            return (int) abstractUSM.countUsersWithClaims(UsageCollectorConstants.USERNAME_CLAIM, "*");
+            return limiter.call(COUNT_USERS_CALL,
+                    () -> abstractUSM.countUsersWithClaims(UsageCollectorConstants.USERNAME_CLAIM, "*")).intValue();
         }
         return 0;
     }
@@ -188,14 +210,16 @@ public class UserCounter {
                         ExpressionAttribute.USERNAME.toString(), "");
 
                 // Get page count
-                int pageCount = ((AbstractUserStoreManager) userStoreManager).getUsersCount(
-                        condition,
-                        domain,
-                        UserCoreConstants.DEFAULT_PROFILE,
-                        LDAP_PAGE_SIZE,
-                        offset,
-                        false
-                );
+                int pageOffset = offset;
+                int pageCount = limiter.call(LDAP_USERS_PAGE_CALL,
+                        () -> ((AbstractUserStoreManager) userStoreManager).getUsersCount(
+                                condition,
+                                domain,
+                                UserCoreConstants.DEFAULT_PROFILE,
+                                LDAP_PAGE_SIZE,
+                                pageOffset,
+                                false
+                        ));
 
                 if (pageCount == 0 || pageCount < LDAP_PAGE_SIZE) {
                     totalCount += pageCount;
@@ -35,6 +35,7 @@ import org.wso2.carbon.usage.data.collector.identity.UsageDataCollector;
 import org.wso2.carbon.usage.data.collector.identity.UsageDataCollectorTask;
 import org.wso2.carbon.usage.data.collector.identity.publisher.PublisherImp;
 import org.wso2.carbon.usage.data.collector.identity.util.ClusteringUtil;
+import org.wso2.carbon.usage.data.collector.identity.util.UsageCollectorConstants;
 import org.wso2.carbon.user.core.service.RealmService;
 import org.wso2.carbon.utils.ConfigurationContextService;
 
@@ -73,14 +74,20 @@ public class UsageDataCollectorServiceComponent {
 
             this.bundleContext = context.getBundleContext();
 
-            collectorService = new UsageDataCollector();
-
             boolean isClusteringEnabled = ClusteringUtil.isClusteringEnabled();
-
-            if (isClusteringEnabled) {
+            boolean isPartitioned = isClusteringEnabled &&
+                    Boolean.getBoolean(UsageCollectorConstants.PARTITIONED_COLLECTION_PROPERTY);
+
+            if (isPartitioned) {
+                LOG.debug("Clustering detected. Usage data collection is partitioned across the cluster members.");
+                collectorService = new UsageDataCollector(TimeUnit.SECONDS.toMillis(INTERVAL_SECONDS));
+                runUsageCollectionTask(alignedInitialDelaySeconds());
+            } else if (isClusteringEnabled) {
+                collectorService = new UsageDataCollector();
                 LOG.debug("Clustering detected. Co-ordinator listener is enabled for usage data collectors.");
                 registerDataCollectionAsCoordinatorActivity();
             } else {
+                collectorService = new UsageDataCollector();
                 LOG.debug("Standalone setup detected. Usage data collectors starts immediately.");
                 runUsageCollectionTask();
             }
@@ -223,6 +230,23 @@ public class UsageDataCollectorServiceComponent {
 
     private void runUsageCollectionTask() {
 
+        runUsageCollectionTask(INITIAL_DELAY_SECONDS);
+    }
+
+    /**
+     * Delay until the first interval boundary after the initial delay, so that all cluster members start their
+     * collection rounds together.
+     */
+    private static long alignedInitialDelaySeconds() {
+
+        long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        long firstRun = nowSeconds + INITIAL_DELAY_SECONDS;
+        long remainder = firstRun % INTERVAL_SECONDS;
+        return remainder == 0 ? INITIAL_DELAY_SECONDS : INITIAL_DELAY_SECONDS + INTERVAL_SECONDS - remainder;
+    }
+
+    private void runUsageCollectionTask(long initialDelaySeconds) {
+
         scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread thread = new Thread(r, "IS-UsageDataCollector-Thread");
             thread.setDaemon(true);
@@ -231,7 +255,7 @@ public class UsageDataCollectorServiceComponent {
 
         scheduledTask = scheduler.scheduleAtFixedRate(
                 new UsageDataCollectorTask(collectorService),
-                INITIAL_DELAY_SECONDS,
+                initialDelaySeconds,
                 INTERVAL_SECONDS,
                 TimeUnit.SECONDS
         );
@@ -18,10 +18,14 @@
 
 package org.wso2.carbon.usage.data.collector.identity.model;
 
+import java.io.Serializable;
+
 /**
  * Model class for tenant-level statistics.
  */
-public class TenantUsage {
+public class TenantUsage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String tenantDomain;
     private int b2bOrgCount;
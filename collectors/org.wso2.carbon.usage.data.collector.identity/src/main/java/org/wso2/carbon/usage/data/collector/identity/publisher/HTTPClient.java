@@ -46,7 +46,7 @@ import static org.wso2.carbon.usage.data.collector.identity.util.UsageCollectorC
  */
 public class HTTPClient {
 
-    private static final int DEFAULT_TIMEOUT_MS = 5000;
+    private static final int DEFAULT_TIMEOUT_MS = 10000;
     private static final Log LOG = LogFactory.getLog(HTTPClient.class);
     private static final CloseableHttpClient httpClient;
 
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.identity.store;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.usage.data.collector.identity.model.TenantUsage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local checkpoint of the tenant usages counted by a collection run, so that a run interrupted by a restart
+ * resumes from the last counted tenant instead of counting every tenant again.
+ *
+ * <p>Every counted tenant is appended to the checkpoint file as a line of its count time, domain, B2B
+ * organization count and user count. The file only exists while a run is in progress: a completed run deletes
+ * it, so a file found at the start of a run was left by an interrupted one. Usages in it that are younger than
+ * the maximum age are reused, and the others are counted again.</p>
+ */
+public class TenantUsageCheckpoint {
+
+    private static final Log LOG = LogFactory.getLog(TenantUsageCheckpoint.class);
+    private static final String SEPARATOR = "\t";
+
+    private final File file;
+    private final long maxAgeMillis;
+    private Writer writer;
+
+    public TenantUsageCheckpoint(File file, long maxAgeMillis) {
+
+        this.file = file;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Start a run, resuming the run left in the checkpoint file if there is one.
+     *
+     * @return Usages of the interrupted run younger than the maximum age, by tenant domain
+     */
+    public synchronized Map<String, TenantUsage> begin() {
+
+        closeWriter();
+        Map<String, TenantUsage> resumed = read();
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Could not create the checkpoint directory " + directory);
+            }
+            return resumed;
+        }
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+            if (file.length() > 0) {
+                // Terminate a line cut short by the interruption, so it is not joined with the next one
+                writer.write("\n");
+            }
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Could not open the tenant usage checkpoint " + file, e);
+            }
+            closeWriter();
+        }
+        if (LOG.isDebugEnabled() && !resumed.isEmpty()) {
+            LOG.debug("Resuming an interrupted collection run with " + resumed.size() + " counted tenants");
+        }
+        return resumed;
+    }
+
+    /**
+     * Record the usage of a counted tenant. The line is flushed to the operating system, so it survives a restart
+     * of the server.
+     *
+     * @param usage The tenant usage
+     */
+    public synchronized void record(TenantUsage usage) {
+
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(System.currentTimeMillis() + SEPARATOR + usage.getTenantDomain() + SEPARATOR +
+                    usage.getB2bOrgCount() + SEPARATOR + usage.getUserCount() + "\n");
+            writer.flush();
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to checkpoint the usage of tenant " + usage.getTenantDomain(), e);
+            }
+            closeWriter();
+        }
+    }
+
+    /**
+     * Complete the run, so that the next run counts every tenant again.
+     */
+    public synchronized void complete() {
+
+        closeWriter();
+        if (file.exists() && !file.delete() && LOG.isDebugEnabled()) {
+            LOG.debug("Could not delete the tenant usage checkpoint " + file);
+        }
+    }
+
+    private Map<String, TenantUsage> read() {
+
+        Map<String, TenantUsage> usages = new HashMap<>();
+        if (!file.isFile()) {
+            return usages;
+        }
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(SEPARATOR);
+                if (fields.length != 4) {
+                    // A line cut short by the interruption
+                    continue;
+                }
+                try {
+                    if (Long.parseLong(fields[0]) >= oldest) {
+                        usages.put(fields[1], new TenantUsage(fields[1], Integer.parseInt(fields[2]),
+                                Integer.parseInt(fields[3])));
+                    }
+                } catch (NumberFormatException e) {
+                    // Skip a corrupt line, the tenant is counted again
+                }
+            }
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to read the tenant usage checkpoint " + file, e);
+            }
+        }
+        return usages;
+    }
+
+    private void closeWriter() {
+
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to close the tenant usage checkpoint " + file, e);
+            }
+        }
+        writer = null;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.identity.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Concurrency limiter for database calls that adapts to their latency, so that counting speeds up while the
+ * database is idle and backs off when it is busy serving other traffic.
+ *
+ * <p>Every kind of call keeps its own latency, since a cached lookup and a count query differ by orders of
+ * magnitude. For each kind, a smoothed average of the latency is compared with a baseline, the lowest average seen.
+ * While the averages of all kinds stay within the tolerated multiple of their baselines, the limit grows by one call
+ * per limit's worth of calls. Once one exceeds it, the limit is cut in proportion to the excess, by half at most.
+ * Only calls started after the last cut can cut the limit again, so a single slow period cuts it once. Calls started
+ * while no other call was in flight are not slowed down by the counting itself, so the baseline follows their
+ * latency even when it rises, which lets the limit grow again on a database that has become slower for good. A kind
+ * of call only takes part after a few calls, so that a cold cache does not set its baseline, and stops holding back
+ * the limit once it has not been called for a few of its latencies.</p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final int WARMUP_CALLS = 10;
+    private static final int SLOW_HOLD_LATENCIES = 10;
+
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final Map<String, LatencyAverages> latencies = new HashMap<>();
+    private double limit = 1;
+    private int inFlight;
+    private long lastDecreaseNanos = System.nanoTime();
+
+    /**
+     * @param maxLimit Maximum number of concurrent calls
+     * @param latencyTolerance Multiple of the baseline latency above which calls are considered slow
+     */
+    public AdaptiveConcurrencyLimiter(int maxLimit, double latencyTolerance) {
+
+        this.maxLimit = Math.max(1, maxLimit);
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Run a database call once the limit allows it, and adapt the limit to its latency. Calls that fail do not
+     * change the limit.
+     *
+     * @param operation The kind of call, whose latency is compared with the baseline of the same kind only
+     * @param call The database call
+     * @return The result of the call
+     * @throws Exception if the call fails, or InterruptedException if interrupted while waiting for the limit
+     */
+    public <T> T call(String operation, Callable<T> call) throws Exception {
+
+        boolean startedAlone = acquire() == 1;
+        long startNanos = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            T result = call.call();
+            succeeded = true;
+            return result;
+        } finally {
+            release(operation, startNanos, startedAlone, succeeded);
+        }
+    }
+
+    /**
+     * @return The current number of concurrent calls allowed
+     */
+    public synchronized int getLimit() {
+
+        return (int) limit;
+    }
+
+    private synchronized int acquire() throws InterruptedException {
+
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        return ++inFlight;
+    }
+
+    private synchronized void release(String operation, long startNanos, boolean startedAlone, boolean succeeded) {
+
+        inFlight--;
+        if (succeeded) {
+            long now = System.nanoTime();
+            adapt(operation, startNanos, now - startNanos, now, startedAlone);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Adapt the limit to the latency of a completed call.
+     *
+     * @param operation The kind of call
+     * @param startNanos Time the call started at
+     * @param latencyNanos Latency of the call
+     * @param now Time the call completed at
+     * @param startedAlone Whether no other call was in flight when the call started
+     */
+    synchronized void adapt(String operation, long startNanos, long latencyNanos, long now, boolean startedAlone) {
+
+        LatencyAverages averages = latencies.get(operation);
+        if (averages == null) {
+            averages = new LatencyAverages();
+            averages.slowUntilNanos = now;
+            latencies.put(operation, averages);
+        }
+        averages.add(latencyNanos, startedAlone);
+        if (averages.calls < WARMUP_CALLS) {
+            return;
+        }
+        double gradient = Math.max(MIN_GRADIENT,
+                Math.min(1, latencyTolerance * averages.baselineNanos / averages.averageNanos));
+        if (gradient >= 1) {
+            averages.slowUntilNanos = now;
+            if (!isAnySlow(now)) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            return;
+        }
+        averages.slowUntilNanos = now + (long) (SLOW_HOLD_LATENCIES * averages.averageNanos);
+        if (startNanos - lastDecreaseNanos > 0) {
+            lastDecreaseNanos = now;
+            limit = Math.max(1, limit * gradient);
+        }
+    }
+
+    private boolean isAnySlow(long now) {
+
+        for (LatencyAverages averages : latencies.values()) {
+            if (averages.slowUntilNanos - now > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Exponentially weighted average of the latency of one kind of call, and its baseline.
+     */
+    private static class LatencyAverages {
+
+        private double averageNanos;
+        private double baselineNanos;
+        private int calls;
+        private long slowUntilNanos;
+
+        /**
+         * @param latencyNanos Latency of a completed call
+         * @param unloaded Whether the call was not slowed down by other calls, so the baseline should follow it
+         */
+        void add(long latencyNanos, boolean unloaded) {
+
+            if (calls == 0) {
+                averageNanos = latencyNanos;
+                baselineNanos = latencyNanos;
+                calls++;
+                return;
+            }
+            averageNanos += SMOOTHING * (latencyNanos - averageNanos);
+            if (calls < WARMUP_CALLS) {
+                calls++;
+            }
+            if (calls < WARMUP_CALLS) {
+                baselineNanos = averageNanos;
+            } else if (unloaded) {
+                baselineNanos += SMOOTHING * (latencyNanos - baselineNanos);
+            }
+            baselineNanos = Math.min(baselineNanos, averageNanos);
+        }
+    }
+}
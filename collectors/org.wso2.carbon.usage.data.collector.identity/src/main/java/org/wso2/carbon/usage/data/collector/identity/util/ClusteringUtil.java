@@ -19,7 +19,9 @@
 package org.wso2.carbon.usage.data.collector.identity.util;
 
 import org.apache.axis2.clustering.ClusteringAgent;
+import org.apache.axis2.clustering.ClusteringMessage;
 import org.apache.axis2.context.ConfigurationContext;
+import org.apache.axis2.description.Parameter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.usage.data.collector.identity.internal.UsageDataCollectorDataHolder;
@@ -81,6 +83,58 @@ public final class ClusteringUtil {
         return isCoOrdinator;
     }
 
+    /**
+     * Get the id of the local member, built from the local member host and port of the clustering configuration.
+     * Every member announces this id itself when taking part in partitioned collection, so the ids on the ring all
+     * come from the configuration of their own member.
+     *
+     * @return The local member id, or null if clustering is disabled or the local member is not configured
+     */
+    public static String getLocalMemberId() {
+
+        ClusteringAgent agent = getClusteringAgent();
+        if (agent == null) {
+            return null;
+        }
+        Parameter host = agent.getParameter(UsageCollectorConstants.LOCAL_MEMBER_HOST_PARAM);
+        Parameter port = agent.getParameter(UsageCollectorConstants.LOCAL_MEMBER_PORT_PARAM);
+        if (host == null || host.getValue() == null || port == null || port.getValue() == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Local member host or port is not configured");
+            }
+            return null;
+        }
+        return toMemberId(String.valueOf(host.getValue()).trim(), String.valueOf(port.getValue()).trim());
+    }
+
+    /**
+     * Send a message to all cluster members
+     *
+     * @param message The message to send
+     * @return true if the message was sent, false otherwise
+     */
+    public static boolean sendMessage(ClusteringMessage message) {
+
+        ClusteringAgent agent = getClusteringAgent();
+        if (agent == null) {
+            return false;
+        }
+        try {
+            agent.sendMessage(message, false);
+            return true;
+        } catch (Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Error sending cluster message", e);
+            }
+            return false;
+        }
+    }
+
+    private static String toMemberId(String host, String port) {
+
+        return host + ":" + port;
+    }
+
     /**
      * Get the clustering agent from the configuration context
      *
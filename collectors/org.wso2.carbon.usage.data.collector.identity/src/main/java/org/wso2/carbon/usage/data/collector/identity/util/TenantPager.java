@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.identity.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.user.api.Tenant;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.user.core.util.DatabaseUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+/**
+ * Lists tenant domains a page at a time, so that tenants can be counted as soon as the first page is read and
+ * without holding every tenant in memory.
+ *
+ * <p>Pages are read from the {@code UM_TENANT} table of the realm database by keyset pagination on the tenant id,
+ * so every page is a single index range scan and tenants added while paging are listed once they are reached.
+ * If the realm datasource is not available, all tenants are read through the tenant manager and handed out in
+ * pages.</p>
+ */
+public class TenantPager {
+
+    private static final Log LOG = LogFactory.getLog(TenantPager.class);
+    private static final String TENANT_PAGE_QUERY =
+            "SELECT UM_ID, UM_DOMAIN_NAME FROM UM_TENANT WHERE UM_ID > ? ORDER BY UM_ID";
+
+    private final RealmService realmService;
+    private final int pageSize;
+    private DataSource dataSource;
+    private int lastTenantId;
+    private List<String> allTenantDomains;
+    private int nextIndex;
+    private boolean done;
+
+    public TenantPager(RealmService realmService, int pageSize) {
+
+        this.realmService = realmService;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Read the next page of tenant domains, excluding the super tenant.
+     *
+     * @return The next page, empty once all tenants have been listed
+     * @throws Exception if the tenants could not be read
+     */
+    public List<String> nextPage() throws Exception {
+
+        if (done) {
+            return Collections.emptyList();
+        }
+        if (allTenantDomains == null && dataSource == null) {
+            dataSource = getRealmDataSource();
+            if (dataSource == null) {
+                allTenantDomains = listAllTenantDomains();
+            }
+        }
+        List<String> page = dataSource != null ? readPage() : nextListedPage();
+        done = page.size() < pageSize;
+        return page;
+    }
+
+    private List<String> readPage() throws SQLException {
+
+        List<String> page = new ArrayList<>(pageSize);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(TENANT_PAGE_QUERY)) {
+            statement.setMaxRows(pageSize);
+            statement.setInt(1, lastTenantId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    lastTenantId = resultSet.getInt(1);
+                    page.add(resultSet.getString(2));
+                }
+            }
+        }
+        return page;
+    }
+
+    private List<String> nextListedPage() {
+
+        int end = Math.min(nextIndex + pageSize, allTenantDomains.size());
+        List<String> page = new ArrayList<>(allTenantDomains.subList(nextIndex, end));
+        nextIndex = end;
+        return page;
+    }
+
+    private List<String> listAllTenantDomains() throws Exception {
+
+        Tenant[] tenants = realmService.getTenantManager().getAllTenants();
+        List<String> domains = new ArrayList<>();
+        if (tenants != null) {
+            for (Tenant tenant : tenants) {
+                domains.add(tenant.getDomain());
+            }
+        }
+        return domains;
+    }
+
+    private DataSource getRealmDataSource() {
+
+        try {
+            return DatabaseUtil.getRealmDataSource(realmService.getBootstrapRealmConfiguration());
+        } catch (Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Realm datasource is not available, listing tenants through the tenant manager", e);
+            }
+            return null;
+        }
+    }
+}
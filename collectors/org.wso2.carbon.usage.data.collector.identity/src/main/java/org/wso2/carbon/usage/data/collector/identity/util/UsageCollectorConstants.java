@@ -29,4 +29,33 @@ public class UsageCollectorConstants {
     // Todo: Need to read this value from the license file.
     public static final String PRODUCT = "wso2is-7.2.0";
 
+    // Tenants are partitioned across cluster members by consistent hashing, and the coordinator merges the counts.
+    public static final String PARTITIONED_COLLECTION_PROPERTY = "usage.data.collector.identity.partitioned";
+    public static final int PARTITION_VIRTUAL_NODES = 128;
+    public static final String LOCAL_MEMBER_HOST_PARAM = "localMemberHost";
+    public static final String LOCAL_MEMBER_PORT_PARAM = "localMemberPort";
+
+    // Tenant usages of a run in progress are checkpointed, so that a run interrupted by a restart resumes from the
+    // last counted tenant. Checkpointed usages older than the maximum age are counted again.
+    public static final String CHECKPOINT_ENABLED_PROPERTY = "usage.data.collector.identity.checkpoint.enabled";
+    public static final String CHECKPOINT_DIR_PROPERTY = "usage.data.collector.identity.checkpoint.dir";
+    public static final String DEFAULT_CHECKPOINT_DIR = "./repository/data/usage-data-collector";
+    public static final String CHECKPOINT_FILE = "tenant-usage.checkpoint";
+    public static final String CHECKPOINT_MAX_AGE_PROPERTY = "usage.data.collector.identity.checkpoint.maxAgeSeconds";
+    public static final long DEFAULT_CHECKPOINT_MAX_AGE_SECONDS = 3600;
+
+    // Tenants are counted by a pool of workers, and their database calls are limited by an adaptive concurrency
+    // limit that backs off when calls of a kind take longer than the tolerated multiple of their baseline latency.
+    public static final String MAX_CONCURRENCY_PROPERTY = "usage.data.collector.identity.maxConcurrency";
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+    public static final long WORKER_KEEP_ALIVE_SECONDS = 60;
+    public static final double LATENCY_TOLERANCE = 2.0;
+
+    // Tenants are listed and counted a page at a time
+    public static final int TENANT_PAGE_SIZE = 1000;
+
+    // Organizations and primary user store users are counted for all tenants with grouped count queries, falling
+    // back to the user store and organization management APIs when the queries fail.
+    public static final String SQL_COUNT_DISABLED_PROPERTY = "usage.data.collector.identity.sqlCount.disabled";
+
 }
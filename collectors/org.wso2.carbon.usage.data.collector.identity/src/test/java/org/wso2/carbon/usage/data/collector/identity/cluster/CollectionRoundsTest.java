@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.identity.cluster;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Checks that members take part in the rounds the coordinator announces, whenever their own schedules run.
+ */
+public class CollectionRoundsTest {
+
+    @Test
+    public void testMemberTakesPartInAnnouncedRound() throws InterruptedException {
+
+        CollectionRounds rounds = new CollectionRounds();
+        rounds.announce(100, Arrays.asList("10.0.0.1:4000", "10.0.0.2:4000"));
+
+        CollectionRounds.Round round = rounds.await(0, 0);
+        Assert.assertNotNull(round);
+        Assert.assertEquals(round.getId(), 100);
+        Assert.assertEquals(round.getMemberIds(), Arrays.asList("10.0.0.1:4000", "10.0.0.2:4000"));
+        // The same round is not counted twice
+        Assert.assertNull(rounds.await(100, 0));
+    }
+
+    @Test
+    public void testMemberRunningLateTakesPartInLatestRound() throws InterruptedException {
+
+        CollectionRounds rounds = new CollectionRounds();
+        rounds.announce(100, Collections.singletonList("10.0.0.1:4000"));
+        rounds.announce(200, Collections.singletonList("10.0.0.1:4000"));
+        rounds.announce(150, Collections.singletonList("10.0.0.1:4000"));
+
+        Assert.assertEquals(rounds.await(0, 0).getId(), 200);
+    }
+
+    @Test
+    public void testWaitsForAnnouncement() throws InterruptedException {
+
+        CollectionRounds rounds = new CollectionRounds();
+        Thread coordinator = new Thread(() -> rounds.announce(100, Collections.singletonList("10.0.0.1:4000")));
+        coordinator.start();
+
+        CollectionRounds.Round round = rounds.await(0, 10000);
+        coordinator.join();
+        Assert.assertNotNull(round);
+        Assert.assertEquals(round.getId(), 100);
+    }
+
+    @Test
+    public void testNewCoordinatorContinuesAfterAnnouncedRounds() {
+
+        CollectionRounds rounds = new CollectionRounds();
+        long announced = System.currentTimeMillis() + 60000;
+        rounds.announce(announced, Collections.singletonList("10.0.0.1:4000"));
+
+        CollectionRounds.Round round = rounds.start(Collections.singletonList("10.0.0.2:4000"));
+        Assert.assertTrue(round.getId() > announced);
+        Assert.assertTrue(rounds.start(Collections.singletonList("10.0.0.2:4000")).getId() > round.getId());
+    }
+}
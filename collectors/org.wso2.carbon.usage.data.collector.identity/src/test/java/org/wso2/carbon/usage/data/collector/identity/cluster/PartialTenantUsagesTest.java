@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.identity.cluster;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.usage.data.collector.identity.model.TenantUsage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Checks how the coordinator merges the tenant usages other members send for a round.
+ */
+public class PartialTenantUsagesTest {
+
+    private static final String FIRST_MEMBER = "10.0.0.2:4000";
+    private static final String SECOND_MEMBER = "10.0.0.3:4000";
+
+    @Test
+    public void testMergesUsagesOfAllMembers() throws InterruptedException {
+
+        PartialTenantUsages partials = new PartialTenantUsages();
+        partials.add(100, FIRST_MEMBER, Arrays.asList(new TenantUsage("a.com", 1, 10),
+                new TenantUsage("b.com", 2, 20)));
+        partials.add(100, SECOND_MEMBER, Collections.singletonList(new TenantUsage("c.com", 3, 30)));
+
+        Map<String, TenantUsage> merged = partials.await(100, Arrays.asList("a.com", "b.com", "c.com"), 0);
+        Assert.assertEquals(merged.keySet(), new HashSet<>(Arrays.asList("a.com", "b.com", "c.com")));
+        Assert.assertEquals(merged.get("c.com").getUserCount(), 30);
+    }
+
+    @Test
+    public void testReturnsUsagesThatArrivedBeforeTimeout() throws InterruptedException {
+
+        PartialTenantUsages partials = new PartialTenantUsages();
+        partials.add(100, FIRST_MEMBER, Collections.singletonList(new TenantUsage("a.com", 1, 10)));
+
+        Map<String, TenantUsage> merged = partials.await(100, Arrays.asList("a.com", "b.com"), 50);
+        Assert.assertEquals(merged.keySet(), Collections.singleton("a.com"));
+    }
+
+    @Test
+    public void testWakesUpWhenLastUsagesArrive() throws InterruptedException {
+
+        PartialTenantUsages partials = new PartialTenantUsages();
+        Thread member = new Thread(() -> partials.add(100, FIRST_MEMBER,
+                Collections.singletonList(new TenantUsage("a.com", 1, 10))));
+        member.start();
+
+        Map<String, TenantUsage> merged = partials.await(100, Collections.singletonList("a.com"), 10000);
+        member.join();
+        Assert.assertEquals(merged.keySet(), Collections.singleton("a.com"));
+    }
+
+    @Test
+    public void testKeepsRoundsApart() throws InterruptedException {
+
+        PartialTenantUsages partials = new PartialTenantUsages();
+        partials.add(100, FIRST_MEMBER, Collections.singletonList(new TenantUsage("a.com", 1, 10)));
+        partials.add(200, FIRST_MEMBER, Collections.singletonList(new TenantUsage("a.com", 1, 11)));
+
+        Assert.assertEquals(partials.await(200, Collections.singletonList("a.com"), 0).get("a.com")
+                .getUserCount(), 11);
+    }
+
+    @Test
+    public void testDropsUsagesOfMergedRounds() throws InterruptedException {
+
+        PartialTenantUsages partials = new PartialTenantUsages();
+        partials.await(100, Collections.<String>emptyList(), 0);
+        // A member that runs late reports for the round after the coordinator merged it
+        partials.add(100, FIRST_MEMBER, Collections.singletonList(new TenantUsage("a.com", 1, 10)));
+
+        Assert.assertTrue(partials.await(100, Collections.singletonList("a.com"), 0).isEmpty());
+    }
+
+    @Test
+    public void testForgetsMembersThatStopReporting() {
+
+        PartialTenantUsages partials = new PartialTenantUsages();
+        partials.add(100, FIRST_MEMBER, Collections.<TenantUsage>emptyList());
+        partials.add(100, SECOND_MEMBER, Collections.<TenantUsage>emptyList());
+        partials.add(200, SECOND_MEMBER, Collections.<TenantUsage>emptyList());
+
+        Assert.assertEquals(partials.getActiveMembers(100),
+                new HashSet<>(Arrays.asList(FIRST_MEMBER, SECOND_MEMBER)));
+        Assert.assertEquals(partials.getActiveMembers(200), Collections.singleton(SECOND_MEMBER));
+        Assert.assertEquals(partials.getActiveMembers(100), Collections.singleton(SECOND_MEMBER));
+    }
+}
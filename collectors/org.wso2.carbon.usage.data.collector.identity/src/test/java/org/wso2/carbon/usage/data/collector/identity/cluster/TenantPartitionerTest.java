@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.identity.cluster;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that members computing the ring from the same ids agree on the owners and share the tenants evenly.
+ */
+public class TenantPartitionerTest {
+
+    private static final int VIRTUAL_NODES = 128;
+    private static final int TENANTS = 3000;
+
+    @Test
+    public void testMembersAgreeOnOwnersWhateverTheOrderOfTheirIds() {
+
+        TenantPartitioner first = new TenantPartitioner(Arrays.asList("10.0.0.1:4000", "10.0.0.2:4000",
+                "10.0.0.3:4000"), VIRTUAL_NODES);
+        TenantPartitioner second = new TenantPartitioner(Arrays.asList("10.0.0.3:4000", "10.0.0.1:4000",
+                "10.0.0.2:4000"), VIRTUAL_NODES);
+        for (String tenantDomain : tenantDomains()) {
+            Assert.assertEquals(second.getOwner(tenantDomain), first.getOwner(tenantDomain), tenantDomain);
+        }
+    }
+
+    @Test
+    public void testTenantsAreSpreadAcrossMembers() {
+
+        List<String> members = Arrays.asList("10.0.0.1:4000", "10.0.0.2:4000", "10.0.0.3:4000");
+        TenantPartitioner partitioner = new TenantPartitioner(members, VIRTUAL_NODES);
+        Map<String, Integer> shares = new HashMap<>();
+        for (String tenantDomain : tenantDomains()) {
+            shares.merge(partitioner.getOwner(tenantDomain), 1, Integer::sum);
+        }
+        Assert.assertEquals(shares.keySet(), new HashSet<>(members));
+        for (int share : shares.values()) {
+            Assert.assertTrue(share > TENANTS / 5 && share < TENANTS / 2, "Share of " + share + " tenants");
+        }
+    }
+
+    @Test
+    public void testJoiningMemberOnlyTakesTenantsOverFromOthers() {
+
+        TenantPartitioner before = new TenantPartitioner(Arrays.asList("10.0.0.1:4000", "10.0.0.2:4000"),
+                VIRTUAL_NODES);
+        TenantPartitioner after = new TenantPartitioner(Arrays.asList("10.0.0.1:4000", "10.0.0.2:4000",
+                "10.0.0.3:4000"), VIRTUAL_NODES);
+        int moved = 0;
+        for (String tenantDomain : tenantDomains()) {
+            String owner = after.getOwner(tenantDomain);
+            if (!owner.equals(before.getOwner(tenantDomain))) {
+                Assert.assertEquals(owner, "10.0.0.3:4000", tenantDomain);
+                moved++;
+            }
+        }
+        Assert.assertTrue(moved > TENANTS / 5 && moved < TENANTS / 2, "Moved " + moved + " tenants");
+    }
+
+    @Test
+    public void testSelectSplitsTenantsBetweenMembers() {
+
+        List<String> members = Arrays.asList("10.0.0.1:4000", "10.0.0.2:4000");
+        TenantPartitioner partitioner = new TenantPartitioner(members, VIRTUAL_NODES);
+        List<String> firstOthers = new ArrayList<>();
+        List<String> first = partitioner.select(tenantDomains(), members.get(0), firstOthers);
+        List<String> secondOthers = new ArrayList<>();
+        List<String> second = partitioner.select(tenantDomains(), members.get(1), secondOthers);
+
+        Assert.assertEquals(first.size() + second.size(), TENANTS);
+        Assert.assertEquals(firstOthers, second);
+        Assert.assertEquals(secondOthers, first);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRingNeedsAMember() {
+
+        new TenantPartitioner(new ArrayList<String>(), VIRTUAL_NODES);
+    }
+
+    private static List<String> tenantDomains() {
+
+        List<String> tenantDomains = new ArrayList<>();
+        tenantDomains.add("carbon.super");
+        for (int i = 1; i < TENANTS; i++) {
+            tenantDomains.add("tenant" + i + ".example.com");
+        }
+        return tenantDomains;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.identity.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the limiter with a simulated database whose latency grows once more calls run at a time than it has
+ * capacity for. Time is simulated, so the results do not depend on the speed of the machine.
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final int MAX_LIMIT = 16;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final long CACHE_HIT_NANOS = TimeUnit.MICROSECONDS.toNanos(5);
+    private static final long QUERY_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    @Test
+    public void testLimitGrowsToMaximumOnIdleDatabase() {
+
+        SimulatedDatabase database = new SimulatedDatabase(64);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(MAX_LIMIT, LATENCY_TOLERANCE);
+        database.run(limiter, 2000, false);
+        Assert.assertEquals(limiter.getLimit(), MAX_LIMIT);
+    }
+
+    @Test
+    public void testCacheHitsDoNotMakeQueriesLookSlow() {
+
+        // With a single baseline, microsecond cache hits made every query look slow and held the limit at 1
+        SimulatedDatabase database = new SimulatedDatabase(64);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(MAX_LIMIT, LATENCY_TOLERANCE);
+        database.run(limiter, 2000, true);
+        Assert.assertEquals(limiter.getLimit(), MAX_LIMIT);
+    }
+
+    @Test
+    public void testLimitStaysNearCapacityOfBusyDatabase() {
+
+        SimulatedDatabase database = new SimulatedDatabase(2);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(MAX_LIMIT, LATENCY_TOLERANCE);
+        database.run(limiter, 5000, true);
+        Assert.assertTrue(limiter.getLimit() <= 2 * LATENCY_TOLERANCE + 1,
+                "Limit " + limiter.getLimit() + " is far above the capacity of the database");
+    }
+
+    @Test
+    public void testLimitBacksOffWhenDatabaseSlowsDown() {
+
+        SimulatedDatabase database = new SimulatedDatabase(64);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(MAX_LIMIT, LATENCY_TOLERANCE);
+        database.run(limiter, 2000, true);
+        Assert.assertEquals(limiter.getLimit(), MAX_LIMIT);
+
+        // Other traffic takes most of the capacity of the database
+        database.capacity = 2;
+        database.run(limiter, 200, true);
+        Assert.assertTrue(limiter.getLimit() < MAX_LIMIT / 2,
+                "Limit " + limiter.getLimit() + " did not back off");
+    }
+
+    @Test
+    public void testLimitRecoversWhenDatabaseIsSlowerForGood() {
+
+        SimulatedDatabase database = new SimulatedDatabase(64);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(MAX_LIMIT, LATENCY_TOLERANCE);
+        database.run(limiter, 2000, true);
+
+        // Every query takes longer, however few run at a time
+        database.latencyFactor = 10;
+        database.run(limiter, 2000, true);
+        Assert.assertEquals(limiter.getLimit(), MAX_LIMIT);
+    }
+
+    /**
+     * Database that serves up to its capacity of queries at their base latency, and slows all queries down in
+     * proportion beyond that.
+     */
+    private static class SimulatedDatabase {
+
+        private int capacity;
+        private double latencyFactor = 1;
+        private long now = System.nanoTime();
+
+        SimulatedDatabase(int capacity) {
+
+            this.capacity = capacity;
+        }
+
+        /**
+         * Run rounds of as many concurrent calls as the limit allows, each call being a query, optionally
+         * preceded by a cache hit.
+         */
+        void run(AdaptiveConcurrencyLimiter limiter, int rounds, boolean withCacheHits) {
+
+            for (int round = 0; round < rounds; round++) {
+                int concurrency = limiter.getLimit();
+                double slowdown = latencyFactor * Math.max(1, (double) concurrency / capacity);
+                long start = now;
+                long queryLatency = (long) (QUERY_NANOS * slowdown);
+                for (int call = 0; call < concurrency; call++) {
+                    if (withCacheHits) {
+                        limiter.adapt("cacheHit", start, CACHE_HIT_NANOS, start + CACHE_HIT_NANOS, concurrency == 1);
+                    }
+                    limiter.adapt("query", start, queryLatency, start + queryLatency, concurrency == 1);
+                }
+                now = start + queryLatency + 1;
+            }
+        }
+    }
+}
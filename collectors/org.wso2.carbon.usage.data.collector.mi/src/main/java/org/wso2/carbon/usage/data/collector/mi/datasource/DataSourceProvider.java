@@ -23,23 +23,38 @@ import org.apache.commons.logging.LogFactory;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+import org.osgi.util.tracker.ServiceTrackerCustomizer;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
 import java.sql.SQLException;
 
 import javax.sql.DataSource;
 
 /**
- * DataSource provider that retrieves DataSource via OSGi service lookup.
+ * DataSource provider that tracks the MI DataSourceService through an OSGi ServiceTracker.
+ *
+ * <p>Callers never wait for the datasource: {@link #getDataSource()} fails immediately while it is not available
+ * yet. The methods of the DataSourceService and of the
+ * CarbonDataSource it returns are resolved once, when the service appears, instead of on every lookup.</p>
  */
 public class DataSourceProvider {
 
     private static final Log log = LogFactory.getLog(DataSourceProvider.class);
-    private DataSource dataSource;
+    private static final String DATA_SOURCE_SERVICE = "org.wso2.micro.integrator.ndatasource.core.DataSourceService";
+    private static final MethodType GET_DATA_SOURCE_TYPE = MethodType.methodType(Object.class, Object.class,
+            String.class);
+    private static final MethodType GET_DS_OBJECT_TYPE = MethodType.methodType(Object.class, Object.class);
+
     private static volatile DataSourceProvider instance;
+    private volatile DataSource dataSource;
+    private volatile TrackedService trackedService;
+    private ServiceTracker<Object, Object> serviceTracker;
     private String dataSourceName;
-    private boolean initialized = false;
-    private static final int MAX_RETRIES = 3;
-    private static final long RETRY_DELAY_MS = 60*1000; // 1 minute delay
+    private volatile boolean initialized = false;
 
     private DataSourceProvider() {}
 
@@ -54,181 +69,236 @@ public class DataSourceProvider {
         return instance;
     }
 
-    public void initialize(String dataSourceName) throws SQLException {
+    /**
+     * Starts tracking the DataSourceService. The datasource becomes available as soon as the service is
+     * registered and the datasource is deployed in it. The provider stays uninitialized while the bundle is not
+     * active, so that a later call starts tracking once it is.
+     *
+     * @param dataSourceName The name of the datasource, as configured in deployment.toml
+     * @throws SQLException if the bundle has no BundleContext yet
+     */
+    public synchronized void initialize(String dataSourceName) throws SQLException {
+        if (initialized) {
+            return;
+        }
+        org.osgi.framework.Bundle bundle = FrameworkUtil.getBundle(this.getClass());
+        BundleContext bundleContext = bundle != null ? bundle.getBundleContext() : null;
+        if (bundleContext == null) {
+            throw new SQLException("BundleContext is null - OSGi environment not ready or class not loaded as " +
+                    "OSGi bundle");
+        }
         this.dataSourceName = dataSourceName;
+        serviceTracker = new ServiceTracker<>(bundleContext, DATA_SOURCE_SERVICE,
+                new DataSourceServiceCustomizer(bundleContext));
+        serviceTracker.open();
         this.initialized = true;
-
-        if (dataSource == null) {
-            dataSource = lookupDataSource();
-            if (dataSource == null) {
-                if(log.isDebugEnabled()) {
-                    log.debug("DataSource '" + dataSourceName + "' not available yet. Will retry on next access.");
-                }
-            } else {
-                if(log.isDebugEnabled()) {
-                    log.debug("DataSource '" + dataSourceName + "' initialized successfully");
-                }
-            }
-        }
     }
 
+    /**
+     * Returns the datasource without waiting for it.
+     *
+     * @return The datasource
+     * @throws SQLException if the datasource is not available yet
+     */
     public DataSource getDataSource() throws SQLException {
         if (!initialized) {
             throw new SQLException("DataSource is not initialized. Call initialize() first.");
         }
+        DataSource current = dataSource;
+        if (current == null) {
+            // The service may have been registered before the datasource was deployed in it
+            current = resolve(trackedService);
+        }
+        if (current == null) {
+            throw new SQLException("DataSource '" + dataSourceName + "' is not available yet. " +
+                    "Please ensure the DataSource is properly configured in deployment.toml");
+        }
+        return current;
+    }
 
-        // Lazy loading: try to get DataSource if not already loaded
-        if (dataSource == null) {
-            int attempt = 0;
-            DataSource ds = null;
-            while (attempt < MAX_RETRIES) {
-                ds = lookupDataSource();
-                if (ds != null) {
-                    synchronized (this) {
-                        if (dataSource == null) {
-                            dataSource = ds;
-                            if(log.isDebugEnabled()) {
-                                log.debug("DataSource '" + dataSourceName + "' successfully loaded on attempt " + (attempt + 1));
-                            }
-                        }
-                    }
-                    // If dataSource was set by this thread, break; otherwise, continue retrying
-                    if (dataSource != null) {
-                        break;
-                    }
-                }
-                attempt++;
-                if (attempt < MAX_RETRIES) {
-                    try {
-                        Thread.sleep(RETRY_DELAY_MS);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        break;
+    /**
+     * Resolves the datasource from the tracked service and keeps it for later lookups.
+     */
+    private DataSource resolve(TrackedService service) {
+        if (service == null || dataSourceName == null) {
+            return null;
+        }
+        DataSource resolved = service.lookup(dataSourceName);
+        if (resolved != null) {
+            synchronized (this) {
+                if (dataSource == null && trackedService == service) {
+                    dataSource = resolved;
+                    if (log.isDebugEnabled()) {
+                        log.debug("DataSource '" + dataSourceName + "' successfully retrieved via OSGi");
                     }
                 }
             }
+        }
+        return resolved;
+    }
 
-            if (dataSource == null) {
-                throw new SQLException("DataSource '" + dataSourceName + "' not found after " + MAX_RETRIES + " attempts. " +
-                        "Please ensure the DataSource is properly configured in deployment.toml");
-            }
+    /**
+     * Check if DataSource provider has been initialized
+     */
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Check if DataSource is currently available
+     */
+    public boolean isAvailable() {
+        return dataSource != null;
+    }
+
+    /**
+     * Force a refresh of the DataSource (useful for testing or recovery)
+     */
+    public synchronized void refresh() {
+        if (log.isDebugEnabled()) {
+            log.debug("Forcing DataSource refresh for '" + dataSourceName + "'");
         }
-        return dataSource;
+        dataSource = null;
+        resolve(trackedService);
+    }
+
+    public synchronized void close() {
+        if (serviceTracker != null) {
+            serviceTracker.close();
+            serviceTracker = null;
+        }
+        trackedService = null;
+        dataSource = null;
+        initialized = false;
     }
 
-    private DataSource lookupDataSource() {
+    /**
+     * Publishes the DataSourceService when it is registered and withdraws the datasource when it goes away.
+     */
+    private final class DataSourceServiceCustomizer implements ServiceTrackerCustomizer<Object, Object> {
 
-        try {
-            org.osgi.framework.Bundle bundle = FrameworkUtil.getBundle(this.getClass());
-            if (bundle == null) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Bundle is null - OSGi environment not ready or class not loaded as OSGi bundle");
-                }
+        private final BundleContext bundleContext;
+
+        private DataSourceServiceCustomizer(BundleContext bundleContext) {
+            this.bundleContext = bundleContext;
+        }
+
+        @Override
+        public Object addingService(ServiceReference<Object> reference) {
+            Object service = bundleContext.getService(reference);
+            if (service == null) {
                 return null;
             }
-            BundleContext bundleContext = bundle.getBundleContext();
-            if (bundleContext == null) {
-                if (log.isDebugEnabled()) {
-                    log.debug("BundleContext is null - OSGi environment not ready");
-                }
+            TrackedService tracked = TrackedService.of(service);
+            if (tracked == null) {
+                bundleContext.ungetService(reference);
                 return null;
             }
+            synchronized (DataSourceProvider.this) {
+                trackedService = tracked;
+            }
+            resolve(tracked);
+            return service;
+        }
 
-            ServiceReference<?> serviceRef = bundleContext.getServiceReference(
-                    "org.wso2.micro.integrator.ndatasource.core.DataSourceService");
+        @Override
+        public void modifiedService(ServiceReference<Object> reference, Object service) {
+            // Nothing to do, the datasource is looked up by name
+        }
 
-            if (serviceRef == null) {
-                if (log.isDebugEnabled()) {
-                    log.debug("DataSourceService reference not found - service may not be registered yet");
+        @Override
+        public void removedService(ServiceReference<Object> reference, Object service) {
+            synchronized (DataSourceProvider.this) {
+                if (trackedService != null && trackedService.service == service) {
+                    trackedService = null;
+                    dataSource = null;
                 }
-                return null;
             }
+            bundleContext.ungetService(reference);
+        }
+    }
 
-            Object dataSourceService = bundleContext.getService(serviceRef);
+    /**
+     * A DataSourceService instance with its lookup method resolved once.
+     */
+    private static final class TrackedService {
 
-            if (dataSourceService == null) {
-                if (log.isDebugEnabled()) {
-                    log.debug("DataSourceService is null");
-                }
-                return null;
-            }
+        private final Object service;
+        private final MethodHandle getDataSource;
+        private Class<?> carbonDataSourceClass;
+        private MethodHandle getDSObject;
 
-            Object carbonDataSource = dataSourceService.getClass()
-                    .getMethod("getDataSource", String.class)
-                    .invoke(dataSourceService, dataSourceName);
+        private TrackedService(Object service, MethodHandle getDataSource) {
+            this.service = service;
+            this.getDataSource = getDataSource;
+        }
 
-            if (carbonDataSource == null) {
+        static TrackedService of(Object service) {
+            try {
+                Method method = publicType(service.getClass(), DATA_SOURCE_SERVICE)
+                        .getMethod("getDataSource", String.class);
+                return new TrackedService(service,
+                        MethodHandles.publicLookup().unreflect(method).asType(GET_DATA_SOURCE_TYPE));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
                 if (log.isDebugEnabled()) {
-                    log.debug("CarbonDataSource '" + dataSourceName + "' not found in registry");
+                    log.debug("Method not found - API may have changed: " + e.getMessage(), e);
                 }
                 return null;
             }
+        }
 
-            // Unwrap CarbonDataSource to get actual DataSource
-            Object dsObject = carbonDataSource.getClass()
-                    .getMethod("getDSObject")
-                    .invoke(carbonDataSource);
-
-            if (dsObject instanceof DataSource) {
-                if (log.isDebugEnabled()) {
-                    log.debug("DataSource '" + dataSourceName + "' successfully retrieved via OSGi");
+        DataSource lookup(String dataSourceName) {
+            try {
+                Object carbonDataSource = getDataSource.invokeExact(service, dataSourceName);
+                if (carbonDataSource == null) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("CarbonDataSource '" + dataSourceName + "' not found in registry");
+                    }
+                    return null;
+                }
+                // Unwrap CarbonDataSource to get actual DataSource
+                Object dsObject = getDSObjectHandle(carbonDataSource.getClass()).invokeExact(carbonDataSource);
+                if (dsObject instanceof DataSource) {
+                    return (DataSource) dsObject;
                 }
-                return (DataSource) dsObject;
-            } else if (dsObject != null) {
                 if (log.isDebugEnabled()) {
-                    log.debug("DSObject is not a DataSource. Type: " + dsObject.getClass().getName());
+                    log.debug("DSObject is not a DataSource for DataSource: " + dataSourceName + ". Type: " +
+                            (dsObject != null ? dsObject.getClass().getName() : "null"));
                 }
-            } else {
+            } catch (Throwable e) {
                 if (log.isDebugEnabled()) {
-                log.error("DSObject is null for DataSource: " + dataSourceName);
+                    log.debug("Failed to lookup DataSource via OSGi: " + e.getMessage(), e);
                 }
             }
+            return null;
+        }
 
-        } catch (NoSuchMethodException e) {
-            if (log.isDebugEnabled()) {
-                log.debug("Method not found - API may have changed: " + e.getMessage(), e);
-            }
-        } catch (java.lang.reflect.InvocationTargetException invocationException) {
-            Throwable cause = invocationException.getCause();
-            String causeMsg = (cause != null) ? cause.getMessage() : "null";
-            if (log.isDebugEnabled()) {
-                log.debug("InvocationTargetException cause: " + causeMsg, cause);
-            }
-        } catch (Exception e) {
-            if (log.isDebugEnabled()) {
-                log.debug("Failed to lookup DataSource via OSGi: " + e.getMessage());
+        private synchronized MethodHandle getDSObjectHandle(Class<?> type) throws ReflectiveOperationException {
+            if (getDSObject == null || carbonDataSourceClass != type) {
+                Method method = publicType(type, null).getMethod("getDSObject");
+                getDSObject = MethodHandles.publicLookup().unreflect(method).asType(GET_DS_OBJECT_TYPE);
+                carbonDataSourceClass = type;
             }
+            return getDSObject;
         }
 
-        return null;
-    }
-
-    /**
-     * Check if DataSource provider has been initialized
-     */
-    public boolean isInitialized() {
-        return initialized;
-    }
-
-    /**
-     * Check if DataSource is currently available
-     */
-    public boolean isAvailable() {
-        return dataSource != null;
-    }
-
-    /**
-     * Force a refresh of the DataSource (useful for testing or recovery)
-     */
-    public synchronized void refresh() {
-        if (log.isDebugEnabled()) {
-            log.debug("Forcing DataSource refresh for '" + dataSourceName + "'");
+        /**
+         * Returns the named interface of the type if it implements one, otherwise the nearest public class,
+         * so that the method handles do not depend on the visibility of the implementation class.
+         */
+        private static Class<?> publicType(Class<?> type, String interfaceName) {
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                for (Class<?> implemented : current.getInterfaces()) {
+                    if (implemented.getName().equals(interfaceName)) {
+                        return implemented;
+                    }
+                }
+            }
+            Class<?> current = type;
+            while (current.getSuperclass() != null && !java.lang.reflect.Modifier.isPublic(current.getModifiers())) {
+                current = current.getSuperclass();
+            }
+            return current;
         }
-        dataSource = null;
-    }
-
-    public synchronized void close() {
-        dataSource = null;
-        initialized = false;
     }
 }
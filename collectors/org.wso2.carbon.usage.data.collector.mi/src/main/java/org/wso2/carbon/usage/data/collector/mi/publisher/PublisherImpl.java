@@ -76,7 +76,7 @@ public class PublisherImpl implements Publisher {
 
     private static final Log log = LogFactory.getLog(PublisherImpl.class);
     private static final String DATASOURCE_NAME = "WSO2_CONSUMPTION_TRACKING_DB";
-    private static final int DEFAULT_TIMEOUT_MS = 5000;
+    private static final int DEFAULT_TIMEOUT_MS = 10000;
     private static final org.apache.http.impl.client.CloseableHttpClient httpClient =
             org.apache.http.impl.client.HttpClients.createDefault();
     
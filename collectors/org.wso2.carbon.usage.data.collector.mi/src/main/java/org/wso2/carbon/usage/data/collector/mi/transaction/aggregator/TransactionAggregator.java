@@ -20,26 +20,117 @@ package org.wso2.carbon.usage.data.collector.mi.transaction.aggregator;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.usage.data.collector.common.metrics.CardinalitySketch;
+import org.wso2.carbon.usage.data.collector.common.metrics.ConcurrencyGauge;
+import org.wso2.carbon.usage.data.collector.common.metrics.ErrorCounter;
+import org.wso2.carbon.usage.data.collector.common.metrics.HeavyHitters;
+import org.wso2.carbon.usage.data.collector.common.metrics.HyperLogLog;
+import org.wso2.carbon.usage.data.collector.common.metrics.LatencyHistogram;
+import org.wso2.carbon.usage.data.collector.common.metrics.PeakRateTracker;
+import org.wso2.carbon.usage.data.collector.common.metrics.RotatingBloomFilter;
+import org.wso2.carbon.usage.data.collector.common.metrics.StreamSessionSummary;
+import org.wso2.carbon.usage.data.collector.common.metrics.StreamSessionTracker;
+import org.wso2.carbon.usage.data.collector.common.metrics.UsageHistory;
+import org.wso2.carbon.usage.data.collector.common.transaction.TransactionCorrelation;
+import org.wso2.carbon.usage.data.collector.common.util.HostCounterSegment;
+import org.wso2.carbon.usage.data.collector.common.util.PublishCadence;
+import org.wso2.carbon.usage.data.collector.mi.transaction.counter.TransactionCounterConstants;
+import org.wso2.carbon.usage.data.collector.mi.transaction.counter.TransactionCountingLogic;
 import org.wso2.carbon.usage.data.collector.mi.transaction.publisher.TransactionPublisher;
 import org.wso2.carbon.usage.data.collector.mi.transaction.record.TransactionReport;
 
-import java.util.concurrent.Executors;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 public class TransactionAggregator {
 
     private static final Log log = LogFactory.getLog(TransactionAggregator.class);
     private static volatile TransactionAggregator instance = null;
+    private static final int TOP_ARTIFACT_LIMIT =
+            Integer.getInteger(TransactionCounterConstants.TOP_ARTIFACTS_PROPERTY,
+                    TransactionCounterConstants.DEFAULT_TOP_ARTIFACTS);
+    private static final long IN_FLIGHT_TIMEOUT_SECONDS =
+            Long.getLong(TransactionCounterConstants.IN_FLIGHT_TIMEOUT_PROPERTY,
+                    TransactionCounterConstants.DEFAULT_IN_FLIGHT_TIMEOUT_SECONDS);
     
-    private final AtomicLong hourlyTransactionCount = new AtomicLong(0);
+    private final AtomicLong windowTransactionCount = new AtomicLong(0);
+    private final UsageHistory history = new UsageHistory(windowTransactionCount::get);
+    private final PublishCadence publishCadence = createPublishCadence();
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final ConcurrencyGauge inFlightTransactions =
+            new ConcurrencyGauge(TimeUnit.SECONDS.toMillis(IN_FLIGHT_TIMEOUT_SECONDS));
+    private final PeakRateTracker transactionRate = new PeakRateTracker();
+    private final ErrorCounter errorCounter = new ErrorCounter();
+    private final HyperLogLog clientAddresses = new HyperLogLog();
+    private final HyperLogLog endpoints = new HyperLogLog();
+    private final RotatingBloomFilter outFlowFilter = createOutFlowFilter();
+    private final HeavyHitters topArtifacts = createTopArtifacts();
+    private final StreamSessionTracker streamSessions = createStreamSessions();
+    private final long maxIdleSpanMillis = TimeUnit.SECONDS.toMillis(
+            Long.getLong(TransactionCounterConstants.MAX_IDLE_SPAN_PROPERTY,
+                    TransactionCounterConstants.DEFAULT_MAX_IDLE_SPAN_SECONDS));
+    private long windowStartTime;
+    private long idleSince = -1;
+    private long idleUntil = -1;
+    private final List<TransactionReport> pendingStoredReports = new ArrayList<>();
+    private final boolean storeEnabled = Boolean.getBoolean(TransactionCounterConstants.STORE_ENABLED_PROPERTY);
+    private final int storeBatchSize = Integer.getInteger(TransactionCounterConstants.STORE_BATCH_SIZE_PROPERTY,
+            TransactionCounterConstants.DEFAULT_STORE_BATCH_SIZE);
+    private HostCounterSegment hostCounterSegment;
     private TransactionPublisher publisher;
     private ScheduledExecutorService scheduledExecutorService;
     private boolean enabled = false;
 
     private TransactionAggregator() {}
 
+    private static RotatingBloomFilter createOutFlowFilter() {
+        if (!Boolean.getBoolean(TransactionCounterConstants.DEDUP_ENABLED_PROPERTY)) {
+            return null;
+        }
+        long expectedMessages = Long.getLong(TransactionCounterConstants.DEDUP_EXPECTED_MESSAGES_PROPERTY,
+                TransactionCounterConstants.DEFAULT_DEDUP_EXPECTED_MESSAGES);
+        return new RotatingBloomFilter(expectedMessages, TransactionCounterConstants.DEDUP_FALSE_POSITIVE_RATE);
+    }
+
+    private static HeavyHitters createTopArtifacts() {
+        if (TOP_ARTIFACT_LIMIT <= 0) {
+            return null;
+        }
+        return new HeavyHitters(TOP_ARTIFACT_LIMIT * TransactionCounterConstants.TOP_ARTIFACTS_CAPACITY_FACTOR);
+    }
+
+    private static StreamSessionTracker createStreamSessions() {
+        return new StreamSessionTracker(
+                TimeUnit.SECONDS.toMillis(Long.getLong(TransactionCounterConstants.STREAM_SESSION_IDLE_TIMEOUT_PROPERTY,
+                        TransactionCounterConstants.DEFAULT_STREAM_SESSION_IDLE_TIMEOUT_SECONDS)),
+                TransactionCounterConstants.MAX_STREAM_SESSIONS);
+    }
+
+    private static PublishCadence createPublishCadence() {
+        return new PublishCadence(
+                TimeUnit.SECONDS.toMillis(Long.getLong(TransactionCounterConstants.MIN_PUBLISH_INTERVAL_PROPERTY,
+                        TransactionCounterConstants.DEFAULT_MIN_PUBLISH_INTERVAL_SECONDS)),
+                TimeUnit.SECONDS.toMillis(Long.getLong(TransactionCounterConstants.MAX_PUBLISH_INTERVAL_PROPERTY,
+                        TransactionCounterConstants.DEFAULT_MAX_PUBLISH_INTERVAL_SECONDS)),
+                TimeUnit.SECONDS.toMillis(TransactionCounterConstants.DEFAULT_PUBLISH_INTERVAL_SECONDS),
+                Long.getLong(TransactionCounterConstants.PUBLISH_TARGET_COUNT_PROPERTY,
+                        TransactionCounterConstants.DEFAULT_PUBLISH_TARGET_COUNT));
+    }
+
     public static TransactionAggregator getInstance() {
         if (instance == null) {
             synchronized (TransactionAggregator.class) {
@@ -54,7 +145,7 @@ public class TransactionAggregator {
     public void init(TransactionPublisher publisher) {
         if (publisher == null) {
             if (log.isDebugEnabled()) {
-                log.debug("TransactionPublisher is null. Hourly aggregation will be disabled.");
+                log.debug("TransactionPublisher is null. Transaction aggregation will be disabled.");
             }
             return;
         }
@@ -90,17 +181,25 @@ public class TransactionAggregator {
 
         // Fresh initialization
         this.publisher = publisher;
-        this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        this.windowStartTime = System.currentTimeMillis();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        // The next window is scheduled by the previous one, so a pending window must not delay shutdown
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduledExecutorService = executor;
+
+        closeHostCounterSegment();
+        this.hostCounterSegment = openHostCounterSegment();
 
-        long interval = 30 * 1000L;
         try {
-        scheduledExecutorService.scheduleAtFixedRate(
-                this::publishAndReset,
-                interval,
-                interval,
-                TimeUnit.MILLISECONDS
-        );
-        this.enabled = true;
+            scheduleNextPublish();
+            scheduledExecutorService.scheduleWithFixedDelay(
+                    TransactionCountingLogic.getInstance()::reloadCountingRules, 0,
+                    TransactionCounterConstants.COUNTING_RULES_RELOAD_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            // Requests that never complete are expired between windows as well, so that they do not pile up
+            scheduledExecutorService.scheduleWithFixedDelay(inFlightTransactions::expire, IN_FLIGHT_TIMEOUT_SECONDS,
+                    IN_FLIGHT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            this.enabled = true;
+            registerHistoryMBean();
         } catch (Exception e) {
             if (log.isDebugEnabled()) {
                 log.error("TransactionAggregator: Failed to schedule periodic task", e);
@@ -110,35 +209,404 @@ public class TransactionAggregator {
     }
 
 
+    /**
+     * Opens the counter file shared with the other processes of the host, if one is configured with the
+     * {@value TransactionCounterConstants#HOST_COUNTER_FILE_PROPERTY} system property.
+     */
+    private static HostCounterSegment openHostCounterSegment() {
+        String path = System.getProperty(TransactionCounterConstants.HOST_COUNTER_FILE_PROPERTY);
+        if (path == null || path.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return HostCounterSegment.open(new File(path.trim()),
+                    Integer.getInteger(TransactionCounterConstants.HOST_COUNTER_SLOTS_PROPERTY,
+                            TransactionCounterConstants.DEFAULT_HOST_COUNTER_SLOTS));
+        } catch (IOException e) {
+            log.error("Failed to open the host counter file " + path + ". Transactions of this process will be "
+                    + "published by itself.", e);
+            return null;
+        }
+    }
+
     public void addTransactions(int count) {
         if (!enabled || count <= 0) {
             return;
         }
-        hourlyTransactionCount.addAndGet(count);
+        windowTransactionCount.addAndGet(count);
+        transactionRate.add(count);
     }
 
-    private void publishAndReset() {
+    /**
+     * Adds frames received on a streaming session. They are kept in counters of the session and added to the
+     * transaction count, request bytes and peak rate when the window rolls over, so a chatty session does not
+     * contend on the shared counters.
+     *
+     * @param sessionId The streaming session the frames were received on
+     * @param count The number of transactions the frames account for
+     * @param bytes The request bytes of the frames
+     * @return {@link StreamSessionTracker#TRACKED} if the frames were added to a session seen before, which needs
+     * nothing else recorded for them
+     */
+    public int addStreamFrames(String sessionId, int count, long bytes) {
+        if (!enabled || count <= 0) {
+            return StreamSessionTracker.TRACKED;
+        }
+        int recorded = streamSessions.recordFrames(sessionId, count, bytes, System.currentTimeMillis());
+        if (recorded == StreamSessionTracker.UNTRACKED) {
+            addTransactions(count);
+            addRequestBytes(bytes);
+        }
+        return recorded;
+    }
+
+    /**
+     * Checks whether an uncorrelated outgoing message is seen for the first time in this or the previous window.
+     * Clone/iterate mediators, retries and failover endpoints can send the same message out several times.
+     * Always returns true unless duplicate suppression is enabled with the
+     * {@value TransactionCounterConstants#DEDUP_ENABLED_PROPERTY} system property.
+     *
+     * @param outFlowKey The key that copies of the outgoing message share, as returned by
+     *                   {@code TransactionCountingLogic.getOutFlowKey}
+     * @return true if the message should be counted, false if it is a duplicate
+     */
+    public boolean isFirstOutFlow(String outFlowKey) {
+        if (outFlowFilter == null || outFlowKey == null) {
+            return true;
+        }
+        return outFlowFilter.add(outFlowKey);
+    }
+
+    /**
+     * Marks the start of a request-response pair for the in-flight gauge.
+     *
+     * @param correlation The correlation of the request
+     */
+    public void transactionStarted(TransactionCorrelation correlation) {
+        if (!enabled) {
+            return;
+        }
+        inFlightTransactions.increment(correlation.getStartNanos());
+    }
+
+    /**
+     * Marks the completion of a request-response pair for the in-flight gauge.
+     *
+     * @param correlation The correlation of the request
+     */
+    public void transactionCompleted(TransactionCorrelation correlation) {
+        inFlightTransactions.decrement(correlation.getStartNanos());
+    }
+
+    /**
+     * Counts a failed transaction in the current window under the category of its error code.
+     *
+     * @param errorCode The Synapse error code, or a negative value when the fault carried no code
+     */
+    public void addError(int errorCode) {
+        if (!enabled) {
+            return;
+        }
+        errorCounter.record(errorCode);
+    }
+
+    /**
+     * Records the end-to-end mediation latency of a request-response pair for the current window.
+     *
+     * @param latencyMicros The latency in microseconds. Negative values are ignored.
+     */
+    public void recordLatency(long latencyMicros) {
+        if (!enabled || latencyMicros < 0) {
+            return;
+        }
+        latencyHistogram.record(latencyMicros);
+    }
+
+    /**
+     * Adds the payload size of an incoming request to the current window.
+     *
+     * @param bytes The payload size in bytes. Non-positive values are ignored.
+     */
+    public void addRequestBytes(long bytes) {
+        if (!enabled || bytes <= 0) {
+            return;
+        }
+        requestBytes.add(bytes);
+    }
+
+    /**
+     * Adds the payload size of an outgoing response to the current window.
+     *
+     * @param bytes The payload size in bytes. Non-positive values are ignored.
+     */
+    public void addResponseBytes(long bytes) {
+        if (!enabled || bytes <= 0) {
+            return;
+        }
+        responseBytes.add(bytes);
+    }
+
+    /**
+     * Adds the address of a client to the distinct client count of the current window.
+     *
+     * @param clientAddress The remote address of the client. Null values are ignored.
+     */
+    public void addClientAddress(String clientAddress) {
+        if (!enabled) {
+            return;
+        }
+        clientAddresses.add(clientAddress);
+    }
+
+    /**
+     * Adds the URL a request was received on to the distinct endpoint count of the current window.
+     * The query string is not part of the endpoint.
+     *
+     * @param requestUrl The request URL. Null values are ignored.
+     */
+    public void addEndpoint(String requestUrl) {
+        if (!enabled || requestUrl == null) {
+            return;
+        }
+        int queryStart = requestUrl.indexOf('?');
+        endpoints.add(requestUrl, queryStart < 0 ? requestUrl.length() : queryStart);
+    }
+
+    /**
+     * Counts a request-response pair against the API or proxy service that mediated it, for the most used
+     * artifacts of the current window. Disabled when the
+     * {@value TransactionCounterConstants#TOP_ARTIFACTS_PROPERTY} system property is 0.
+     *
+     * @param artifactName The artifact name. Null values are ignored.
+     */
+    public void addArtifactTransaction(String artifactName) {
+        if (!enabled || topArtifacts == null) {
+            return;
+        }
+        topArtifacts.add(artifactName);
+    }
+
+    /**
+     * Schedules the publishing of the current window at the end of its epoch-aligned interval.
+     */
+    private void scheduleNextPublish() {
+        ScheduledExecutorService executor = scheduledExecutorService;
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
         try {
-            long count = hourlyTransactionCount.getAndSet(0);
-            
-            // Always send transaction report, even when count is zero
-            TransactionReport summary = new TransactionReport(count);
-            
-            publisher.publishTransaction(summary);
-            
+            executor.schedule(this::publishAndScheduleNext,
+                    publishCadence.getDelayMillis(System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("TransactionAggregator: Executor is shut down, not scheduling the next window");
+            }
+        }
+    }
+
+    private void publishAndScheduleNext() {
+        publishAndReset(false);
+        scheduleNextPublish();
+    }
+
+    /**
+     * @param closeStreamSessions true to close all streaming sessions with this window, e.g. on shutdown
+     */
+    private synchronized void publishAndReset(boolean closeStreamSessions) {
+        try {
+            long windowEndTime = System.currentTimeMillis();
+            StreamSessionSummary sessions = streamSessions.drain(windowEndTime, closeStreamSessions);
+            long count = windowTransactionCount.getAndSet(0) + sessions.getFrames();
+            history.record(count, windowEndTime);
+            if (outFlowFilter != null) {
+                long outFlows = outFlowFilter.rotate();
+                if (outFlows > outFlowFilter.getCapacity()) {
+                    log.warn("Duplicates were counted for part of the window, as " + outFlows
+                            + " outgoing messages exceeded the " + outFlowFilter.getCapacity() + " expected. Raise "
+                            + TransactionCounterConstants.DEDUP_EXPECTED_MESSAGES_PROPERTY + " to suppress them.");
+                }
+            }
+
+            TransactionReport.Builder summary = new TransactionReport.Builder(count)
+                    .withWindow(windowStartTime, windowEndTime)
+                    .withPublishInterval(publishCadence.getIntervalMillis())
+                    .withLatency(latencyHistogram.snapshotAndReset())
+                    .withRequestBytes(requestBytes.sumThenReset() + sessions.getBytes())
+                    .withResponseBytes(responseBytes.sumThenReset())
+                    .withCarriedOverConcurrency(inFlightTransactions.getWindowStart())
+                    .withPeakConcurrency(inFlightTransactions.getPeakAndReset())
+                    .withPeakTps(transactionRate.getPeakAndReset(sessions.getFrames(), windowEndTime - windowStartTime))
+                    .withErrorCounts(errorCounter.snapshotAndReset())
+                    .withDistinctClientAddresses(clientAddresses.snapshotAndReset())
+                    .withDistinctEndpoints(endpoints.snapshotAndReset())
+                    .withTopArtifacts(topArtifacts != null ? topArtifacts.snapshotAndReset(TOP_ARTIFACT_LIMIT) : null)
+                    .withStreamSessions(sessions);
+
+            // The cadence adapts to the count of the report it schedules
+            long cadenceCount = count;
+            if (hostCounterSegment == null) {
+                publishOrExtendIdleRange(summary.build(), windowEndTime, null);
+            } else {
+                // With a host counter file the count goes to the file, and only the publisher of the host reports
+                // the unpublished count of all processes. Every process publishes its own metrics separately.
+                hostCounterSegment.add(count);
+                TransactionReport metrics = summary.withScope(TransactionReport.Scope.PROCESS_METRICS).build();
+                if (!metrics.isEmpty()) {
+                    publisher.publishTransaction(metrics);
+                }
+                if (hostCounterSegment.tryLead()) {
+                    long[] hostTotals = hostCounterSegment.readTotals();
+                    cadenceCount = hostCounterSegment.getUnpublished(hostTotals);
+                    TransactionReport hostReport = new TransactionReport.Builder(cadenceCount)
+                            .withScope(TransactionReport.Scope.HOST)
+                            .withWindow(windowStartTime, windowEndTime)
+                            .withPublishInterval(publishCadence.getIntervalMillis())
+                            .build();
+                    publishOrExtendIdleRange(hostReport, windowEndTime, hostTotals);
+                } else if (log.isDebugEnabled()) {
+                    log.debug("TransactionAggregator: Added " + count + " transactions to the host counter file");
+                }
+            }
+            publishCadence.update(cadenceCount, windowEndTime - windowStartTime,
+                    System.currentTimeMillis() - windowEndTime);
+            windowStartTime = windowEndTime;
+
         } catch (Exception e) {
             if (log.isDebugEnabled()) {
-                log.error("TransactionAggregator: Error while publishing hourly transaction count", e);
+                log.error("TransactionAggregator: Error while publishing the transaction count of the window", e);
+            }
+        }
+    }
+
+    /**
+     * Publishes and stores a count report, or adds its window to the idle range if nothing was recorded in it.
+     *
+     * @param hostTotals The host totals the count of a host report was read from, marked as published once it is
+     */
+    private void publishOrExtendIdleRange(TransactionReport report, long windowEndTime, long[] hostTotals) {
+        if (report.isEmpty() && maxIdleSpanMillis > 0) {
+            // Consecutive empty windows are sent as one idle range instead of a zero report every window
+            if (idleSince < 0) {
+                idleSince = windowStartTime;
+            }
+            idleUntil = windowEndTime;
+            if (idleUntil - idleSince >= maxIdleSpanMillis) {
+                flushIdleRange();
             }
+            return;
+        }
+        flushIdleRange();
+        if (publisher.publishTransaction(report) && hostTotals != null) {
+            hostCounterSegment.markPublished(hostTotals);
+        }
+        storeReport(report);
+    }
+
+    /**
+     * Queues a published report for the local store and stores the queue once it holds a full batch.
+     */
+    private void storeReport(TransactionReport report) {
+        if (!storeEnabled) {
+            return;
+        }
+        pendingStoredReports.add(report);
+        if (pendingStoredReports.size() >= storeBatchSize) {
+            flushStoredReports();
+        }
+    }
+
+    /**
+     * Stores all queued reports in one transaction. Reports that could not be stored stay queued for the next
+     * attempt, the oldest being dropped once the queue is full.
+     */
+    private void flushStoredReports() {
+        if (pendingStoredReports.isEmpty()) {
+            return;
+        }
+        if (publisher.storeTransactions(pendingStoredReports)) {
+            pendingStoredReports.clear();
+            return;
+        }
+        int overflow = pendingStoredReports.size() - TransactionCounterConstants.MAX_PENDING_STORED_REPORTS;
+        if (overflow > 0) {
+            pendingStoredReports.subList(0, overflow).clear();
+        }
+    }
+
+    /**
+     * Publishes the pending run of empty windows, if any, as a single idle range report.
+     */
+    private void flushIdleRange() {
+        if (idleSince < 0) {
+            return;
         }
+        TransactionReport idleRange = new TransactionReport.Builder(0)
+                .withScope(hostCounterSegment != null ? TransactionReport.Scope.HOST : TransactionReport.Scope.PROCESS)
+                .withIdleRange(idleSince, idleUntil)
+                .build();
+        idleSince = -1;
+        idleUntil = -1;
+        publisher.publishTransaction(idleRange);
+        storeReport(idleRange);
+    }
+
+    public long getAndResetCurrentWindowCount() {
+        return windowTransactionCount.getAndSet(0);
     }
 
+    public long getCurrentWindowCount() {
+        return windowTransactionCount.get();
+    }
+
+    /**
+     * @deprecated Windows are no longer hourly, use {@link #getAndResetCurrentWindowCount()}
+     */
+    @Deprecated
     public long getAndResetCurrentHourlyCount() {
-        return hourlyTransactionCount.getAndSet(0);
+        return getAndResetCurrentWindowCount();
     }
 
+    /**
+     * @deprecated Windows are no longer hourly, use {@link #getCurrentWindowCount()}
+     */
+    @Deprecated
     public long getCurrentHourlyCount() {
-        return hourlyTransactionCount.get();
+        return getCurrentWindowCount();
+    }
+
+    /**
+     * Returns the local history of the transaction counts of this node.
+     */
+    public UsageHistory getHistory() {
+        return history;
+    }
+
+    private void registerHistoryMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(TransactionCounterConstants.HISTORY_MBEAN_NAME);
+            if (!mBeanServer.isRegistered(name)) {
+                mBeanServer.registerMBean(history, name);
+            }
+        } catch (JMException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to register the transaction history MBean", e);
+            }
+        }
+    }
+
+    private void unregisterHistoryMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(TransactionCounterConstants.HISTORY_MBEAN_NAME);
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to unregister the transaction history MBean", e);
+            }
+        }
     }
 
     public boolean isEnabled() {
@@ -147,8 +615,8 @@ public class TransactionAggregator {
 
     public void shutdown() {
         if (scheduledExecutorService != null) {
-            publishAndReset();
-            
+            // Stop the schedule first, so that the final window is not published while the scheduler thread is
+            // still inside a regular publish
             scheduledExecutorService.shutdownNow();
             try {
                 if (!scheduledExecutorService.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -162,7 +630,30 @@ public class TransactionAggregator {
                     log.error("Interrupted while shutting down TransactionAggregator", e);
                 }
             }
+
+            // Still guarded, in case a publish outlived the wait
+            synchronized (this) {
+                publishAndReset(true);
+                flushIdleRange();
+                flushStoredReports();
+            }
         }
+        closeHostCounterSegment();
+        unregisterHistoryMBean();
         enabled = false;
     }
+
+    private void closeHostCounterSegment() {
+        if (hostCounterSegment == null) {
+            return;
+        }
+        try {
+            hostCounterSegment.close();
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to close the host counter file " + hostCounterSegment.getFile(), e);
+            }
+        }
+        hostCounterSegment = null;
+    }
 }
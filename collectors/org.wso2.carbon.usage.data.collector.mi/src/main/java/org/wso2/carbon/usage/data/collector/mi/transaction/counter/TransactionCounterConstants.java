@@ -21,9 +21,78 @@ package org.wso2.carbon.usage.data.collector.mi.transaction.counter;
 public class TransactionCounterConstants {
     public static final String IS_INBOUND = "isInbound";
 
-    public static final String IS_THERE_ASSOCIATED_INCOMING_REQUEST = "is_there_incoming_request";
-    public static final String TRANSPORT_WS = "ws";
-    public static final String TRANSPORT_WSS = "wss";
+    public static final String TRANSACTION_CORRELATION = "usage_data_collector_transaction_correlation";
+    public static final String OUT_ONLY = "OUT_ONLY";
+    public static final String ERROR_CODE = "ERROR_CODE";
+    public static final String TRANSPORT_IN_URL = "TransportInURL";
+    public static final String REST_API = "SYNAPSE_REST_API";
+    public static final String PROXY_NAME = "proxy.name";
+
+    // Duplicate suppression of uncorrelated outgoing messages
+    public static final String OUT_FLOW_KEY = "usage_data_collector_out_flow_key";
+    public static final String DEDUP_ENABLED_PROPERTY = "usage.data.collector.transaction.dedup.enabled";
+    public static final String DEDUP_EXPECTED_MESSAGES_PROPERTY =
+            "usage.data.collector.transaction.dedup.expectedMessages";
+    public static final long DEFAULT_DEDUP_EXPECTED_MESSAGES = 100000;
+    public static final double DEDUP_FALSE_POSITIVE_RATE = 0.01;
+
+    // Most used APIs and proxy services per window
+    public static final String TOP_ARTIFACTS_PROPERTY = "usage.data.collector.transaction.topArtifacts";
+    public static final int DEFAULT_TOP_ARTIFACTS = 10;
+    public static final int TOP_ARTIFACTS_CAPACITY_FACTOR = 10;
+
+    // Consecutive empty windows are published as a single idle range of at most this many seconds
+    public static final String MAX_IDLE_SPAN_PROPERTY = "usage.data.collector.transaction.maxIdleSpanSeconds";
+    public static final long DEFAULT_MAX_IDLE_SPAN_SECONDS = 3600;
+
+    // Adaptive publish interval bounds, in seconds, and the count above which a window is considered busy
+    public static final String MIN_PUBLISH_INTERVAL_PROPERTY =
+            "usage.data.collector.transaction.minPublishIntervalSeconds";
+    public static final String MAX_PUBLISH_INTERVAL_PROPERTY =
+            "usage.data.collector.transaction.maxPublishIntervalSeconds";
+    public static final String PUBLISH_TARGET_COUNT_PROPERTY = "usage.data.collector.transaction.publishTargetCount";
+    public static final long DEFAULT_MIN_PUBLISH_INTERVAL_SECONDS = 15;
+    public static final long DEFAULT_MAX_PUBLISH_INTERVAL_SECONDS = 300;
+    public static final long DEFAULT_PUBLISH_INTERVAL_SECONDS = 30;
+    public static final long DEFAULT_PUBLISH_TARGET_COUNT = 10000;
+
+    // Rules that exclude or weight counted transactions, reloaded when the file changes
+    public static final String COUNTING_RULES_FILE_PROPERTY = "usage.data.collector.transaction.countingRulesFile";
+    public static final long COUNTING_RULES_RELOAD_INTERVAL_SECONDS = 30;
+
+    // Frames of streaming sessions are counted per session and drained into the window on rollover.
+    // A session without frames for the idle timeout is considered closed.
+    public static final String STREAM_SESSION_ID = "websocket.source.channel.identifier";
+    public static final String STREAM_SESSION_IDLE_TIMEOUT_PROPERTY =
+            "usage.data.collector.transaction.streamSessionIdleTimeoutSeconds";
+    public static final long DEFAULT_STREAM_SESSION_IDLE_TIMEOUT_SECONDS = 300;
+    public static final int MAX_STREAM_SESSIONS = 100000;
+
+    // Requests that never complete, e.g. dropped ones, stop counting as in flight after this time
+    public static final String IN_FLIGHT_TIMEOUT_PROPERTY = "usage.data.collector.transaction.inFlightTimeoutSeconds";
+    public static final long DEFAULT_IN_FLIGHT_TIMEOUT_SECONDS = 300;
+
+    // Counter file shared by the MI processes of a host, of which a single elected process publishes the counts
+    public static final String HOST_COUNTER_FILE_PROPERTY = "usage.data.collector.transaction.hostCounterFile";
+    public static final String HOST_COUNTER_SLOTS_PROPERTY = "usage.data.collector.transaction.hostCounterSlots";
+    public static final int DEFAULT_HOST_COUNTER_SLOTS = 16;
+
+    // Local store of the published reports in the consumption tracking database, written in batches
+    public static final String STORE_ENABLED_PROPERTY = "usage.data.collector.transaction.store.enabled";
+    public static final String STORE_BATCH_SIZE_PROPERTY = "usage.data.collector.transaction.store.batchSize";
+    public static final int DEFAULT_STORE_BATCH_SIZE = 10;
+    public static final int MAX_PENDING_STORED_REPORTS = 1000;
+    public static final String INSERT_TRANSACTION_REPORT_QUERY =
+            "INSERT INTO USAGE_TRANSACTION_REPORT (REPORT_ID, NODE_ID, PRODUCT, CREATED_TIME, WINDOW_START, "
+                    + "WINDOW_END, IDLE_RANGE, TRANSACTION_COUNT, REQUEST_BYTES, RESPONSE_BYTES, PEAK_CONCURRENCY, "
+                    + "PEAK_TPS, LATENCY_P50_US, LATENCY_P90_US, LATENCY_P99_US, LATENCY_MAX_US) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    public static final String INSERT_TRANSACTION_BREAKDOWN_QUERY =
+            "INSERT INTO USAGE_TRANSACTION_BREAKDOWN (REPORT_ID, DIMENSION, DIMENSION_KEY, USAGE_COUNT) "
+                    + "VALUES (?, ?, ?, ?)";
+
+    // JMX view of the local transaction history
+    public static final String HISTORY_MBEAN_NAME = "org.wso2.carbon.usage.data.collector:type=TransactionHistory";
 
     public static final String SERVER_ID = "serverId";
 
@@ -19,70 +19,61 @@
 package org.wso2.carbon.usage.data.collector.mi.transaction.counter;
 
 import org.apache.synapse.MessageContext;
-import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.wso2.carbon.usage.data.collector.common.transaction.SynapseMessageProperties;
+import org.wso2.carbon.usage.data.collector.common.transaction.SynapseTransactionCounting;
 
-public class TransactionCountingLogic {
+public class TransactionCountingLogic extends SynapseTransactionCounting {
 
-    public static int handleRequestInFlow(MessageContext messageContext) {
-        if (messageContext != null) {
-            org.apache.axis2.context.MessageContext axis2MessageContext = null;
-            if (messageContext instanceof Axis2MessageContext) {
-                axis2MessageContext = ((Axis2MessageContext) messageContext).getAxis2MessageContext();
-            }
-            if (axis2MessageContext != null) {
-                // Checking if the message is inbound
-                Object isInbound = messageContext.getProperty(TransactionCounterConstants.IS_INBOUND);
-                if (isInbound instanceof Boolean && (Boolean) isInbound) {
-                    return 1;
-                }
+    private static final TransactionCountingLogic INSTANCE = new TransactionCountingLogic();
 
-                // Setting this property to identify request-response pairs
-                messageContext.setProperty(TransactionCounterConstants.IS_THERE_ASSOCIATED_INCOMING_REQUEST, true);
-
-                // Counting message received via an open WebSocket
-                String transport = axis2MessageContext.getIncomingTransportName();
-                if (transport != null &&
-                        (transport.equals(TransactionCounterConstants.TRANSPORT_WS) ||
-                        transport.equals(TransactionCounterConstants.TRANSPORT_WSS))) {
-                    return 1;
-                }
-            }
-        }
-        return 0;
+    private TransactionCountingLogic() {
+        super(new SynapseMessageProperties.Builder()
+                        .withInbound(TransactionCounterConstants.IS_INBOUND)
+                        .withRestApi(TransactionCounterConstants.REST_API)
+                        .withProxyName(TransactionCounterConstants.PROXY_NAME)
+                        .withOutOnly(TransactionCounterConstants.OUT_ONLY)
+                        .withCorrelation(TransactionCounterConstants.TRANSACTION_CORRELATION)
+                        .withOutFlowKey(TransactionCounterConstants.OUT_FLOW_KEY)
+                        .withStreamSessionId(TransactionCounterConstants.STREAM_SESSION_ID)
+                        .withErrorCode(TransactionCounterConstants.ERROR_CODE)
+                        .build(),
+                TransactionCounterConstants.COUNTING_RULES_FILE_PROPERTY);
     }
 
-    public static int handleRequestOutFlow(MessageContext messageContext) {
-        if (messageContext == null) {
-            return 0;
-        }
-        Object isThereAnAssociatedIncomingRequest = messageContext.getProperty(
-                TransactionCounterConstants.IS_THERE_ASSOCIATED_INCOMING_REQUEST);
-
-        // Counting outgoing messages that are not related to any request-response pair
-        if (isThereAnAssociatedIncomingRequest == null) {
-            return 1;
-        }
-        return 0;
+    public static TransactionCountingLogic getInstance() {
+        return INSTANCE;
     }
 
-    public static int handleResponseInFlow(MessageContext messageContext) {
-        if (messageContext == null) {
-            return 0;
-        }
-        return 0;
+    /**
+     * Returns the URL the request was received on, including any query string.
+     *
+     * @param messageContext The request message context
+     * @return The request URL, or null if the transport does not expose it
+     */
+    public String getRequestUrl(MessageContext messageContext) {
+        Object url = getAxis2Property(messageContext, TransactionCounterConstants.TRANSPORT_IN_URL);
+        return url instanceof String ? (String) url : null;
     }
 
-    public static int handleResponseOutFlow(MessageContext messageContext) {
+    /**
+     * Returns the API or proxy service that mediated the message, prefixed with the artifact type so that
+     * an API and a proxy service of the same name are told apart.
+     *
+     * @param messageContext The response message context
+     * @return The artifact name, or null if the message was not mediated by an API or a proxy service
+     */
+    public String getArtifactName(MessageContext messageContext) {
         if (messageContext == null) {
-            return 0;
+            return null;
         }
-        Object isThereAnAssociatedIncomingRequest = messageContext.getProperty(
-                TransactionCounterConstants.IS_THERE_ASSOCIATED_INCOMING_REQUEST);
-
-        // Counting request-response pairs
-        if (isThereAnAssociatedIncomingRequest instanceof Boolean) {
-            return 1;
+        Object api = messageContext.getProperty(TransactionCounterConstants.REST_API);
+        if (api instanceof String) {
+            return "api/" + api;
+        }
+        Object proxy = messageContext.getProperty(TransactionCounterConstants.PROXY_NAME);
+        if (proxy instanceof String) {
+            return "proxy/" + proxy;
         }
-        return 0;
+        return null;
     }
 }
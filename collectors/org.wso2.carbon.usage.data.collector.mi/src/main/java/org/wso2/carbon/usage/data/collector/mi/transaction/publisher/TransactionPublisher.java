@@ -20,6 +20,8 @@ package org.wso2.carbon.usage.data.collector.mi.transaction.publisher;
 
 import org.wso2.carbon.usage.data.collector.mi.transaction.record.TransactionReport;
 
+import java.util.List;
+
 /**
  * Interface for MI transaction reporting service.
  * This service collects and reports transaction information periodically
@@ -35,4 +37,12 @@ public interface TransactionPublisher {
      * @return true if publishing was successful, false otherwise
      */
     boolean publishTransaction(TransactionReport report);
+
+    /**
+     * Stores transaction reports in the local consumption tracking database, all of them or none.
+     *
+     * @param reports The transaction reports to store
+     * @return true if the reports were stored, false otherwise
+     */
+    boolean storeTransactions(List<TransactionReport> reports);
 }
@@ -28,8 +28,14 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.wso2.carbon.usage.data.collector.common.publisher.api.Publisher;
+import org.wso2.carbon.usage.data.collector.common.publisher.api.PublisherException;
+import org.wso2.carbon.usage.data.collector.common.publisher.api.model.TransactionAttributes;
 import org.wso2.carbon.usage.data.collector.common.util.MetaInfoHolder;
 import org.wso2.carbon.usage.data.collector.mi.transaction.record.TransactionReport;
+import org.wso2.carbon.usage.data.collector.mi.transaction.store.TransactionReportStore;
+
+import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Transaction Report Publisher implementation.
@@ -43,6 +49,16 @@ public class TransactionPublisherImpl implements TransactionPublisher {
 
     private static final Log log = LogFactory.getLog(TransactionPublisherImpl.class);
 
+    private static final String TRANSACTION_COUNT_TYPE = "TRANSACTION_COUNT";
+    // Metrics of a process whose count is published per host. Its count is not to be billed again.
+    private static final String TRANSACTION_METRICS_TYPE = "TRANSACTION_METRICS";
+    private static final String PROCESS_SCOPE = "process";
+    private static final String HOST_SCOPE = "host";
+    private static final String DISTINCT_CLIENT_IPS_ATTRIBUTE = "distinctClientIps";
+    private static final String DISTINCT_ENDPOINTS_ATTRIBUTE = "distinctEndpoints";
+    private static final String TOP_ARTIFACTS_ATTRIBUTE = "topArtifacts";
+
+    private final TransactionReportStore reportStore = new TransactionReportStore();
     private volatile Publisher publisher;
 
     @Activate
@@ -59,13 +75,15 @@ public class TransactionPublisherImpl implements TransactionPublisher {
         }
     }
 
-    private org.wso2.carbon.usage.data.collector.common.publisher.api.model.ApiRequest createApiRequestFromReport(TransactionReport report) {
+    private org.wso2.carbon.usage.data.collector.common.publisher.api.model.ApiRequest createApiRequestFromReport(
+            TransactionReport report, long count, String type, java.util.Map<String, Object> attributes) {
         TransactionUsageData usageData = new TransactionUsageData();
         usageData.setNodeId(MetaInfoHolder.getNodeId());
         usageData.setProduct(MetaInfoHolder.getProduct());
-        usageData.setCount(report.getTotalCount());
-        usageData.setType("TRANSACTION_COUNT");
+        usageData.setCount(count);
+        usageData.setType(type);
         usageData.setCreatedTime(report.getCreatedTime());
+        usageData.setAttributes(attributes);
 
         return new org.wso2.carbon.usage.data.collector.common.publisher.api.model.ApiRequest.Builder()
                 .withEndpoint("deployment-usage-stats")
@@ -79,6 +97,7 @@ public class TransactionPublisherImpl implements TransactionPublisher {
         private String product;
         private long count;
         private String type;
+        private java.util.Map<String, Object> attributes;
 
         public void setNodeId(String nodeId) {
             this.nodeId = nodeId;
@@ -92,11 +111,17 @@ public class TransactionPublisherImpl implements TransactionPublisher {
         public void setType(String type) {
             this.type = type;
         }
+        public void setAttributes(java.util.Map<String, Object> attributes) {
+            this.attributes = attributes;
+        }
 
         @Override
         public String toJson() {
             try {
                 java.util.Map<String, Object> map = new java.util.HashMap<>();
+                if (attributes != null) {
+                    map.putAll(attributes);
+                }
                 map.put("nodeId", nodeId);
                 map.put("product", product);
                 map.put("count", count);
@@ -130,6 +155,26 @@ public class TransactionPublisherImpl implements TransactionPublisher {
         return publishTransactionReport(report);
     }
 
+    @Override
+    public boolean storeTransactions(List<TransactionReport> reports) {
+        Publisher currentPublisher = this.publisher;
+        if (currentPublisher == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("TransactionReportPublisher: Cannot store - Publisher service not available via OSGi");
+            }
+            return false;
+        }
+        try {
+            reportStore.store(currentPublisher.getDataSource(), reports);
+            return true;
+        } catch (PublisherException | SQLException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("TransactionReportPublisher: Failed to store " + reports.size() + " transaction reports", e);
+            }
+            return false;
+        }
+    }
+
     private boolean publishTransactionReport(TransactionReport report) {
         Publisher currentPublisher;
         synchronized (this) {
@@ -151,9 +196,51 @@ public class TransactionPublisherImpl implements TransactionPublisher {
             return false;
         }
 
+        String scope = report.getScope() == TransactionReport.Scope.HOST ? HOST_SCOPE : PROCESS_SCOPE;
+        if (report.isIdleRange()) {
+            java.util.Map<String, Object> attributes = new java.util.HashMap<>();
+            attributes.put("from", report.getIdleFrom());
+            attributes.put("to", report.getIdleTo());
+            attributes.put("scope", scope);
+            return publishUsageCount(currentPublisher, report, 0, TRANSACTION_COUNT_TYPE, attributes);
+        }
+        if (report.getScope() == TransactionReport.Scope.HOST) {
+            // The metrics of the processes of the host are published by each process on its own
+            java.util.Map<String, Object> attributes = new TransactionAttributes()
+                    .withScope(scope)
+                    .withWindow(report.getWindowStart(), report.getWindowEnd(), report.getPublishIntervalSeconds())
+                    .build();
+            return publishUsageCount(currentPublisher, report, report.getTotalCount(), TRANSACTION_COUNT_TYPE,
+                    attributes);
+        }
+
+        // All metrics of the window are attributes of its transaction count, so that a window costs a single
+        // receiver call. Distinct counts carry their sketch, so that the receiver can merge the sketches of
+        // several nodes and windows.
+        java.util.Map<String, Object> attributes = new TransactionAttributes()
+                .withScope(scope)
+                .withWindow(report.getWindowStart(), report.getWindowEnd(), report.getPublishIntervalSeconds())
+                .withLatency(report.getLatency())
+                .withRequestBytes(report.getRequestBytes())
+                .withResponseBytes(report.getResponseBytes())
+                .withPeakConcurrency(report.getPeakConcurrency())
+                .withPeakTps(report.getPeakTps())
+                .withErrorCounts(report.getErrorCounts())
+                .withDistinctCount(DISTINCT_CLIENT_IPS_ATTRIBUTE, report.getDistinctClientAddresses())
+                .withDistinctCount(DISTINCT_ENDPOINTS_ATTRIBUTE, report.getDistinctEndpoints())
+                .withTopArtifacts(TOP_ARTIFACTS_ATTRIBUTE, report.getTopArtifacts())
+                .withStreamSessions(report.getStreamSessions())
+                .build();
+        String type = report.getScope() == TransactionReport.Scope.PROCESS_METRICS ?
+                TRANSACTION_METRICS_TYPE : TRANSACTION_COUNT_TYPE;
+        return publishUsageCount(currentPublisher, report, report.getTotalCount(), type, attributes);
+    }
+
+    private boolean publishUsageCount(Publisher currentPublisher, TransactionReport report, long count, String type,
+                                      java.util.Map<String, Object> attributes) {
         try {
             org.wso2.carbon.usage.data.collector.common.publisher.api.model.ApiRequest request = 
-                createApiRequestFromReport(report);
+                createApiRequestFromReport(report, count, type, attributes);
             org.wso2.carbon.usage.data.collector.common.publisher.api.model.ApiResponse response =
                     currentPublisher.callReceiverApi(request);
             if (response != null && response.isSuccess()) {
@@ -162,7 +249,7 @@ public class TransactionPublisherImpl implements TransactionPublisher {
                 int status = response != null ? response.getStatusCode() : -1;
                 String body = response != null ? response.getResponseBody() : "null";
                 if (log.isDebugEnabled()) {
-                    log.debug("TransactionReportPublisher: Failed to publish transaction report. Status: " + status + ", Body: " + body);
+                    log.debug("TransactionReportPublisher: Failed to publish " + type + ". Status: " + status + ", Body: " + body);
                 }
                 return false;
             }
@@ -18,31 +18,99 @@
 
 package org.wso2.carbon.usage.data.collector.mi.transaction.record;
 
+import org.wso2.carbon.usage.data.collector.common.metrics.CardinalitySketch;
+import org.wso2.carbon.usage.data.collector.common.metrics.ErrorCategory;
+import org.wso2.carbon.usage.data.collector.common.metrics.HeavyHitters;
+import org.wso2.carbon.usage.data.collector.common.metrics.LatencySummary;
+import org.wso2.carbon.usage.data.collector.common.metrics.StreamSessionSummary;
+
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 public class TransactionReport {
 
+    /**
+     * What the count and the metrics of a report cover. A report never mixes scopes.
+     */
+    public enum Scope {
+        /** The count and the metrics of this process. */
+        PROCESS,
+        /** The count of all processes sharing the host counter file, without metrics. */
+        HOST,
+        /** The metrics of this process, whose count is published with the count of its host. */
+        PROCESS_METRICS
+    }
+
     private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter
             .ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'")
             .withZone(ZoneOffset.UTC);
 
     private final String id;
+    private final Scope scope;
     private final long totalCount;
     private final String createdTime;
+    private final LatencySummary latency;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final long peakConcurrency;
+    private final long carriedOverConcurrency;
+    private final long peakTps;
+    private final long[] errorCounts;
+    private final CardinalitySketch distinctClientAddresses;
+    private final CardinalitySketch distinctEndpoints;
+    private final List<HeavyHitters.HeavyHitter> topArtifacts;
+    private final StreamSessionSummary streamSessions;
+    private final String windowStart;
+    private final String windowEnd;
+    private final long publishIntervalSeconds;
+    private final String idleFrom;
+    private final String idleTo;
 
     public TransactionReport(long totalCount) {
+        this(new Builder(totalCount));
+    }
+
+    private TransactionReport(Builder builder) {
         this.id = UUID.randomUUID().toString();
-        this.totalCount = totalCount;
+        this.scope = builder.scope;
+        this.totalCount = builder.totalCount;
         this.createdTime = ISO_FORMATTER.format(Instant.now());
+        this.latency = builder.latency;
+        this.requestBytes = builder.requestBytes;
+        this.responseBytes = builder.responseBytes;
+        this.peakConcurrency = builder.peakConcurrency;
+        this.carriedOverConcurrency = builder.carriedOverConcurrency;
+        this.peakTps = builder.peakTps;
+        this.errorCounts = builder.errorCounts;
+        this.distinctClientAddresses = builder.distinctClientAddresses;
+        this.distinctEndpoints = builder.distinctEndpoints;
+        this.topArtifacts = builder.topArtifacts;
+        this.streamSessions = builder.streamSessions;
+        this.windowStart = formatTime(builder.windowStartMillis);
+        this.windowEnd = formatTime(builder.windowEndMillis);
+        this.publishIntervalSeconds = TimeUnit.MILLISECONDS.toSeconds(builder.publishIntervalMillis);
+        this.idleFrom = formatTime(builder.idleFromMillis);
+        this.idleTo = formatTime(builder.idleToMillis);
+    }
+
+    private static String formatTime(long epochMillis) {
+        return epochMillis >= 0 ? ISO_FORMATTER.format(Instant.ofEpochMilli(epochMillis)) : null;
     }
 
     public String getId() {
         return id;
     }
 
+    public Scope getScope() {
+        return scope;
+    }
+
     public long getTotalCount() {
         return totalCount;
     }
@@ -51,12 +119,278 @@ public class TransactionReport {
         return createdTime;
     }
 
+    /**
+     * Returns the mediation latency percentiles, in microseconds, of the request-response pairs in this window.
+     */
+    public LatencySummary getLatency() {
+        return latency;
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public long getPeakConcurrency() {
+        return peakConcurrency;
+    }
+
+    public long getPeakTps() {
+        return peakTps;
+    }
+
+    public long getErrorCount(ErrorCategory category) {
+        return errorCounts[category.ordinal()];
+    }
+
+    /**
+     * Returns the error counts of this window indexed by {@link ErrorCategory#ordinal()}.
+     */
+    public long[] getErrorCounts() {
+        return errorCounts.clone();
+    }
+
+    /**
+     * Returns the sketch of the client addresses seen in this window, or null if none were tracked.
+     */
+    public CardinalitySketch getDistinctClientAddresses() {
+        return distinctClientAddresses;
+    }
+
+    /**
+     * Returns the sketch of the request URLs, without query strings, seen in this window, or null if none
+     * were tracked.
+     */
+    public CardinalitySketch getDistinctEndpoints() {
+        return distinctEndpoints;
+    }
+
+    /**
+     * Returns the most used APIs and proxy services of this window, most used first.
+     */
+    public List<HeavyHitters.HeavyHitter> getTopArtifacts() {
+        return topArtifacts;
+    }
+
+    /**
+     * Returns the streaming sessions of this window. Their frames are already included in the total count.
+     */
+    public StreamSessionSummary getStreamSessions() {
+        return streamSessions;
+    }
+
+    /**
+     * Returns the start of the window this report covers, or null if it is not known.
+     */
+    public String getWindowStart() {
+        return windowStart;
+    }
+
+    /**
+     * Returns the end of the window this report covers, or null if it is not known.
+     */
+    public String getWindowEnd() {
+        return windowEnd;
+    }
+
+    /**
+     * Returns the publish interval the window was scheduled with, in seconds, or 0 if it is not known. The window
+     * itself is shorter when it started after a change of interval or ended on shutdown.
+     */
+    public long getPublishIntervalSeconds() {
+        return publishIntervalSeconds;
+    }
+
+    /**
+     * Checks whether the report stands for a run of consecutive windows without any activity, in which
+     * case all counts are zero and the run is given by {@link #getIdleFrom()} and {@link #getIdleTo()}.
+     */
+    public boolean isIdleRange() {
+        return idleFrom != null;
+    }
+
+    public String getIdleFrom() {
+        return idleFrom;
+    }
+
+    public String getIdleTo() {
+        return idleTo;
+    }
+
+    /**
+     * Checks whether nothing at all was recorded in the window of this report. Requests still in flight from the
+     * previous window only count when more of them were in flight at once in this window.
+     */
+    public boolean isEmpty() {
+        if (totalCount != 0 || !latency.isEmpty() || requestBytes != 0 || responseBytes != 0 ||
+                peakConcurrency > carriedOverConcurrency || peakTps != 0 || !topArtifacts.isEmpty() ||
+                streamSessions.getClosedSessions() != 0) {
+            return false;
+        }
+        for (long errorCount : errorCounts) {
+            if (errorCount != 0) {
+                return false;
+            }
+        }
+        return (distinctClientAddresses == null || distinctClientAddresses.estimate() == 0) &&
+                (distinctEndpoints == null || distinctEndpoints.estimate() == 0);
+    }
+
     @Override
     public String toString() {
         return "TransactionReport{" +
                 "id='" + id + '\'' +
+                ", scope=" + scope +
                 ", totalCount=" + totalCount +
                 ", createdTime='" + createdTime + '\'' +
+                ", latency=" + latency +
+                ", requestBytes=" + requestBytes +
+                ", responseBytes=" + responseBytes +
+                ", peakConcurrency=" + peakConcurrency +
+                ", peakTps=" + peakTps +
+                ", errorCounts=" + Arrays.toString(errorCounts) +
+                ", distinctClientAddresses=" +
+                (distinctClientAddresses != null ? distinctClientAddresses.estimate() : 0) +
+                ", distinctEndpoints=" + (distinctEndpoints != null ? distinctEndpoints.estimate() : 0) +
+                ", topArtifacts=" + topArtifacts +
+                ", streamSessions=" + streamSessions +
+                ", windowStart='" + windowStart + '\'' +
+                ", windowEnd='" + windowEnd + '\'' +
+                ", publishIntervalSeconds=" + publishIntervalSeconds +
+                ", idleFrom='" + idleFrom + '\'' +
+                ", idleTo='" + idleTo + '\'' +
                 '}';
     }
-}
\ No newline at end of file
+
+    public static class Builder {
+        private final long totalCount;
+        private Scope scope = Scope.PROCESS;
+        private LatencySummary latency = LatencySummary.EMPTY;
+        private long requestBytes;
+        private long responseBytes;
+        private long peakConcurrency;
+        private long carriedOverConcurrency;
+        private long peakTps;
+        private long[] errorCounts = new long[ErrorCategory.count()];
+        private CardinalitySketch distinctClientAddresses;
+        private CardinalitySketch distinctEndpoints;
+        private List<HeavyHitters.HeavyHitter> topArtifacts = Collections.emptyList();
+        private StreamSessionSummary streamSessions = StreamSessionSummary.EMPTY;
+        private long windowStartMillis = -1;
+        private long windowEndMillis = -1;
+        private long publishIntervalMillis;
+        private long idleFromMillis = -1;
+        private long idleToMillis = -1;
+
+        public Builder(long totalCount) {
+            this.totalCount = totalCount;
+        }
+
+        public Builder withScope(Scope scope) {
+            this.scope = scope;
+            return this;
+        }
+
+        public Builder withLatency(LatencySummary latency) {
+            if (latency != null) {
+                this.latency = latency;
+            }
+            return this;
+        }
+
+        public Builder withRequestBytes(long requestBytes) {
+            this.requestBytes = requestBytes;
+            return this;
+        }
+
+        public Builder withResponseBytes(long responseBytes) {
+            this.responseBytes = responseBytes;
+            return this;
+        }
+
+        public Builder withPeakConcurrency(long peakConcurrency) {
+            this.peakConcurrency = peakConcurrency;
+            return this;
+        }
+
+        /**
+         * @param carriedOverConcurrency Number of requests in flight when the window started
+         */
+        public Builder withCarriedOverConcurrency(long carriedOverConcurrency) {
+            this.carriedOverConcurrency = carriedOverConcurrency;
+            return this;
+        }
+
+        public Builder withPeakTps(long peakTps) {
+            this.peakTps = peakTps;
+            return this;
+        }
+
+        /**
+         * @param errorCounts Error counts indexed by {@link ErrorCategory#ordinal()}
+         */
+        public Builder withErrorCounts(long[] errorCounts) {
+            if (errorCounts != null && errorCounts.length == ErrorCategory.count()) {
+                this.errorCounts = errorCounts;
+            }
+            return this;
+        }
+
+        public Builder withDistinctClientAddresses(CardinalitySketch distinctClientAddresses) {
+            this.distinctClientAddresses = distinctClientAddresses;
+            return this;
+        }
+
+        public Builder withDistinctEndpoints(CardinalitySketch distinctEndpoints) {
+            this.distinctEndpoints = distinctEndpoints;
+            return this;
+        }
+
+        public Builder withTopArtifacts(List<HeavyHitters.HeavyHitter> topArtifacts) {
+            if (topArtifacts != null) {
+                this.topArtifacts = topArtifacts;
+            }
+            return this;
+        }
+
+        public Builder withStreamSessions(StreamSessionSummary streamSessions) {
+            if (streamSessions != null) {
+                this.streamSessions = streamSessions;
+            }
+            return this;
+        }
+
+        /**
+         * Sets the window the report covers.
+         */
+        public Builder withWindow(long windowStartMillis, long windowEndMillis) {
+            this.windowStartMillis = windowStartMillis;
+            this.windowEndMillis = windowEndMillis;
+            return this;
+        }
+
+        /**
+         * @param publishIntervalMillis The publish interval the window was scheduled with
+         */
+        public Builder withPublishInterval(long publishIntervalMillis) {
+            this.publishIntervalMillis = publishIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Marks the report as a run of empty windows between the given times, which is also the window it covers.
+         */
+        public Builder withIdleRange(long idleFromMillis, long idleToMillis) {
+            this.idleFromMillis = idleFromMillis;
+            this.idleToMillis = idleToMillis;
+            return withWindow(idleFromMillis, idleToMillis);
+        }
+
+        public TransactionReport build() {
+            return new TransactionReport(this);
+        }
+    }
+}
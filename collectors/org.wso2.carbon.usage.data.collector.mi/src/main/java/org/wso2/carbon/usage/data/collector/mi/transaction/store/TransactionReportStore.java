@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.usage.data.collector.mi.transaction.store;
+
+import org.wso2.carbon.usage.data.collector.common.metrics.CardinalitySketch;
+import org.wso2.carbon.usage.data.collector.common.metrics.ErrorCategory;
+import org.wso2.carbon.usage.data.collector.common.metrics.HeavyHitters;
+import org.wso2.carbon.usage.data.collector.common.metrics.LatencySummary;
+import org.wso2.carbon.usage.data.collector.common.util.MetaInfoHolder;
+import org.wso2.carbon.usage.data.collector.mi.transaction.counter.TransactionCounterConstants;
+import org.wso2.carbon.usage.data.collector.mi.transaction.record.TransactionReport;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+/**
+ * Stores transaction reports in the consumption tracking database, so that they can be kept locally at a higher
+ * frequency than they are shipped and queried in bulk later.
+ *
+ * <p>Every report is a row of {@code USAGE_TRANSACTION_REPORT}, and its per-dimension breakdown (error categories,
+ * most used artifacts and distinct counts) are rows of {@code USAGE_TRANSACTION_BREAKDOWN}. A run of idle windows is
+ * stored as a single row with {@code IDLE_RANGE} set to 1 and the run as its window:</p>
+ * <pre>
+ * CREATE TABLE USAGE_TRANSACTION_REPORT (
+ *     REPORT_ID VARCHAR(36) NOT NULL, NODE_ID VARCHAR(255), PRODUCT VARCHAR(64), CREATED_TIME TIMESTAMP,
+ *     WINDOW_START TIMESTAMP, WINDOW_END TIMESTAMP, IDLE_RANGE SMALLINT, TRANSACTION_COUNT BIGINT,
+ *     REQUEST_BYTES BIGINT, RESPONSE_BYTES BIGINT, PEAK_CONCURRENCY BIGINT, PEAK_TPS BIGINT, LATENCY_P50_US BIGINT,
+ *     LATENCY_P90_US BIGINT, LATENCY_P99_US BIGINT, LATENCY_MAX_US BIGINT, PRIMARY KEY (REPORT_ID));
+ * CREATE TABLE USAGE_TRANSACTION_BREAKDOWN (
+ *     REPORT_ID VARCHAR(36) NOT NULL, DIMENSION VARCHAR(32) NOT NULL, DIMENSION_KEY VARCHAR(255) NOT NULL,
+ *     USAGE_COUNT BIGINT, PRIMARY KEY (REPORT_ID, DIMENSION, DIMENSION_KEY));
+ * </pre>
+ */
+public class TransactionReportStore {
+
+    private static final String ERROR_DIMENSION = "ERROR";
+    private static final String ARTIFACT_DIMENSION = "ARTIFACT";
+    private static final String DISTINCT_DIMENSION = "DISTINCT";
+    private static final String CLIENT_IPS_KEY = "CLIENT_IPS";
+    private static final String ENDPOINTS_KEY = "ENDPOINTS";
+
+    /**
+     * Stores reports with one batch per table in a single transaction, so either all of them are stored or none.
+     *
+     * @param dataSource The consumption tracking datasource
+     * @param reports The reports to store
+     * @throws SQLException if the reports could not be stored
+     */
+    public void store(DataSource dataSource, List<TransactionReport> reports) throws SQLException {
+        if (reports.isEmpty()) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement reportStatement =
+                         connection.prepareStatement(TransactionCounterConstants.INSERT_TRANSACTION_REPORT_QUERY);
+                 PreparedStatement breakdownStatement =
+                         connection.prepareStatement(TransactionCounterConstants.INSERT_TRANSACTION_BREAKDOWN_QUERY)) {
+                for (TransactionReport report : reports) {
+                    addReport(reportStatement, report);
+                    addBreakdown(breakdownStatement, report);
+                }
+                reportStatement.executeBatch();
+                breakdownStatement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static void addReport(PreparedStatement statement, TransactionReport report) throws SQLException {
+        LatencySummary latency = report.getLatency();
+        statement.setString(1, report.getId());
+        statement.setString(2, MetaInfoHolder.getNodeId());
+        statement.setString(3, MetaInfoHolder.getProduct());
+        statement.setTimestamp(4, toTimestamp(report.getCreatedTime()));
+        statement.setTimestamp(5, toTimestamp(report.getWindowStart()));
+        statement.setTimestamp(6, toTimestamp(report.getWindowEnd()));
+        statement.setShort(7, (short) (report.isIdleRange() ? 1 : 0));
+        statement.setLong(8, report.getTotalCount());
+        statement.setLong(9, report.getRequestBytes());
+        statement.setLong(10, report.getResponseBytes());
+        statement.setLong(11, report.getPeakConcurrency());
+        statement.setLong(12, report.getPeakTps());
+        statement.setLong(13, latency.getP50());
+        statement.setLong(14, latency.getP90());
+        statement.setLong(15, latency.getP99());
+        statement.setLong(16, latency.getMax());
+        statement.addBatch();
+    }
+
+    private static Timestamp toTimestamp(String time) {
+        return time != null ? Timestamp.from(Instant.parse(time)) : null;
+    }
+
+    private static void addBreakdown(PreparedStatement statement, TransactionReport report) throws SQLException {
+        for (ErrorCategory category : ErrorCategory.values()) {
+            long errorCount = report.getErrorCount(category);
+            if (errorCount > 0) {
+                addBreakdownRow(statement, report, ERROR_DIMENSION, category.getUsageType(), errorCount);
+            }
+        }
+        for (HeavyHitters.HeavyHitter artifact : report.getTopArtifacts()) {
+            addBreakdownRow(statement, report, ARTIFACT_DIMENSION, artifact.getKey(), artifact.getCount());
+        }
+        addDistinctRow(statement, report, CLIENT_IPS_KEY, report.getDistinctClientAddresses());
+        addDistinctRow(statement, report, ENDPOINTS_KEY, report.getDistinctEndpoints());
+    }
+
+    private static void addDistinctRow(PreparedStatement statement, TransactionReport report, String key,
+                                       CardinalitySketch sketch) throws SQLException {
+        if (sketch != null && sketch.estimate() > 0) {
+            addBreakdownRow(statement, report, DISTINCT_DIMENSION, key, sketch.estimate());
+        }
+    }
+
+    private static void addBreakdownRow(PreparedStatement statement, TransactionReport report, String dimension,
+                                        String key, long count) throws SQLException {
+        statement.setString(1, report.getId());
+        statement.setString(2, dimension);
+        statement.setString(3, key);
+        statement.setLong(4, count);
+        statement.addBatch();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.mi.transaction.counter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the state reads of the flow methods of {@link TransactionCountHandler}, which read one immutable
+ * snapshot of the publisher and the aggregator, against the separate volatile fields and enabled checks they
+ * replaced. The aggregator is reduced to the counters that a response out flow updates, as the handler itself
+ * needs a Synapse message context. Both cost the same within error, with one or several threads, so the snapshot
+ * is kept for the consistency of the publisher and the aggregator it reads rather than for speed.
+ *
+ * <p>Run it from the test classpath, adding {@code -t 4} to read the state from several mediation threads:</p>
+ * <pre>
+ * java -cp &lt;test classpath&gt; org.openjdk.jmh.Main CountingStateBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountingStateBenchmark {
+
+    private volatile boolean enabled;
+    private volatile Object publisher;
+    private volatile Aggregator aggregator;
+    private volatile CountingState state;
+
+    @Setup
+    public void setUp() {
+        Aggregator current = new Aggregator();
+        Object currentPublisher = new Object();
+        publisher = currentPublisher;
+        aggregator = current;
+        enabled = true;
+        state = new CountingState(currentPublisher, current);
+    }
+
+    @Benchmark
+    public boolean separateFields() {
+        if (!enabled) {
+            return true;
+        }
+        if (aggregator != null && aggregator.isEnabled()) {
+            aggregator.addTransactions(1);
+            aggregator.recordLatency(100);
+            aggregator.addArtifactTransaction();
+            aggregator.addResponseBytes(512);
+            aggregator.transactionCompleted();
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean snapshot() {
+        CountingState current = state;
+        if (current == null) {
+            return true;
+        }
+        Aggregator transactionAggregator = current.aggregator;
+        transactionAggregator.addTransactions(1);
+        transactionAggregator.recordLatency(100);
+        transactionAggregator.addArtifactTransaction();
+        transactionAggregator.addResponseBytes(512);
+        transactionAggregator.transactionCompleted();
+        return true;
+    }
+
+    /**
+     * The counters of the aggregator that a response out flow updates, behind its enabled flag.
+     */
+    private static final class Aggregator {
+
+        private final LongAdder transactions = new LongAdder();
+        private final LongAdder latency = new LongAdder();
+        private final LongAdder artifactTransactions = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private volatile boolean enabled = true;
+
+        boolean isEnabled() {
+            return enabled;
+        }
+
+        void addTransactions(int count) {
+            transactions.add(count);
+        }
+
+        void recordLatency(long micros) {
+            latency.add(micros);
+        }
+
+        void addArtifactTransaction() {
+            artifactTransactions.increment();
+        }
+
+        void addResponseBytes(long bytes) {
+            responseBytes.add(bytes);
+        }
+
+        void transactionCompleted() {
+            completed.increment();
+        }
+    }
+
+    private static final class CountingState {
+
+        private final Object publisher;
+        private final Aggregator aggregator;
+
+        private CountingState(Object publisher, Aggregator aggregator) {
+            this.publisher = publisher;
+            this.aggregator = aggregator;
+        }
+    }
+}
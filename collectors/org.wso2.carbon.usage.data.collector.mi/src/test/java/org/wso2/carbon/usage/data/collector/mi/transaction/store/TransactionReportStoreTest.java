@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2025, WSO2 LLC. (http://www.wso2.com) All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.usage.data.collector.mi.transaction.store;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.usage.data.collector.common.metrics.ErrorCategory;
+import org.wso2.carbon.usage.data.collector.common.metrics.HeavyHitters;
+import org.wso2.carbon.usage.data.collector.common.metrics.LatencySummary;
+import org.wso2.carbon.usage.data.collector.mi.transaction.record.TransactionReport;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores reports in an in-memory H2 database created with the schema documented on {@link TransactionReportStore}.
+ */
+public class TransactionReportStoreTest {
+
+    private static final long WINDOW_START = 1767225600000L;
+    private static final long WINDOW_END = WINDOW_START + 3600000L;
+
+    private final TransactionReportStore store = new TransactionReportStore();
+    private JdbcDataSource dataSource;
+    private Connection keepAlive;
+
+    @BeforeMethod
+    public void createTables() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:reports;DB_CLOSE_DELAY=-1");
+        keepAlive = dataSource.getConnection();
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE USAGE_TRANSACTION_REPORT (REPORT_ID VARCHAR(36) NOT NULL, "
+                    + "NODE_ID VARCHAR(255), PRODUCT VARCHAR(64), CREATED_TIME TIMESTAMP, WINDOW_START TIMESTAMP, "
+                    + "WINDOW_END TIMESTAMP, IDLE_RANGE SMALLINT, TRANSACTION_COUNT BIGINT, REQUEST_BYTES BIGINT, "
+                    + "RESPONSE_BYTES BIGINT, PEAK_CONCURRENCY BIGINT, PEAK_TPS BIGINT, LATENCY_P50_US BIGINT, "
+                    + "LATENCY_P90_US BIGINT, LATENCY_P99_US BIGINT, LATENCY_MAX_US BIGINT, "
+                    + "PRIMARY KEY (REPORT_ID))");
+            statement.execute("CREATE TABLE USAGE_TRANSACTION_BREAKDOWN (REPORT_ID VARCHAR(36) NOT NULL, "
+                    + "DIMENSION VARCHAR(32) NOT NULL, DIMENSION_KEY VARCHAR(255) NOT NULL, USAGE_COUNT BIGINT, "
+                    + "PRIMARY KEY (REPORT_ID, DIMENSION, DIMENSION_KEY))");
+        }
+    }
+
+    @AfterMethod
+    public void dropTables() throws SQLException {
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("DROP TABLE USAGE_TRANSACTION_BREAKDOWN");
+            statement.execute("DROP TABLE USAGE_TRANSACTION_REPORT");
+        }
+        keepAlive.close();
+    }
+
+    @Test
+    public void testStoresReportWithWindowAndBreakdown() throws SQLException {
+        long[] errorCounts = new long[ErrorCategory.count()];
+        errorCounts[ErrorCategory.TIMEOUT.ordinal()] = 3;
+        TransactionReport report = new TransactionReport.Builder(42)
+                .withWindow(WINDOW_START, WINDOW_END)
+                .withLatency(new LatencySummary(42, 100, 200, 300, 400))
+                .withRequestBytes(1000)
+                .withResponseBytes(2000)
+                .withPeakConcurrency(5)
+                .withPeakTps(7)
+                .withErrorCounts(errorCounts)
+                .withTopArtifacts(Collections.singletonList(new HeavyHitters.HeavyHitter("OrderAPI", 40, 0)))
+                .build();
+
+        store.store(dataSource, Collections.singletonList(report));
+
+        try (PreparedStatement statement = keepAlive.prepareStatement("SELECT WINDOW_START, WINDOW_END, IDLE_RANGE, "
+                + "TRANSACTION_COUNT, REQUEST_BYTES, RESPONSE_BYTES, PEAK_CONCURRENCY, PEAK_TPS, LATENCY_P50_US, "
+                + "LATENCY_MAX_US FROM USAGE_TRANSACTION_REPORT WHERE REPORT_ID = ?")) {
+            statement.setString(1, report.getId());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Assert.assertTrue(resultSet.next());
+                Assert.assertEquals(resultSet.getTimestamp(1), new Timestamp(WINDOW_START));
+                Assert.assertEquals(resultSet.getTimestamp(2), new Timestamp(WINDOW_END));
+                Assert.assertEquals(resultSet.getShort(3), 0);
+                Assert.assertEquals(resultSet.getLong(4), 42);
+                Assert.assertEquals(resultSet.getLong(5), 1000);
+                Assert.assertEquals(resultSet.getLong(6), 2000);
+                Assert.assertEquals(resultSet.getLong(7), 5);
+                Assert.assertEquals(resultSet.getLong(8), 7);
+                Assert.assertEquals(resultSet.getLong(9), 100);
+                Assert.assertEquals(resultSet.getLong(10), 400);
+            }
+        }
+        Map<String, Long> breakdown = readBreakdown(report.getId());
+        Assert.assertEquals(breakdown.size(), 2);
+        Assert.assertEquals(breakdown.get("ERROR/" + ErrorCategory.TIMEOUT.getUsageType()), Long.valueOf(3));
+        Assert.assertEquals(breakdown.get("ARTIFACT/OrderAPI"), Long.valueOf(40));
+    }
+
+    @Test
+    public void testStoresIdleRangeAsSingleRow() throws SQLException {
+        long idleTo = WINDOW_START + 6 * 3600000L;
+        TransactionReport idleRange = new TransactionReport.Builder(0)
+                .withIdleRange(WINDOW_START, idleTo)
+                .build();
+
+        store.store(dataSource, Collections.singletonList(idleRange));
+
+        try (PreparedStatement statement = keepAlive.prepareStatement("SELECT WINDOW_START, WINDOW_END, "
+                + "IDLE_RANGE, TRANSACTION_COUNT FROM USAGE_TRANSACTION_REPORT WHERE REPORT_ID = ?")) {
+            statement.setString(1, idleRange.getId());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Assert.assertTrue(resultSet.next());
+                Assert.assertEquals(resultSet.getTimestamp(1), new Timestamp(WINDOW_START));
+                Assert.assertEquals(resultSet.getTimestamp(2), new Timestamp(idleTo));
+                Assert.assertEquals(resultSet.getShort(3), 1);
+                Assert.assertEquals(resultSet.getLong(4), 0);
+            }
+        }
+        Assert.assertTrue(readBreakdown(idleRange.getId()).isEmpty());
+    }
+
+    @Test
+    public void testStoresReportsWithoutKnownWindow() throws SQLException {
+        TransactionReport report = new TransactionReport(1);
+
+        store.store(dataSource, Collections.singletonList(report));
+
+        try (PreparedStatement statement = keepAlive.prepareStatement(
+                "SELECT WINDOW_START, WINDOW_END FROM USAGE_TRANSACTION_REPORT WHERE REPORT_ID = ?")) {
+            statement.setString(1, report.getId());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Assert.assertTrue(resultSet.next());
+                Assert.assertNull(resultSet.getTimestamp(1));
+                Assert.assertNull(resultSet.getTimestamp(2));
+            }
+        }
+    }
+
+    @Test
+    public void testStoresNoneOfTheReportsWhenOneFails() throws SQLException {
+        TransactionReport report = new TransactionReport.Builder(1).withWindow(WINDOW_START, WINDOW_END).build();
+        // The same report twice violates the primary key, so the batch is rolled back
+        try {
+            store.store(dataSource, Arrays.asList(
+                    new TransactionReport.Builder(2).withWindow(WINDOW_START, WINDOW_END).build(), report, report));
+            Assert.fail("Storing a report twice should fail");
+        } catch (SQLException e) {
+            // Expected
+        }
+
+        try (Statement statement = keepAlive.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM USAGE_TRANSACTION_REPORT")) {
+            Assert.assertTrue(resultSet.next());
+            Assert.assertEquals(resultSet.getLong(1), 0);
+        }
+    }
+
+    private Map<String, Long> readBreakdown(String reportId) throws SQLException {
+        Map<String, Long> breakdown = new HashMap<>();
+        try (PreparedStatement statement = keepAlive.prepareStatement("SELECT DIMENSION, DIMENSION_KEY, USAGE_COUNT "
+                + "FROM USAGE_TRANSACTION_BREAKDOWN WHERE REPORT_ID = ?")) {
+            statement.setString(1, reportId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    breakdown.put(resultSet.getString(1) + "/" + resultSet.getString(2), resultSet.getLong(3));
+                }
+            }
+        }
+        return breakdown;
+    }
+}